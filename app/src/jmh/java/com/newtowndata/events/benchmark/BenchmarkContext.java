@@ -0,0 +1,81 @@
+/*
+ * Copyright 2023-2024 Voyta Krizek, https://github.com/NewTownData
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.newtowndata.events.benchmark;
+
+import com.newtowndata.events.core.ApplicationContext;
+import com.newtowndata.events.core.ApplicationEvent;
+import com.newtowndata.events.core.StateContext;
+import com.newtowndata.events.core.io.EventPublisher;
+import com.newtowndata.events.core.logging.LogLevel;
+import com.newtowndata.events.core.logging.LoggerFactory;
+import com.newtowndata.events.local.LocalStateContext;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * {@link ApplicationContext} for benchmarks. Published events are only counted and logging is
+ * disabled, so the measurements are not dominated by console output.
+ */
+final class BenchmarkContext implements ApplicationContext, EventPublisher {
+
+  private final Path root;
+  private final StateContext stateContext;
+  private long publishedEvents;
+
+  BenchmarkContext() {
+    LoggerFactory.configure(LogLevel.OFF, Map.of());
+    try {
+      this.root = Files.createTempDirectory("events-benchmark");
+    } catch (IOException e) {
+      throw new IllegalStateException("Cannot create benchmark directory", e);
+    }
+    this.stateContext = new LocalStateContext(root);
+  }
+
+  Path root() {
+    return root;
+  }
+
+  long publishedEvents() {
+    return publishedEvents;
+  }
+
+  @Override
+  public EventPublisher eventPublisher() {
+    return this;
+  }
+
+  @Override
+  public StateContext stateContext() {
+    return stateContext;
+  }
+
+  @Override
+  public void publishEvent(ApplicationEvent event, int waitInSec) {
+    publishedEvents++;
+  }
+
+  void close() {
+    try (Stream<Path> paths = Files.walk(root)) {
+      paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    } catch (IOException e) {
+      throw new IllegalStateException("Cannot delete benchmark directory", e);
+    }
+  }
+
+}
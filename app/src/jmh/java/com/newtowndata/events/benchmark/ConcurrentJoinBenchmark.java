@@ -0,0 +1,64 @@
+/*
+ * Copyright 2023-2024 Voyta Krizek, https://github.com/NewTownData
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.newtowndata.events.benchmark;
+
+import com.newtowndata.events.core.io.StateTable;
+import com.newtowndata.events.local.io.LocalStateTable;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Benchmark of many threads joining different traces in a shared {@link LocalStateTable}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(8)
+public class ConcurrentJoinBenchmark {
+
+  private static final int TRACES = 10_000;
+  private static final Set<String> REQUIRED_STATES = Set.of("source1", "source2", "source3");
+  private static final String[] SOURCE_STATES = REQUIRED_STATES.toArray(String[]::new);
+
+  private LocalStateTable stateTable;
+
+  @Setup
+  public void setup() {
+    stateTable = new LocalStateTable();
+  }
+
+  @TearDown
+  public void tearDown() {
+    stateTable.close();
+  }
+
+  @Benchmark
+  public boolean addStateAndComplete() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    StateTable table = stateTable;
+    return table.addStateAndComplete("join|trace" + random.nextInt(TRACES),
+        SOURCE_STATES[random.nextInt(SOURCE_STATES.length)], REQUIRED_STATES);
+  }
+
+}
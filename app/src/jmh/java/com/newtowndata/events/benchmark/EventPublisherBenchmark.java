@@ -0,0 +1,84 @@
+/*
+ * Copyright 2023-2024 Voyta Krizek, https://github.com/NewTownData
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.newtowndata.events.benchmark;
+
+import com.newtowndata.events.core.ApplicationConstants;
+import com.newtowndata.events.core.ApplicationEvent;
+import com.newtowndata.events.core.io.EventPublisher;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks of producer attribute stripping in {@link EventPublisher}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EventPublisherBenchmark {
+
+  private static final int BATCH_SIZE = 10;
+
+  private BenchmarkContext context;
+  private EventPublisher publisher;
+  private ApplicationEvent event;
+  private ApplicationEvent delayedEvent;
+  private List<ApplicationEvent> events;
+
+  @Setup
+  public void setup() {
+    context = new BenchmarkContext();
+    publisher = context.eventPublisher();
+    event = ApplicationEvent.ofStart(10, "target", Map.of("name", "benchmark", "count", "1"));
+    delayedEvent = ApplicationEvent.ofStart(10, "target", Map.of("name", "benchmark", "count",
+        "1", ApplicationConstants.ATTRIBUTE_WAIT_TIME_IN_SEC, "5"));
+    events = new ArrayList<>();
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      events.add(i % 2 == 0 ? event : delayedEvent);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    context.close();
+  }
+
+  @Benchmark
+  public long publishEvent() {
+    publisher.publishEvent(event);
+    return context.publishedEvents();
+  }
+
+  @Benchmark
+  public long publishDelayedEvent() {
+    publisher.publishEvent(delayedEvent);
+    return context.publishedEvents();
+  }
+
+  @Benchmark
+  public long publishEvents() {
+    publisher.publishEvents(events);
+    return context.publishedEvents();
+  }
+
+}
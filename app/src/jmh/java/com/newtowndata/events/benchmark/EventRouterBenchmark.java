@@ -0,0 +1,104 @@
+/*
+ * Copyright 2023-2024 Voyta Krizek, https://github.com/NewTownData
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.newtowndata.events.benchmark;
+
+import com.newtowndata.events.core.ApplicationConstants;
+import com.newtowndata.events.core.ApplicationEvent;
+import com.newtowndata.events.core.generic.ExecutionState;
+import com.newtowndata.events.core.generic.ForkState;
+import com.newtowndata.events.core.router.EventRouter;
+import com.newtowndata.events.core.router.FusionSettings;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks of {@link EventRouter#processEvent(ApplicationEvent)}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EventRouterBenchmark {
+
+  private static final String STATE_EXECUTION = "execution";
+  private static final String STATE_FORK = "fork";
+  private static final String STATE_BRANCH = "branch:";
+
+  private BenchmarkContext context;
+  private EventRouter router;
+  private EventRouter fusedRouter;
+  private ApplicationEvent executionEvent;
+  private ApplicationEvent forkEvent;
+
+  @Setup
+  public void setup() {
+    context = new BenchmarkContext();
+    router = createRouter(FusionSettings.DISABLED);
+    fusedRouter = createRouter(new FusionSettings(4, Duration.ofSeconds(1)));
+    Map<String, String> attributes = Map.of("name", "benchmark", "count", "1");
+    executionEvent = ApplicationEvent.ofStart(10, STATE_EXECUTION, attributes);
+    forkEvent = ApplicationEvent.ofStart(10, STATE_FORK, attributes);
+  }
+
+  @TearDown
+  public void tearDown() {
+    context.close();
+  }
+
+  @Benchmark
+  public long processExecution() {
+    router.processEvent(executionEvent);
+    return context.publishedEvents();
+  }
+
+  @Benchmark
+  public long processFork() {
+    router.processEvent(forkEvent);
+    return context.publishedEvents();
+  }
+
+  @Benchmark
+  public long processFusedExecution() {
+    fusedRouter.processEvent(executionEvent);
+    return context.publishedEvents();
+  }
+
+  private EventRouter createRouter(FusionSettings fusionSettings) {
+    return EventRouter.of(context).withFusion(fusionSettings)
+        .withState(new ExecutionState(STATE_EXECUTION, STATE_BRANCH + 1, stateContext -> {
+        }))
+        .withState(new ForkState(STATE_FORK,
+            List.of(STATE_BRANCH + 1, STATE_BRANCH + 2, STATE_BRANCH + 3)))
+        .withState(new ExecutionState(STATE_BRANCH + 1, ApplicationConstants.STATE_END,
+            stateContext -> {
+            }))
+        .withState(new ExecutionState(STATE_BRANCH + 2, ApplicationConstants.STATE_END,
+            stateContext -> {
+            }))
+        .withState(new ExecutionState(STATE_BRANCH + 3, ApplicationConstants.STATE_END,
+            stateContext -> {
+            }))
+        .build();
+  }
+
+}
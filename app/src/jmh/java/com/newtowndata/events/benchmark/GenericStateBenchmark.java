@@ -0,0 +1,117 @@
+/*
+ * Copyright 2023-2024 Voyta Krizek, https://github.com/NewTownData
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.newtowndata.events.benchmark;
+
+import com.newtowndata.events.core.ApplicationConstants;
+import com.newtowndata.events.core.ApplicationEvent;
+import com.newtowndata.events.core.OutputEvent;
+import com.newtowndata.events.core.StateContext;
+import com.newtowndata.events.core.generic.ExecutionState;
+import com.newtowndata.events.core.generic.ForkState;
+import com.newtowndata.events.core.generic.GenericState;
+import com.newtowndata.events.core.generic.JoinMode;
+import com.newtowndata.events.core.generic.JoinState;
+import com.newtowndata.events.core.generic.WaitState;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks of {@link GenericState} subclasses without the router.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GenericStateBenchmark {
+
+  private static final String STATE_TEST = "test";
+  private static final String STATE_SOURCE1 = "source1";
+  private static final String STATE_SOURCE2 = "source2";
+  private static final String STATE_TARGET = "target";
+
+  private BenchmarkContext context;
+  private StateContext stateContext;
+  private GenericState executionState;
+  private GenericState forkState;
+  private GenericState joinState;
+  private GenericState bitmaskJoinState;
+  private GenericState waitState;
+  private ApplicationEvent input;
+  private ApplicationEvent joinInput1;
+  private ApplicationEvent joinInput2;
+
+  @Setup
+  public void setup() {
+    context = new BenchmarkContext();
+    stateContext = context.stateContext();
+    executionState = new ExecutionState(STATE_TEST, STATE_TARGET, stateContext -> {
+    });
+    forkState = new ForkState(STATE_TEST, List.of(STATE_SOURCE1, STATE_SOURCE2, STATE_TARGET));
+    joinState = new JoinState(STATE_TEST, Set.of(STATE_SOURCE1, STATE_SOURCE2), STATE_TARGET);
+    bitmaskJoinState = JoinState.of(STATE_TEST, Set.of(STATE_SOURCE1, STATE_SOURCE2),
+        STATE_TARGET).withMode(JoinMode.BITMASK).build();
+    waitState = new WaitState(STATE_TEST, STATE_TARGET, 10);
+
+    Map<String, String> attributes = Map.of("name", "benchmark", "count", "1");
+    input = new ApplicationEvent("id", "trace", 10, ApplicationConstants.STATE_START, STATE_TEST,
+        attributes);
+    joinInput1 = new ApplicationEvent("id1", "trace", 10, STATE_SOURCE1, STATE_TEST, attributes);
+    joinInput2 = new ApplicationEvent("id2", "trace", 10, STATE_SOURCE2, STATE_TEST, attributes);
+  }
+
+  @TearDown
+  public void tearDown() {
+    context.close();
+  }
+
+  @Benchmark
+  public List<OutputEvent> execution() {
+    return executionState.handleEvent(stateContext, input);
+  }
+
+  @Benchmark
+  public List<OutputEvent> fork() {
+    return forkState.handleEvent(stateContext, input);
+  }
+
+  /**
+   * Both branches of a join, the first one is stored and the second one completes the join.
+   */
+  @Benchmark
+  public List<OutputEvent> join() {
+    joinState.handleEvent(stateContext, joinInput1);
+    return joinState.handleEvent(stateContext, joinInput2);
+  }
+
+  @Benchmark
+  public List<OutputEvent> bitmaskJoin() {
+    bitmaskJoinState.handleEvent(stateContext, joinInput1);
+    return bitmaskJoinState.handleEvent(stateContext, joinInput2);
+  }
+
+  @Benchmark
+  public List<OutputEvent> waitForDuration() {
+    return waitState.handleEvent(stateContext, input);
+  }
+
+}
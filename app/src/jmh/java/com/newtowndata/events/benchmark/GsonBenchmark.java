@@ -0,0 +1,59 @@
+/*
+ * Copyright 2023-2024 Voyta Krizek, https://github.com/NewTownData
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.newtowndata.events.benchmark;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.newtowndata.events.core.ApplicationEvent;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks of Gson (de)serialization of {@link ApplicationEvent} as used for SQS messages.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GsonBenchmark {
+
+  private Gson gson;
+  private ApplicationEvent event;
+  private String json;
+
+  @Setup
+  public void setup() {
+    gson = new GsonBuilder().create();
+    event = ApplicationEvent.ofStart(10, "target",
+        Map.of("name", "benchmark", "count", "1", "path", "example/hello.txt"));
+    json = gson.toJson(event);
+  }
+
+  @Benchmark
+  public String serialize() {
+    return gson.toJson(event);
+  }
+
+  @Benchmark
+  public ApplicationEvent deserialize() {
+    return gson.fromJson(json, ApplicationEvent.class);
+  }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2023-2024 Voyta Krizek, https://github.com/NewTownData
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.newtowndata.events.benchmark;
+
+import com.newtowndata.events.core.io.ObjectStorage;
+import com.newtowndata.events.core.io.StateTable;
+import com.newtowndata.events.local.io.FileStateTable;
+import com.newtowndata.events.local.io.LocalObjectStorage;
+import com.newtowndata.events.local.io.LocalStateTable;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks of {@link LocalStateTable}, {@link FileStateTable} and {@link LocalObjectStorage}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LocalStorageBenchmark {
+
+  private static final String STORAGE_NAME = "benchmark";
+  private static final String PATH_READ = "read.bin";
+  private static final String PATH_WRITE = "write.bin";
+  private static final String KEY = "join|trace";
+  private static final Set<String> SOURCE_STATES = Set.of("source1", "source2");
+
+  @Param({"1024", "1048576", "16777216"})
+  int objectSize;
+
+  private BenchmarkContext context;
+  private StateTable stateTable;
+  private FileStateTable fileStateTable;
+  private ObjectStorage objectStorage;
+  private byte[] content;
+
+  @Setup
+  public void setup() {
+    context = new BenchmarkContext();
+    stateTable = new LocalStateTable();
+    fileStateTable = new FileStateTable(context.root().resolve("state"));
+    objectStorage = new LocalObjectStorage(context.root(), LocalObjectStorage.SyncPolicy.NONE,
+        LocalObjectStorage.DEFAULT_MAP_THRESHOLD_IN_BYTES);
+    content = new byte[objectSize];
+    objectStorage.putObject(STORAGE_NAME, PATH_READ, new ByteArrayInputStream(content));
+  }
+
+  @TearDown
+  public void tearDown() {
+    fileStateTable.close();
+    context.close();
+  }
+
+  @Benchmark
+  public Set<String> stateTableAddGet() {
+    stateTable.addStates(KEY, SOURCE_STATES);
+    return stateTable.getStates(KEY);
+  }
+
+  @Benchmark
+  public Set<String> fileStateTableAddGet() {
+    fileStateTable.addStates(KEY, SOURCE_STATES);
+    return fileStateTable.getStates(KEY);
+  }
+
+  @Benchmark
+  public int objectStorageGet() throws IOException {
+    try (InputStream inputStream = objectStorage.getObject(STORAGE_NAME, PATH_READ)) {
+      return inputStream.readAllBytes().length;
+    }
+  }
+
+  @Benchmark
+  public long objectStorageGetBuffer() {
+    // large objects are memory-mapped, so only the pages are touched
+    ByteBuffer buffer = objectStorage.getObjectBuffer(STORAGE_NAME, PATH_READ);
+    long sum = 0;
+    for (int i = 0; i < buffer.limit(); i += 4096) {
+      sum += buffer.get(i);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public void objectStoragePut() {
+    objectStorage.putObject(STORAGE_NAME, PATH_WRITE, new ByteArrayInputStream(content));
+  }
+
+  @Benchmark
+  public void objectStoragePutBytes() {
+    objectStorage.putObject(STORAGE_NAME, PATH_WRITE, content);
+  }
+
+}
@@ -20,10 +20,15 @@ import com.newtowndata.events.core.generic.ExecutionState;
 import com.newtowndata.events.core.generic.ForkState;
 import com.newtowndata.events.core.generic.JoinState;
 import com.newtowndata.events.core.generic.WaitState;
+import com.newtowndata.events.core.io.AsyncObjectStorage;
 import com.newtowndata.events.core.router.EventRouter;
+import com.newtowndata.events.core.router.FusionSettings;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * Implementation of an application with defined states and events.
@@ -55,8 +60,13 @@ public class Application {
   }
 
   public Application(ApplicationContext applicationContext, String storageName) {
+    this(applicationContext, storageName, FusionSettings.DISABLED);
+  }
+
+  public Application(ApplicationContext applicationContext, String storageName,
+      FusionSettings fusionSettings) {
     this.storageName = Objects.requireNonNull(storageName, "storageName");
-    this.eventRouter = EventRouter.of(applicationContext)
+    this.eventRouter = EventRouter.of(applicationContext).withFusion(fusionSettings)
         .withState(new ExecutionState(STATE_HELLO_INPUT, STATE_HELLO_OUTPUT, this::createHello))
         .withState(new ForkState(STATE_HELLO_OUTPUT, List.of(STATE_JOHN, STATE_ALICE, STATE_AMY)))
         .withState(new ExecutionState(STATE_JOHN, STATE_JOHN_WAIT, this::createJohn))
@@ -94,12 +104,15 @@ public class Application {
   }
 
   private void createHiAll(StateContext stateContext) {
-    String john = stateContext.objectStorage().getObjectAsString(this.storageName, PATH_JOHN);
-    String alice = stateContext.objectStorage().getObjectAsString(this.storageName, PATH_ALICE);
-    String amy = stateContext.objectStorage().getObjectAsString(this.storageName, PATH_AMY);
+    // one round trip instead of three
+    Map<String, byte[]> names = stateContext.asyncObjectStorage()
+        .getObjects(this.storageName, List.of(PATH_JOHN, PATH_ALICE, PATH_AMY),
+            AsyncObjectStorage.DEFAULT_MAX_CONCURRENCY)
+        .join();
 
     stateContext.objectStorage().putObject(this.storageName, PATH_HI_ALL,
-        john + "\n" + alice + "\n" + amy);
+        names.values().stream().map(name -> new String(name, StandardCharsets.UTF_8))
+            .collect(Collectors.joining("\n")));
   }
 
 }
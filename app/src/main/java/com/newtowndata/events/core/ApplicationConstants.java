@@ -22,6 +22,7 @@ public final class ApplicationConstants {
   public static final String STATE_END = "end";
 
   public static final String ATTRIBUTE_WAIT_TIME_IN_SEC = "wait_time_in_sec";
+  public static final String ATTRIBUTE_JOIN_MISSING_STATES = "join_missing_states";
 
   private ApplicationConstants() {}
 
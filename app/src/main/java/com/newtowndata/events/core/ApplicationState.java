@@ -14,6 +14,7 @@
 package com.newtowndata.events.core;
 
 import java.util.List;
+import java.util.Set;
 
 /**
  * Application state abstraction.
@@ -24,4 +25,12 @@ public interface ApplicationState {
 
   List<OutputEvent> handleEvent(StateContext stateContext, ApplicationEvent input);
 
+  /**
+   * @return Names of all states this state can produce events for. Used to validate the state
+   *         graph when the router is built.
+   */
+  default Set<String> targetStates() {
+    return Set.of();
+  }
+
 }
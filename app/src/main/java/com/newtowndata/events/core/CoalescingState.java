@@ -0,0 +1,40 @@
+/*
+ * Copyright 2023-2024 Voyta Krizek, https://github.com/NewTownData
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.newtowndata.events.core;
+
+import java.util.List;
+
+/**
+ * State that can handle several events at once, e.g. branches of the same trace arriving at a join
+ * in one batch.
+ */
+public interface CoalescingState extends ApplicationState {
+
+  /**
+   * @param input Event for this state.
+   * @return Key shared by the events that can be handled together.
+   */
+  String coalescingKey(ApplicationEvent input);
+
+  /**
+   * Handle events with the same coalescing key with the same result as handling them one after
+   * another.
+   * 
+   * @param stateContext State context.
+   * @param inputs Events with the same coalescing key.
+   * @return Produced events.
+   */
+  List<OutputEvent> handleEvents(StateContext stateContext, List<ApplicationEvent> inputs);
+
+}
@@ -13,6 +13,8 @@
  */
 package com.newtowndata.events.core;
 
+import com.newtowndata.events.core.io.AsyncObjectStorage;
+import com.newtowndata.events.core.io.ExecutorObjectStorage;
 import com.newtowndata.events.core.io.ObjectStorage;
 import com.newtowndata.events.core.io.StateTable;
 
@@ -23,6 +25,13 @@ public interface StateContext {
 
   ObjectStorage objectStorage();
 
+  /**
+   * @return Non-blocking access to the same objects as {@link #objectStorage()}.
+   */
+  default AsyncObjectStorage asyncObjectStorage() {
+    return new ExecutorObjectStorage(objectStorage());
+  }
+
   StateTable stateTable();
 
 }
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2023-2024 Voyta Krizek, https://github.com/NewTownData
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.newtowndata.events.core.generic;
+
+import com.newtowndata.events.core.ApplicationEvent;
+import com.newtowndata.events.core.OutputEvent;
+import com.newtowndata.events.core.io.StateTable;
+import com.newtowndata.events.core.logging.Logger;
+import com.newtowndata.events.core.logging.LoggerFactory;
+import com.newtowndata.events.core.utils.AttributeUtils;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Join that stores the attributes of each branch with its source state and produces them merged
+ * by a {@link JoinAggregation}, instead of only the attributes of the last branch.
+ * 
+ * <p>
+ * All branches of a trace are stored in one state table item, so each branch may use an equal
+ * share of {@link #MAX_STORED_SIZE_IN_BYTES}, and the merged attributes must fit into
+ * {@link AttributeUtils#MAX_ATTRIBUTES_SIZE_IN_BYTES}. Larger values belong in the object storage,
+ * e.g. offloaded by {@link ExecutionState}.
+ */
+final class AggregatingJoin extends JoinStrategy {
+
+  /**
+   * Maximum size of the stored branches of a trace. DynamoDB allows 400 KB per item, the rest is
+   * left for the key and the other attributes.
+   */
+  static final int MAX_STORED_SIZE_IN_BYTES = 384 * 1024;
+
+  private static final Logger LOG = LoggerFactory.create(AggregatingJoin.class);
+
+  private final JoinAggregation aggregation;
+  private final int maxBranchSizeInBytes;
+
+  AggregatingJoin(Set<String> requiredSourceStates, String targetState,
+      JoinAggregation aggregation) {
+    super(requiredSourceStates, targetState);
+    this.aggregation = aggregation;
+    this.maxBranchSizeInBytes = MAX_STORED_SIZE_IN_BYTES / Math.max(1, requiredSourceStates.size());
+  }
+
+  /**
+   * Complete the join once all branches are stored and produce the merged attributes. The
+   * completion is exactly once and drops the branches before the event is produced, so a failed
+   * completion is retried and a retry after a successful one produces nothing.
+   * 
+   * @throws IllegalArgumentException If a branch or the merged attributes are too large.
+   */
+  @Override
+  void join(StateTable table, String key, List<ApplicationEvent> inputs,
+      Consumer<OutputEvent> outputConsumer) {
+    Set<String> addedStates = new LinkedHashSet<>();
+    for (ApplicationEvent input : inputs) {
+      if (requiredSourceStates.contains(input.sourceState())) {
+        String branch = aggregation.encode(input.sourceState(), input.attributes());
+        int branchSize = branch.getBytes(StandardCharsets.UTF_8).length;
+        if (branchSize > maxBranchSizeInBytes) {
+          throw new IllegalArgumentException("Attributes of " + input.sourceState()
+              + " for key " + key + " take " + branchSize + " bytes, more than "
+              + maxBranchSizeInBytes);
+        }
+        addedStates.add(branch);
+      } else {
+        LOG.warn(() -> "Unexpected source state for key " + key + ": " + input.sourceState());
+      }
+    }
+    if (addedStates.isEmpty()) {
+      return;
+    }
+
+    Set<String> allStates = table.addStates(key, addedStates);
+    Map<String, Map<String, String>> branches = aggregation.decode(allStates);
+    if (!branches.keySet().containsAll(requiredSourceStates)) {
+      LOG.info(() -> "Not all states matched yet for key " + key + ": " + branches.keySet());
+      return;
+    }
+
+    Map<String, String> attributes = aggregation.merge(branches);
+    int attributesSize = AttributeUtils.estimateSize(attributes);
+    if (attributesSize > AttributeUtils.MAX_ATTRIBUTES_SIZE_IN_BYTES) {
+      throw new IllegalArgumentException("Merged attributes for key " + key + " take "
+          + attributesSize + " bytes, more than " + AttributeUtils.MAX_ATTRIBUTES_SIZE_IN_BYTES);
+    }
+    if (!table.complete(key)) {
+      LOG.info(() -> "Join already completed for key " + key);
+      return;
+    }
+
+    OutputEvent event = OutputEvent.of(targetState, attributes);
+    outputConsumer.accept(event);
+    LOG.info(() -> "All states matched for key " + key + ": " + event.id());
+  }
+
+}
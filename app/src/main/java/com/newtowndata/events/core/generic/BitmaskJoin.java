@@ -0,0 +1,79 @@
+/*
+ * Copyright 2023-2024 Voyta Krizek, https://github.com/NewTownData
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.newtowndata.events.core.generic;
+
+import com.newtowndata.events.core.ApplicationEvent;
+import com.newtowndata.events.core.OutputEvent;
+import com.newtowndata.events.core.io.StateTable;
+import com.newtowndata.events.core.logging.Logger;
+import com.newtowndata.events.core.logging.LoggerFactory;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Join that stores a bit for each arrived source state, see {@link JoinMode#BITMASK}.
+ */
+final class BitmaskJoin extends JoinStrategy {
+
+  private static final Logger LOG = LoggerFactory.create(BitmaskJoin.class);
+
+  private final Map<String, Long> sourceStateBits;
+  private final long completeBits;
+
+  BitmaskJoin(Set<String> requiredSourceStates, String targetState) {
+    super(requiredSourceStates, targetState);
+
+    // bits are stored, so they must not depend on the iteration order of the set
+    Map<String, Long> bits = new HashMap<>();
+    long allBits = 0;
+    for (String sourceState : requiredSourceStates.stream().sorted().toList()) {
+      long bit = 1L << bits.size();
+      bits.put(sourceState, bit);
+      allBits |= bit;
+    }
+    this.sourceStateBits = Map.copyOf(bits);
+    this.completeBits = allBits;
+  }
+
+  @Override
+  void join(StateTable table, String key, List<ApplicationEvent> inputs,
+      Consumer<OutputEvent> outputConsumer) {
+    long bits = 0;
+    for (String sourceState : requiredStates(key, inputs)) {
+      bits |= sourceStateBits.get(sourceState);
+    }
+    if (bits == 0) {
+      return;
+    }
+
+    long allBits = table.addBits(key, bits);
+    if ((allBits & completeBits) != completeBits) {
+      LOG.info(() -> "Not all states matched yet for key " + key + ": "
+          + Long.toBinaryString(allBits));
+      return;
+    }
+    if (!table.complete(key)) {
+      LOG.info(() -> "Join already completed for key " + key);
+      return;
+    }
+
+    OutputEvent event = OutputEvent.of(targetState, last(inputs).attributes());
+    outputConsumer.accept(event);
+    LOG.info(() -> "All states matched for key " + key + ": " + event.id());
+  }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2023-2024 Voyta Krizek, https://github.com/NewTownData
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.newtowndata.events.core.generic;
+
+import com.newtowndata.events.core.ApplicationConstants;
+import com.newtowndata.events.core.ApplicationEvent;
+import com.newtowndata.events.core.OutputEvent;
+import com.newtowndata.events.core.io.StateTable;
+import com.newtowndata.events.core.logging.Logger;
+import com.newtowndata.events.core.logging.LoggerFactory;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Partial join that also completes once a deadline after the first arrival passes. The first
+ * arrival sends a delayed event back to the join state, which completes the join with the source
+ * states that arrived until then. The deadline is scheduled once per trace by completing a key of
+ * its own, so duplicate and late arrivals do not send it again.
+ */
+final class DeadlineJoin extends QuorumJoin {
+
+  private static final Logger LOG = LoggerFactory.create(DeadlineJoin.class);
+
+  private static final String DEADLINE_KEY_SUFFIX = "|deadline";
+
+  private final String stateName;
+  private final Duration deadline;
+
+  DeadlineJoin(String stateName, Set<String> requiredSourceStates, String targetState,
+      int quorum, Duration deadline) {
+    super(requiredSourceStates, targetState, quorum);
+    this.stateName = stateName;
+    this.deadline = deadline;
+  }
+
+  @Override
+  void join(StateTable table, String key, List<ApplicationEvent> inputs,
+      Consumer<OutputEvent> outputConsumer) {
+    if (isCompleted(key)) {
+      return;
+    }
+    // the deadline event is sent by this state to itself
+    List<ApplicationEvent> arrivals =
+        inputs.stream().filter(input -> !stateName.equals(input.sourceState())).toList();
+    boolean deadlinePassed = arrivals.size() < inputs.size();
+
+    Set<String> addedStates = requiredStates(key, arrivals);
+    if (addedStates.isEmpty() && !deadlinePassed) {
+      return;
+    }
+    Set<String> arrivedStates = arrivedStates(
+        addedStates.isEmpty() ? table.getStates(key) : table.addStates(key, addedStates));
+
+    if (arrivedStates.size() >= quorum || (deadlinePassed && !arrivedStates.isEmpty())) {
+      complete(table, key, arrivedStates, last(inputs), outputConsumer);
+    } else if (arrivedStates.isEmpty()) {
+      // completion dropped the states and a completed key takes no more
+      markCompleted(key);
+    } else if (addedStates.containsAll(arrivedStates)
+        && table.complete(key + DEADLINE_KEY_SUFFIX)) {
+      // first arrival
+      Map<String, String> attributes = new HashMap<>(last(inputs).attributes());
+      attributes.put(ApplicationConstants.ATTRIBUTE_WAIT_TIME_IN_SEC,
+          Long.toString(Math.max(1, (deadline.toMillis() + 999) / 1000)));
+      outputConsumer.accept(OutputEvent.of(stateName, attributes));
+      LOG.info(() -> "Join deadline for key " + key + " in " + deadline);
+    } else {
+      LOG.info(() -> "Not enough states matched yet for key " + key + ": " + arrivedStates);
+    }
+  }
+
+}
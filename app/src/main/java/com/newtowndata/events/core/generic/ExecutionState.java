@@ -16,29 +16,115 @@ package com.newtowndata.events.core.generic;
 import com.newtowndata.events.core.ApplicationEvent;
 import com.newtowndata.events.core.OutputEvent;
 import com.newtowndata.events.core.StateContext;
+import com.newtowndata.events.core.io.ObjectStorage;
+import com.newtowndata.events.core.utils.AttributeUtils;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiFunction;
 import java.util.function.Consumer;
 
 /**
- * State that executes code.
+ * State that executes code. The code can return attribute updates that are merged into the
+ * attributes of the produced event, so small results do not have to go through the object
+ * storage. Values that would make the event exceed the message size limit are moved to the object
+ * storage and resolved again when a later execution state receives them.
  */
 public class ExecutionState extends GenericState {
 
   private final String targetState;
-  private final Consumer<StateContext> executionRunner;
+  private final BiFunction<StateContext, ApplicationEvent, Map<String, String>> executionFunction;
+  private final String storageName;
+  private final int maxAttributesSizeInBytes;
 
   public ExecutionState(String stateName, String targetState,
       Consumer<StateContext> executionRunner) {
+    this(stateName, targetState, withoutUpdates(executionRunner), null,
+        AttributeUtils.MAX_ATTRIBUTES_SIZE_IN_BYTES);
+  }
+
+  /**
+   * @param stateName State name.
+   * @param targetState Target state.
+   * @param executionFunction Code that receives the input event with resolved attributes and
+   *        returns attribute updates, a {@code null} value removes the attribute.
+   * @param storageName Storage for values that do not fit into the event.
+   */
+  public ExecutionState(String stateName, String targetState,
+      BiFunction<StateContext, ApplicationEvent, Map<String, String>> executionFunction,
+      String storageName) {
+    this(stateName, targetState, executionFunction,
+        Objects.requireNonNull(storageName, "storageName"),
+        AttributeUtils.MAX_ATTRIBUTES_SIZE_IN_BYTES);
+  }
+
+  ExecutionState(String stateName, String targetState,
+      BiFunction<StateContext, ApplicationEvent, Map<String, String>> executionFunction,
+      String storageName, int maxAttributesSizeInBytes) {
     super(stateName);
     this.targetState = Objects.requireNonNull(targetState, "targetState");
-    this.executionRunner = Objects.requireNonNull(executionRunner, "executionRunner");
+    this.executionFunction = Objects.requireNonNull(executionFunction, "executionFunction");
+    this.storageName = storageName;
+    this.maxAttributesSizeInBytes = maxAttributesSizeInBytes;
+  }
+
+  private static BiFunction<StateContext, ApplicationEvent, Map<String, String>> withoutUpdates(
+      Consumer<StateContext> executionRunner) {
+    Objects.requireNonNull(executionRunner, "executionRunner");
+    return (stateContext, input) -> {
+      executionRunner.accept(stateContext);
+      return Map.of();
+    };
+  }
+
+  @Override
+  public Set<String> targetStates() {
+    return Set.of(targetState);
   }
 
   @Override
   protected void handleEvent(StateContext stateContext, ApplicationEvent input,
       Consumer<OutputEvent> outputConsumer) {
-    executionRunner.accept(stateContext);
-    outputConsumer.accept(OutputEvent.of(targetState, input.attributes()));
+    ApplicationEvent resolvedInput = input;
+    if (storageName != null) {
+      Map<String, String> attributes =
+          AttributeUtils.resolve(stateContext.asyncObjectStorage(), storageName,
+              input.attributes());
+      if (attributes != input.attributes()) {
+        resolvedInput = new ApplicationEvent(input.id(), input.traceId(), input.ttl(),
+            input.sourceState(), input.targetState(), attributes);
+      }
+    }
+
+    Map<String, String> updates = executionFunction.apply(stateContext, resolvedInput);
+    if (updates == null || updates.isEmpty()) {
+      outputConsumer.accept(OutputEvent.of(targetState, input.attributes()));
+      return;
+    }
+
+    // unchanged references are forwarded without reading them
+    Map<String, String> attributes = new HashMap<>(input.attributes());
+    updates.forEach((name, value) -> {
+      if (value == null) {
+        attributes.remove(name);
+      } else {
+        attributes.put(name, value);
+      }
+    });
+
+    if (AttributeUtils.estimateSize(attributes) > maxAttributesSizeInBytes) {
+      if (storageName == null) {
+        throw new IllegalStateException("Attributes of " + stateName() + " exceed "
+            + maxAttributesSizeInBytes + " bytes and no storage is defined");
+      }
+      ObjectStorage objectStorage = stateContext.objectStorage();
+      String pathPrefix = input.traceId() + ObjectStorage.PATH_SEPARATOR + input.id();
+      outputConsumer.accept(OutputEvent.of(targetState, AttributeUtils.offload(objectStorage,
+          storageName, pathPrefix, attributes, updates.keySet(), maxAttributesSizeInBytes)));
+      return;
+    }
+    outputConsumer.accept(OutputEvent.of(targetState, attributes));
   }
 
 }
@@ -18,6 +18,7 @@ import com.newtowndata.events.core.OutputEvent;
 import com.newtowndata.events.core.StateContext;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.function.Consumer;
 
 /**
@@ -32,6 +33,11 @@ public class ForkState extends GenericState {
     this.targetStates = List.copyOf(Objects.requireNonNull(targetStates, "targetStates"));
   }
 
+  @Override
+  public Set<String> targetStates() {
+    return Set.copyOf(targetStates);
+  }
+
   @Override
   protected void handleEvent(StateContext stateContext, ApplicationEvent input,
       Consumer<OutputEvent> outputConsumer) {
@@ -47,7 +47,7 @@ public abstract class GenericState implements ApplicationState {
   public List<OutputEvent> handleEvent(StateContext stateContext, ApplicationEvent input) {
     List<OutputEvent> outputEvents = new ArrayList<>();
     handleEvent(stateContext, input, outputEvents::add);
-    LOG.info("Transition: " + EventUtils.eventToString(input) + " => "
+    LOG.info(() -> "Transition: " + EventUtils.eventToString(input) + " => "
         + outputEvents.stream().map(EventUtils::eventToString).toList());
     return outputEvents;
   }
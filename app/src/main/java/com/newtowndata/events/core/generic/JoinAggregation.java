@@ -0,0 +1,134 @@
+/*
+ * Copyright 2023-2024 Voyta Krizek, https://github.com/NewTownData
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.newtowndata.events.core.generic;
+
+import com.newtowndata.events.core.ApplicationConstants;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.BinaryOperator;
+
+/**
+ * Merges the attributes of the branches of a join. Each branch's attributes are stored in the
+ * state table together with its source state, so the join produces them without reading any
+ * branch output again. Values of the same attribute are merged in the order of the source state
+ * names with the attribute's merge function, or the last value wins if there is none.
+ */
+public final class JoinAggregation {
+
+  public static final JoinAggregation LAST_VALUE_WINS = new JoinAggregation(Map.of());
+
+  private static final char SOURCE_SEPARATOR = '?';
+  private static final char ATTRIBUTE_SEPARATOR = '&';
+  private static final char VALUE_SEPARATOR = '=';
+
+  private final Map<String, BinaryOperator<String>> mergeFunctions;
+
+  private JoinAggregation(Map<String, BinaryOperator<String>> mergeFunctions) {
+    this.mergeFunctions = Map.copyOf(Objects.requireNonNull(mergeFunctions, "mergeFunctions"));
+  }
+
+  /**
+   * @param mergeFunctions Merge functions by attribute name.
+   * @return Aggregation using the merge functions.
+   */
+  public static JoinAggregation of(Map<String, BinaryOperator<String>> mergeFunctions) {
+    return new JoinAggregation(mergeFunctions);
+  }
+
+  /**
+   * @param delimiter Delimiter of the values.
+   * @return Merge function that joins the values with the delimiter.
+   */
+  public static BinaryOperator<String> joining(String delimiter) {
+    Objects.requireNonNull(delimiter, "delimiter");
+    return (first, second) -> first + delimiter + second;
+  }
+
+  /**
+   * Encode the branch as a state table state. Percent encoding never produces the separators.
+   */
+  String encode(String sourceState, Map<String, String> attributes) {
+    StringBuilder builder = new StringBuilder(encode(sourceState)).append(SOURCE_SEPARATOR);
+    boolean first = true;
+    for (Map.Entry<String, String> attribute : new TreeMap<>(attributes).entrySet()) {
+      if (ApplicationConstants.ATTRIBUTE_WAIT_TIME_IN_SEC.equals(attribute.getKey())) {
+        continue;
+      }
+      if (!first) {
+        builder.append(ATTRIBUTE_SEPARATOR);
+      }
+      builder.append(encode(attribute.getKey())).append(VALUE_SEPARATOR)
+          .append(encode(attribute.getValue()));
+      first = false;
+    }
+    return builder.toString();
+  }
+
+  /**
+   * @param states States encoded by {@link #encode(String, Map)}.
+   * @return Attributes by source state, sorted by the source state.
+   */
+  Map<String, Map<String, String>> decode(Collection<String> states) {
+    Map<String, Map<String, String>> branches = new TreeMap<>();
+    for (String state : states) {
+      int sourceEnd = state.indexOf(SOURCE_SEPARATOR);
+      if (sourceEnd < 0) {
+        continue;
+      }
+
+      Map<String, String> attributes = new LinkedHashMap<>();
+      int start = sourceEnd + 1;
+      while (start < state.length()) {
+        int end = state.indexOf(ATTRIBUTE_SEPARATOR, start);
+        if (end < 0) {
+          end = state.length();
+        }
+        int valueStart = state.indexOf(VALUE_SEPARATOR, start);
+        attributes.put(decode(state.substring(start, valueStart)),
+            decode(state.substring(valueStart + 1, end)));
+        start = end + 1;
+      }
+      branches.put(decode(state.substring(0, sourceEnd)), attributes);
+    }
+    return branches;
+  }
+
+  /**
+   * @param branches Attributes by source state, sorted by the source state.
+   * @return Merged attributes.
+   */
+  Map<String, String> merge(Map<String, Map<String, String>> branches) {
+    Map<String, String> merged = new LinkedHashMap<>();
+    for (Map<String, String> attributes : branches.values()) {
+      attributes.forEach((name, value) -> merged.merge(name, value,
+          mergeFunctions.getOrDefault(name, (first, second) -> second)));
+    }
+    return merged;
+  }
+
+  private static String encode(String value) {
+    return URLEncoder.encode(value, StandardCharsets.UTF_8);
+  }
+
+  private static String decode(String value) {
+    return URLDecoder.decode(value, StandardCharsets.UTF_8);
+  }
+
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2023-2024 Voyta Krizek, https://github.com/NewTownData
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.newtowndata.events.core.generic;
+
+/**
+ * How {@link JoinState} records arrived source states in the state table.
+ */
+public enum JoinMode {
+
+  /**
+   * Source state names are stored as a set.
+   */
+  STATE_SET,
+
+  /**
+   * Each required source state has a bit and the join is stored as a single number. Supports at
+   * most 64 required source states.
+   */
+  BITMASK;
+
+}
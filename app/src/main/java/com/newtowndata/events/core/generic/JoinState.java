@@ -14,56 +14,203 @@
 package com.newtowndata.events.core.generic;
 
 import com.newtowndata.events.core.ApplicationEvent;
+import com.newtowndata.events.core.CoalescingState;
 import com.newtowndata.events.core.OutputEvent;
 import com.newtowndata.events.core.StateContext;
-import com.newtowndata.events.core.io.StateTable;
 import com.newtowndata.events.core.logging.Logger;
 import com.newtowndata.events.core.logging.LoggerFactory;
-import java.util.HashSet;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 import java.util.function.Consumer;
 
 /**
- * State that waits for all required source states to finish.
+ * State that waits for all required source states to finish. Branches of the same trace that
+ * arrive together are joined with a single state table update.
+ * 
+ * <p>
+ * A partial join completes once a quorum of the required source states has finished or once a
+ * deadline after the first arrival passes, whichever comes first. The produced event lists the
+ * source states that were still missing. The deadline is a delayed event, so it is limited by
+ * {@link #MAX_DEADLINE}.
+ * 
+ * <p>
+ * An aggregating join stores the attributes of each branch with its source state and produces
+ * them merged by a {@link JoinAggregation}, instead of only the attributes of the last branch.
  */
-public class JoinState extends GenericState {
+public class JoinState extends GenericState implements CoalescingState {
+
+  /**
+   * Longest delay of an SQS message.
+   */
+  public static final Duration MAX_DEADLINE = Duration.ofMinutes(15);
 
   private static final Logger LOG = LoggerFactory.create(JoinState.class);
 
   private static final String KEY_SEPARATOR = "|";
 
-  private final Set<String> requiredSourceStates;
   private final String targetState;
+  private final boolean hasDeadline;
+  private final JoinStrategy strategy;
 
   public JoinState(String stateName, Set<String> requiredSourceStates, String targetState) {
-    super(stateName);
-    this.requiredSourceStates =
-        Set.copyOf(Objects.requireNonNull(requiredSourceStates, "requiredSourceStates"));
-    this.targetState = Objects.requireNonNull(targetState, "targetState");
+    this(of(stateName, requiredSourceStates, targetState));
+  }
+
+  private JoinState(Builder builder) {
+    super(builder.stateName);
+    Set<String> requiredSourceStates = builder.requiredSourceStates;
+    int quorum = builder.quorum;
+    Duration deadline = builder.deadline;
+    this.targetState = builder.targetState;
+    this.hasDeadline = !deadline.isZero();
+
+    if (quorum < Math.min(1, requiredSourceStates.size())
+        || quorum > requiredSourceStates.size()) {
+      throw new IllegalArgumentException(
+          "Quorum must be between 1 and " + requiredSourceStates.size() + ": " + quorum);
+    }
+    if (deadline.isNegative() || deadline.compareTo(MAX_DEADLINE) > 0) {
+      throw new IllegalArgumentException(
+          "Deadline must be between 0 and " + MAX_DEADLINE + ": " + deadline);
+    }
+    boolean partial = quorum < requiredSourceStates.size() || hasDeadline;
+    if ((builder.joinMode == JoinMode.BITMASK || builder.aggregation != null) && partial) {
+      throw new IllegalArgumentException(
+          "Only a plain state set join can be partial: " + stateName());
+    }
+    if (builder.joinMode == JoinMode.BITMASK && builder.aggregation != null) {
+      throw new IllegalArgumentException("Bitmask join cannot aggregate: " + stateName());
+    }
+    if (builder.joinMode == JoinMode.BITMASK && requiredSourceStates.size() > Long.SIZE) {
+      throw new IllegalArgumentException(
+          "Bitmask join supports at most " + Long.SIZE + " source states: " + stateName());
+    }
+
+    if (builder.aggregation != null) {
+      this.strategy =
+          new AggregatingJoin(requiredSourceStates, targetState, builder.aggregation);
+    } else if (hasDeadline) {
+      this.strategy =
+          new DeadlineJoin(stateName(), requiredSourceStates, targetState, quorum, deadline);
+    } else if (partial) {
+      this.strategy = new QuorumJoin(requiredSourceStates, targetState, quorum);
+    } else if (builder.joinMode == JoinMode.BITMASK) {
+      this.strategy = new BitmaskJoin(requiredSourceStates, targetState);
+    } else {
+      this.strategy = new StateSetJoin(requiredSourceStates, targetState);
+    }
+  }
+
+  /**
+   * Start building a join that waits for all required source states.
+   * 
+   * @param stateName State name.
+   * @param requiredSourceStates Source states to wait for.
+   * @param targetState Target state.
+   * @return Join builder.
+   */
+  public static Builder of(String stateName, Set<String> requiredSourceStates,
+      String targetState) {
+    return new Builder(stateName, requiredSourceStates, targetState);
+  }
+
+  @Override
+  public Set<String> targetStates() {
+    // the deadline is an event delayed back to this state
+    return hasDeadline ? Set.of(targetState, stateName()) : Set.of(targetState);
+  }
+
+  @Override
+  public String coalescingKey(ApplicationEvent input) {
+    return input.traceId();
+  }
+
+  /**
+   * Join the source states of all events in one update. The produced event has the attributes of
+   * the last event.
+   */
+  @Override
+  public List<OutputEvent> handleEvents(StateContext stateContext, List<ApplicationEvent> inputs) {
+    if (inputs.isEmpty()) {
+      throw new IllegalArgumentException("No events to join: " + stateName());
+    }
+
+    String traceId = inputs.get(inputs.size() - 1).traceId();
+    String key = stateName() + KEY_SEPARATOR + traceId;
+    for (ApplicationEvent input : inputs) {
+      if (!traceId.equals(input.traceId())) {
+        throw new IllegalArgumentException("Events of different traces: " + key);
+      }
+    }
+
+    List<OutputEvent> outputEvents = new ArrayList<>();
+    strategy.join(stateContext.stateTable(), key, inputs, outputEvents::add);
+    LOG.info(() -> "Joined " + inputs.size() + " events for key " + key);
+    return outputEvents;
   }
 
   @Override
   protected void handleEvent(StateContext stateContext, ApplicationEvent input,
       Consumer<OutputEvent> outputConsumer) {
-    StateTable table = stateContext.stateTable();
-
     String key = stateName() + KEY_SEPARATOR + input.traceId();
+    strategy.join(stateContext.stateTable(), key, List.of(input), outputConsumer);
+  }
 
-    Set<String> savedStates = table.getStates(key);
-    Set<String> allStates = new HashSet<>(savedStates);
-    allStates.add(input.sourceState());
-    LOG.info("States for key " + key + ": " + allStates);
+  public final static class Builder {
 
-    if (requiredSourceStates.stream().allMatch(allStates::contains)) {
-      OutputEvent event = OutputEvent.of(targetState, input.attributes());
-      outputConsumer.accept(event);
-      table.deleteState(key);
-      LOG.info("All states matched for key " + key + ": " + event.id());
-    } else {
-      table.putState(key, input.sourceState());
-      LOG.info("Not all states matched yet for key " + key);
+    private final String stateName;
+    private final Set<String> requiredSourceStates;
+    private final String targetState;
+    private JoinMode joinMode = JoinMode.STATE_SET;
+    private int quorum;
+    private Duration deadline = Duration.ZERO;
+    private JoinAggregation aggregation;
+
+    private Builder(String stateName, Set<String> requiredSourceStates, String targetState) {
+      this.stateName = stateName;
+      this.requiredSourceStates =
+          Set.copyOf(Objects.requireNonNull(requiredSourceStates, "requiredSourceStates"));
+      this.targetState = Objects.requireNonNull(targetState, "targetState");
+      this.quorum = this.requiredSourceStates.size();
     }
+
+    public Builder withMode(JoinMode joinMode) {
+      this.joinMode = Objects.requireNonNull(joinMode, "joinMode");
+      return this;
+    }
+
+    /**
+     * @param quorum Number of required source states that completes the join.
+     */
+    public Builder withQuorum(int quorum) {
+      this.quorum = quorum;
+      return this;
+    }
+
+    /**
+     * @param deadline Time after the first arrival that completes the join, at most
+     *        {@link JoinState#MAX_DEADLINE}.
+     */
+    public Builder withDeadline(Duration deadline) {
+      this.deadline = Objects.requireNonNull(deadline, "deadline");
+      return this;
+    }
+
+    /**
+     * @param aggregation Merges the attributes of the source states.
+     */
+    public Builder withAggregation(JoinAggregation aggregation) {
+      this.aggregation = Objects.requireNonNull(aggregation, "aggregation");
+      return this;
+    }
+
+    public JoinState build() {
+      return new JoinState(this);
+    }
+
   }
 
 }
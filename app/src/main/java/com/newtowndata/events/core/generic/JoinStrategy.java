@@ -0,0 +1,72 @@
+/*
+ * Copyright 2023-2024 Voyta Krizek, https://github.com/NewTownData
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.newtowndata.events.core.generic;
+
+import com.newtowndata.events.core.ApplicationEvent;
+import com.newtowndata.events.core.OutputEvent;
+import com.newtowndata.events.core.io.StateTable;
+import com.newtowndata.events.core.logging.Logger;
+import com.newtowndata.events.core.logging.LoggerFactory;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * How {@link JoinState} records the arrived source states of a trace and decides that the join
+ * is complete.
+ */
+abstract class JoinStrategy {
+
+  private static final Logger LOG = LoggerFactory.create(JoinStrategy.class);
+
+  protected final Set<String> requiredSourceStates;
+  protected final String targetState;
+
+  protected JoinStrategy(Set<String> requiredSourceStates, String targetState) {
+    this.requiredSourceStates = requiredSourceStates;
+    this.targetState = targetState;
+  }
+
+  /**
+   * Record the source states of the events and produce the target event once the join completes.
+   * 
+   * @param table State table.
+   * @param key State table key of the trace.
+   * @param inputs Events of the same trace, the last one provides the produced attributes.
+   * @param outputConsumer Consumer of the produced events.
+   */
+  abstract void join(StateTable table, String key, List<ApplicationEvent> inputs,
+      Consumer<OutputEvent> outputConsumer);
+
+  /**
+   * @return Required source states of the events, unexpected source states are skipped.
+   */
+  protected Set<String> requiredStates(String key, List<ApplicationEvent> inputs) {
+    Set<String> states = new LinkedHashSet<>();
+    for (ApplicationEvent input : inputs) {
+      if (requiredSourceStates.contains(input.sourceState())) {
+        states.add(input.sourceState());
+      } else {
+        LOG.warn(() -> "Unexpected source state for key " + key + ": " + input.sourceState());
+      }
+    }
+    return states;
+  }
+
+  protected static ApplicationEvent last(List<ApplicationEvent> inputs) {
+    return inputs.get(inputs.size() - 1);
+  }
+
+}
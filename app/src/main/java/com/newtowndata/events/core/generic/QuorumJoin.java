@@ -0,0 +1,134 @@
+/*
+ * Copyright 2023-2024 Voyta Krizek, https://github.com/NewTownData
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.newtowndata.events.core.generic;
+
+import com.newtowndata.events.core.ApplicationConstants;
+import com.newtowndata.events.core.ApplicationEvent;
+import com.newtowndata.events.core.OutputEvent;
+import com.newtowndata.events.core.io.StateTable;
+import com.newtowndata.events.core.logging.Logger;
+import com.newtowndata.events.core.logging.LoggerFactory;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+/**
+ * Partial join that completes once a quorum of the required source states has arrived. The
+ * produced event lists the source states that were still missing. The remaining source states
+ * arrive after the completion, so the keys completed by this instance are remembered to discard
+ * them without the state table.
+ */
+class QuorumJoin extends JoinStrategy {
+
+  private static final Logger LOG = LoggerFactory.create(QuorumJoin.class);
+
+  private static final int COMPLETED_KEYS_CACHE_SIZE = 10_000;
+
+  protected final int quorum;
+  private final Set<String> completedKeys;
+
+  QuorumJoin(Set<String> requiredSourceStates, String targetState, int quorum) {
+    super(requiredSourceStates, targetState);
+    this.quorum = quorum;
+    this.completedKeys = Collections.newSetFromMap(Collections.synchronizedMap(
+        new LinkedHashMap<>() {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > COMPLETED_KEYS_CACHE_SIZE;
+          }
+        }));
+  }
+
+  @Override
+  void join(StateTable table, String key, List<ApplicationEvent> inputs,
+      Consumer<OutputEvent> outputConsumer) {
+    if (isCompleted(key)) {
+      return;
+    }
+    Set<String> addedStates = requiredStates(key, inputs);
+    if (addedStates.isEmpty()) {
+      return;
+    }
+
+    Set<String> arrivedStates = arrivedStates(table.addStates(key, addedStates));
+    if (arrivedStates.isEmpty()) {
+      // a completed key takes no more states
+      markCompleted(key);
+    } else if (arrivedStates.size() >= quorum) {
+      complete(table, key, arrivedStates, last(inputs), outputConsumer);
+    } else {
+      LOG.info(() -> "Not enough states matched yet for key " + key + ": " + arrivedStates);
+    }
+  }
+
+  /**
+   * @return Distinct required source states among the stored states.
+   */
+  protected Set<String> arrivedStates(Set<String> storedStates) {
+    Set<String> arrivedStates = new LinkedHashSet<>(storedStates);
+    arrivedStates.retainAll(requiredSourceStates);
+    return arrivedStates;
+  }
+
+  /**
+   * Produce the target event unless the join was completed by another call, e.g. by a duplicate
+   * delivery. Completion drops the stored states.
+   */
+  protected void complete(StateTable table, String key, Set<String> arrivedStates,
+      ApplicationEvent input, Consumer<OutputEvent> outputConsumer) {
+    if (!table.complete(key)) {
+      markCompleted(key);
+      return;
+    }
+    completedKeys.add(key);
+
+    Set<String> missingStates = new TreeSet<>(requiredSourceStates);
+    missingStates.removeAll(arrivedStates);
+
+    Map<String, String> attributes = new HashMap<>(input.attributes());
+    attributes.remove(ApplicationConstants.ATTRIBUTE_WAIT_TIME_IN_SEC);
+    if (!missingStates.isEmpty()) {
+      attributes.put(ApplicationConstants.ATTRIBUTE_JOIN_MISSING_STATES,
+          String.join(",", missingStates));
+    }
+    OutputEvent event = OutputEvent.of(targetState, attributes);
+    outputConsumer.accept(event);
+    LOG.info(() -> "Join completed for key " + key + ": " + event.id() + ", missing states: "
+        + missingStates);
+  }
+
+  /**
+   * @return Whether this instance has seen the key completed, in which case the events are
+   *         discarded.
+   */
+  protected boolean isCompleted(String key) {
+    if (!completedKeys.contains(key)) {
+      return false;
+    }
+    LOG.info(() -> "Join already completed for key " + key + ", discarding late arrival");
+    return true;
+  }
+
+  protected void markCompleted(String key) {
+    completedKeys.add(key);
+    LOG.info(() -> "Join already completed for key " + key);
+  }
+
+}
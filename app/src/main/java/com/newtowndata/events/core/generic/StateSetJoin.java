@@ -0,0 +1,59 @@
+/*
+ * Copyright 2023-2024 Voyta Krizek, https://github.com/NewTownData
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.newtowndata.events.core.generic;
+
+import com.newtowndata.events.core.ApplicationEvent;
+import com.newtowndata.events.core.OutputEvent;
+import com.newtowndata.events.core.io.StateTable;
+import com.newtowndata.events.core.logging.Logger;
+import com.newtowndata.events.core.logging.LoggerFactory;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Join that stores the names of the arrived source states and waits for all of them.
+ */
+final class StateSetJoin extends JoinStrategy {
+
+  private static final Logger LOG = LoggerFactory.create(StateSetJoin.class);
+
+  StateSetJoin(Set<String> requiredSourceStates, String targetState) {
+    super(requiredSourceStates, targetState);
+  }
+
+  @Override
+  void join(StateTable table, String key, List<ApplicationEvent> inputs,
+      Consumer<OutputEvent> outputConsumer) {
+    ApplicationEvent lastInput = last(inputs);
+    boolean complete;
+    if (inputs.size() == 1) {
+      complete = table.addStateAndComplete(key, lastInput.sourceState(), requiredSourceStates);
+    } else {
+      Set<String> sourceStates = new LinkedHashSet<>();
+      inputs.forEach(input -> sourceStates.add(input.sourceState()));
+      complete = table.addStatesAndComplete(key, sourceStates, requiredSourceStates);
+    }
+
+    if (complete) {
+      OutputEvent event = OutputEvent.of(targetState, lastInput.attributes());
+      outputConsumer.accept(event);
+      LOG.info(() -> "All states matched for key " + key + ": " + event.id());
+    } else {
+      LOG.info(() -> "Not all states matched yet for key " + key);
+    }
+  }
+
+}
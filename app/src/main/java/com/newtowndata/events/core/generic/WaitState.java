@@ -23,6 +23,7 @@ import com.newtowndata.events.core.utils.EventUtils;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.function.Consumer;
 
 /**
@@ -44,6 +45,11 @@ public class WaitState extends GenericState {
     }
   }
 
+  @Override
+  public Set<String> targetStates() {
+    return Set.of(targetState);
+  }
+
   @Override
   protected void handleEvent(StateContext stateContext, ApplicationEvent input,
       Consumer<OutputEvent> outputConsumer) {
@@ -53,7 +59,7 @@ public class WaitState extends GenericState {
 
     OutputEvent event = OutputEvent.of(targetState, attributes);
     outputConsumer.accept(event);
-    LOG.info(EventUtils.eventToString(event) + ": waiting for " + waitDurationInSec + " sec");
+    LOG.info(() -> EventUtils.eventToString(event) + ": waiting for " + waitDurationInSec + " sec");
   }
 
 }
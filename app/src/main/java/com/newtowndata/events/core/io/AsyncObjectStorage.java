@@ -0,0 +1,59 @@
+/*
+ * Copyright 2023-2024 Voyta Krizek, https://github.com/NewTownData
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.newtowndata.events.core.io;
+
+import com.newtowndata.events.core.utils.FutureUtils;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking variant of {@link ObjectStorage}. Failed operations complete their future
+ * exceptionally.
+ */
+public interface AsyncObjectStorage {
+
+  public static final int DEFAULT_MAX_CONCURRENCY = 16;
+
+  CompletableFuture<byte[]> getObjectBytes(String storageName, String path);
+
+  default CompletableFuture<String> getObjectAsString(String storageName, String path) {
+    return getObjectBytes(storageName, path)
+        .thenApply(data -> new String(data, StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Reads the objects with at most {@code maxConcurrency} reads in flight.
+   *
+   * @return Content by path in the order of the paths.
+   */
+  default CompletableFuture<Map<String, byte[]>> getObjects(String storageName,
+      Collection<String> paths, int maxConcurrency) {
+    return FutureUtils.mapLimited(paths, maxConcurrency,
+        path -> getObjectBytes(storageName, path));
+  }
+
+  /**
+   * Uploads the array, which must not be modified until the future completes.
+   */
+  CompletableFuture<Void> putObject(String storageName, String path, byte[] data);
+
+  default CompletableFuture<Void> putObject(String storageName, String path, String data) {
+    return putObject(storageName, path, data.getBytes(StandardCharsets.UTF_8));
+  }
+
+  CompletableFuture<Void> deleteObject(String storageName, String path);
+
+}
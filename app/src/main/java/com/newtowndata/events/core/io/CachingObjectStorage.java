@@ -0,0 +1,415 @@
+/*
+ * Copyright 2023-2024 Voyta Krizek, https://github.com/NewTownData
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.newtowndata.events.core.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Bounded in-memory cache in front of another {@link ObjectStorage}. Objects are kept within a
+ * byte budget and the least recently used ones are evicted first. Writes go through to the
+ * delegate and populate the cache, deletes invalidate it. With revalidation enabled, every hit is
+ * checked against the delegate's ETag, which keeps the cache correct when other processes write
+ * the same objects.
+ */
+public class CachingObjectStorage implements ObjectStorage {
+
+  public static final long DEFAULT_MAX_OBJECT_SIZE_IN_BYTES = 1024 * 1024;
+
+  // fills are abandoned rather than tracked forever when streams are never closed
+  private static final int MAX_PENDING_FILLS = 1024;
+
+  private final ObjectStorage delegate;
+  private final long maxSizeInBytes;
+  private final long maxObjectSizeInBytes;
+  private final boolean revalidate;
+  private final LinkedHashMap<Key, Entry> entries;
+  private final Map<Key, Object> pendingFills;
+  private final AtomicLong hitCount;
+  private final AtomicLong missCount;
+  private final AtomicLong evictionCount;
+  private long sizeInBytes;
+
+  public CachingObjectStorage(ObjectStorage delegate, long maxSizeInBytes) {
+    this(delegate, maxSizeInBytes, Math.min(maxSizeInBytes, DEFAULT_MAX_OBJECT_SIZE_IN_BYTES),
+        false);
+  }
+
+  /**
+   * @param delegate Object storage holding the data.
+   * @param maxSizeInBytes Byte budget of all cached objects.
+   * @param maxObjectSizeInBytes Larger objects are streamed without being cached.
+   * @param revalidate Compare the delegate's ETag on every hit.
+   */
+  public CachingObjectStorage(ObjectStorage delegate, long maxSizeInBytes,
+      long maxObjectSizeInBytes, boolean revalidate) {
+    this.delegate = Objects.requireNonNull(delegate, "delegate");
+    if (maxSizeInBytes <= 0) {
+      throw new IllegalArgumentException("Cache size must be positive: " + maxSizeInBytes);
+    }
+    if (maxObjectSizeInBytes <= 0 || maxObjectSizeInBytes > maxSizeInBytes) {
+      throw new IllegalArgumentException("Invalid max object size: " + maxObjectSizeInBytes);
+    }
+    this.maxSizeInBytes = maxSizeInBytes;
+    this.maxObjectSizeInBytes = maxObjectSizeInBytes;
+    this.revalidate = revalidate;
+    this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    this.pendingFills = new HashMap<>();
+    this.hitCount = new AtomicLong();
+    this.missCount = new AtomicLong();
+    this.evictionCount = new AtomicLong();
+  }
+
+  /**
+   * @return {@code objectStorage} wrapped in a cache, or unchanged when the cache size is not
+   *         positive.
+   */
+  public static ObjectStorage wrap(ObjectStorage objectStorage, long maxSizeInBytes,
+      boolean revalidate) {
+    if (maxSizeInBytes <= 0) {
+      return objectStorage;
+    }
+    return new CachingObjectStorage(objectStorage, maxSizeInBytes,
+        Math.min(maxSizeInBytes, DEFAULT_MAX_OBJECT_SIZE_IN_BYTES), revalidate);
+  }
+
+  @Override
+  public InputStream getObject(String storageName, String path) {
+    Key key = new Key(storageName, path);
+    Lookup lookup = lookup(key);
+    if (lookup.hit() != null) {
+      return new ByteArrayInputStream(lookup.hit().data());
+    }
+
+    try {
+      return new CapturingInputStream(delegate.getObject(storageName, path),
+          data -> fill(key, lookup, data), () -> cancelFill(key, lookup));
+    } catch (RuntimeException e) {
+      cancelFill(key, lookup);
+      throw e;
+    }
+  }
+
+  @Override
+  public byte[] getObjectBytes(String storageName, String path) {
+    Key key = new Key(storageName, path);
+    Lookup lookup = lookup(key);
+    if (lookup.hit() != null) {
+      return lookup.hit().data().clone();
+    }
+
+    byte[] data = load(key, lookup, () -> delegate.getObjectBytes(storageName, path));
+    if (data.length <= maxObjectSizeInBytes) {
+      fill(key, lookup, data.clone());
+    } else {
+      cancelFill(key, lookup);
+    }
+    return data;
+  }
+
+  @Override
+  public ByteBuffer getObjectBuffer(String storageName, String path) {
+    Key key = new Key(storageName, path);
+    Lookup lookup = lookup(key);
+    if (lookup.hit() != null) {
+      // hits share the cached array, so callers get a read-only view
+      return ByteBuffer.wrap(lookup.hit().data()).asReadOnlyBuffer();
+    }
+
+    ByteBuffer data = load(key, lookup, () -> delegate.getObjectBuffer(storageName, path));
+    if (data.remaining() <= maxObjectSizeInBytes) {
+      fill(key, lookup, toBytes(data));
+    } else {
+      cancelFill(key, lookup);
+    }
+    return data;
+  }
+
+  @Override
+  public void putObject(String storageName, String path, InputStream inputStream) {
+    Key key = new Key(storageName, path);
+    invalidate(key);
+
+    CapturingInputStream capturing = new CapturingInputStream(inputStream, null, null);
+    delegate.putObject(storageName, path, capturing);
+    written(key, capturing.capturedData());
+  }
+
+  @Override
+  public void putObject(String storageName, String path, InputStream inputStream,
+      long contentLength) {
+    Key key = new Key(storageName, path);
+    invalidate(key);
+
+    CapturingInputStream capturing = new CapturingInputStream(inputStream, null, null);
+    delegate.putObject(storageName, path, capturing, contentLength);
+    written(key, capturing.capturedData());
+  }
+
+  @Override
+  public void putObject(String storageName, String path, byte[] data) {
+    Key key = new Key(storageName, path);
+    invalidate(key);
+
+    delegate.putObject(storageName, path, data);
+    written(key, data.length <= maxObjectSizeInBytes ? data.clone() : null);
+  }
+
+  @Override
+  public void putObject(String storageName, String path, ByteBuffer data) {
+    Key key = new Key(storageName, path);
+    invalidate(key);
+
+    delegate.putObject(storageName, path, data);
+    written(key, data.remaining() <= maxObjectSizeInBytes ? toBytes(data) : null);
+  }
+
+  @Override
+  public void deleteObject(String storageName, String path) {
+    Key key = new Key(storageName, path);
+    invalidate(key);
+    delegate.deleteObject(storageName, path);
+  }
+
+  @Override
+  public Optional<String> getETag(String storageName, String path) {
+    return delegate.getETag(storageName, path);
+  }
+
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+
+  public synchronized long getSizeInBytes() {
+    return sizeInBytes;
+  }
+
+  private Lookup lookup(Key key) {
+    Entry entry;
+    synchronized (this) {
+      entry = entries.get(key);
+    }
+
+    String eTag = null;
+    if (revalidate) {
+      eTag = delegate.getETag(key.storageName(), key.path()).orElse(null);
+    }
+    if (entry != null && (!revalidate || (eTag != null && eTag.equals(entry.eTag())))) {
+      hitCount.incrementAndGet();
+      return new Lookup(entry, null, null);
+    }
+
+    missCount.incrementAndGet();
+    Object fill = new Object();
+    synchronized (this) {
+      if (entry != null && entries.get(key) == entry) {
+        remove(key);
+      }
+      if (pendingFills.size() >= MAX_PENDING_FILLS) {
+        pendingFills.clear();
+      }
+      pendingFills.put(key, fill);
+    }
+    // the ETag is read before the data, so a concurrent change can only make the entry stale
+    return new Lookup(null, fill, eTag);
+  }
+
+  private <T> T load(Key key, Lookup lookup, Supplier<T> loader) {
+    try {
+      return loader.get();
+    } catch (RuntimeException e) {
+      cancelFill(key, lookup);
+      throw e;
+    }
+  }
+
+  private void written(Key key, byte[] data) {
+    if (data == null) {
+      return;
+    }
+
+    String eTag = null;
+    if (revalidate) {
+      eTag = delegate.getETag(key.storageName(), key.path()).orElse(null);
+      if (eTag == null) {
+        return;
+      }
+    }
+    synchronized (this) {
+      insert(key, new Entry(data, eTag));
+    }
+  }
+
+  private synchronized void invalidate(Key key) {
+    pendingFills.remove(key);
+    remove(key);
+  }
+
+  private synchronized void fill(Key key, Lookup lookup, byte[] data) {
+    // a write or delete since the read started wins over the data read
+    if (pendingFills.remove(key, lookup.fill()) && (!revalidate || lookup.eTag() != null)) {
+      insert(key, new Entry(data, lookup.eTag()));
+    }
+  }
+
+  private synchronized void cancelFill(Key key, Lookup lookup) {
+    pendingFills.remove(key, lookup.fill());
+  }
+
+  private static byte[] toBytes(ByteBuffer data) {
+    byte[] bytes = new byte[data.remaining()];
+    data.duplicate().get(bytes);
+    return bytes;
+  }
+
+  private void insert(Key key, Entry entry) {
+    remove(key);
+    entries.put(key, entry);
+    sizeInBytes += entry.data().length;
+
+    Iterator<Entry> iterator = entries.values().iterator();
+    while (sizeInBytes > maxSizeInBytes && iterator.hasNext()) {
+      Entry eldest = iterator.next();
+      iterator.remove();
+      sizeInBytes -= eldest.data().length;
+      evictionCount.incrementAndGet();
+    }
+  }
+
+  private void remove(Key key) {
+    Entry removed = entries.remove(key);
+    if (removed != null) {
+      sizeInBytes -= removed.data().length;
+    }
+  }
+
+  private record Key(String storageName, String path) {
+
+    Key {
+      Objects.requireNonNull(storageName, "storageName");
+      Objects.requireNonNull(path, "path");
+    }
+  }
+
+  private record Entry(byte[] data, String eTag) {
+  }
+
+  private record Lookup(Entry hit, Object fill, String eTag) {
+  }
+
+  /**
+   * Copies the bytes read through it as long as they fit into a cache entry.
+   */
+  private class CapturingInputStream extends FilterInputStream {
+
+    private final Consumer<byte[]> onComplete;
+    private final Runnable onAbandon;
+    private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private boolean complete;
+    private boolean closed;
+
+    CapturingInputStream(InputStream in, Consumer<byte[]> onComplete,
+        Runnable onAbandon) {
+      super(Objects.requireNonNull(in, "inputStream"));
+      this.onComplete = onComplete;
+      this.onAbandon = onAbandon;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int value = super.read();
+      if (value < 0) {
+        complete = true;
+      } else if (buffer != null) {
+        buffer.write(value);
+        checkLimit();
+      }
+      return value;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int count = super.read(b, off, len);
+      if (count < 0) {
+        complete = true;
+      } else if (buffer != null) {
+        buffer.write(b, off, count);
+        checkLimit();
+      }
+      return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      // skipped bytes cannot be cached
+      buffer = null;
+      return super.skip(n);
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      try {
+        super.close();
+      } finally {
+        byte[] data = capturedData();
+        if (data != null && onComplete != null) {
+          onComplete.accept(data);
+        } else if (onAbandon != null) {
+          onAbandon.run();
+        }
+      }
+    }
+
+    byte[] capturedData() {
+      return complete && buffer != null ? buffer.toByteArray() : null;
+    }
+
+    private void checkLimit() {
+      if (buffer.size() > maxObjectSizeInBytes) {
+        buffer = null;
+      }
+    }
+  }
+
+}
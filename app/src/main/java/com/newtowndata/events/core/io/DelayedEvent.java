@@ -11,21 +11,22 @@
  * or implied. See the License for the specific language governing permissions and limitations under
  * the License.
  */
-package com.newtowndata.events.core.io.utils;
+package com.newtowndata.events.core.io;
 
-import com.newtowndata.events.core.io.ObjectStorage;
-import java.io.ByteArrayInputStream;
-import java.nio.charset.StandardCharsets;
+import com.newtowndata.events.core.ApplicationEvent;
+import java.util.Objects;
 
 /**
- * Utility class for {@link ObjectStorage}.
+ * Event to be published after the wait time.
  */
-public class StringInputStream extends ByteArrayInputStream {
+public record DelayedEvent(ApplicationEvent event, int waitInSec) {
 
-  public StringInputStream(String text) {
-    super(text.getBytes(StandardCharsets.UTF_8));
+  public DelayedEvent {
+    Objects.requireNonNull(event, "event");
+
+    if (waitInSec < 0) {
+      throw new IllegalStateException("Negative wait time: " + waitInSec);
+    }
   }
 
-  @Override
-  public void close() {}
 }
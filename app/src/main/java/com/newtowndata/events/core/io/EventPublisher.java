@@ -15,6 +15,7 @@ package com.newtowndata.events.core.io;
 
 import com.newtowndata.events.core.ApplicationConstants;
 import com.newtowndata.events.core.ApplicationEvent;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.stream.Collectors;
@@ -45,6 +46,30 @@ public interface EventPublisher {
    */
   void publishEvent(ApplicationEvent event, int waitInSec);
 
+  /**
+   * Publish all supplied events. Wait times are handled the same way as in
+   * {@link #publishEvent(ApplicationEvent)}.
+   * 
+   * @param events Events.
+   */
+  default void publishEvents(List<ApplicationEvent> events) {
+    publishDelayedEvents(events.stream()
+        .map(event -> new DelayedEvent(removeProducerAttributes(event), computeWaitTime(event)))
+        .toList());
+  }
+
+  /**
+   * Publish all supplied events after their wait times. Implementations should override this
+   * method if the underlying transport supports sending multiple events at once.
+   * 
+   * @param events Events with their wait times.
+   */
+  default void publishDelayedEvents(List<DelayedEvent> events) {
+    for (DelayedEvent event : events) {
+      publishEvent(event.event(), event.waitInSec());
+    }
+  }
+
   private ApplicationEvent removeProducerAttributes(ApplicationEvent event) {
     Map<String, String> updatedAttributes = event.attributes().entrySet().stream()
         .filter(entry -> !ApplicationConstants.ATTRIBUTE_WAIT_TIME_IN_SEC.equals(entry.getKey()))
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2023-2024 Voyta Krizek, https://github.com/NewTownData
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.newtowndata.events.core.io;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * {@link AsyncObjectStorage} running a blocking {@link ObjectStorage} on a bounded pool of I/O
+ * threads.
+ */
+public class ExecutorObjectStorage implements AsyncObjectStorage {
+
+  public static final int DEFAULT_IO_THREADS = 16;
+
+  private final ObjectStorage delegate;
+  private final Executor executor;
+
+  /**
+   * Runs on I/O threads shared by all instances created with this constructor.
+   */
+  public ExecutorObjectStorage(ObjectStorage delegate) {
+    this(delegate, SharedExecutor.EXECUTOR);
+  }
+
+  /**
+   * @param delegate Blocking object storage.
+   * @param executor I/O threads owned by the caller, which shuts them down.
+   */
+  public ExecutorObjectStorage(ObjectStorage delegate, Executor executor) {
+    this.delegate = Objects.requireNonNull(delegate, "delegate");
+    this.executor = Objects.requireNonNull(executor, "executor");
+  }
+
+  @Override
+  public CompletableFuture<byte[]> getObjectBytes(String storageName, String path) {
+    return CompletableFuture.supplyAsync(() -> delegate.getObjectBytes(storageName, path),
+        executor);
+  }
+
+  @Override
+  public CompletableFuture<String> getObjectAsString(String storageName, String path) {
+    return CompletableFuture.supplyAsync(() -> delegate.getObjectAsString(storageName, path),
+        executor);
+  }
+
+  @Override
+  public CompletableFuture<Void> putObject(String storageName, String path, byte[] data) {
+    return CompletableFuture.runAsync(() -> delegate.putObject(storageName, path, data), executor);
+  }
+
+  @Override
+  public CompletableFuture<Void> putObject(String storageName, String path, String data) {
+    return CompletableFuture.runAsync(() -> delegate.putObject(storageName, path, data), executor);
+  }
+
+  @Override
+  public CompletableFuture<Void> deleteObject(String storageName, String path) {
+    return CompletableFuture.runAsync(() -> delegate.deleteObject(storageName, path), executor);
+  }
+
+  private static final class SharedExecutor {
+
+    private static final ExecutorService EXECUTOR =
+        Executors.newFixedThreadPool(DEFAULT_IO_THREADS, runnable -> {
+          Thread thread = new Thread(runnable, "object-storage-io");
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+
+}
@@ -13,10 +13,13 @@
  */
 package com.newtowndata.events.core.io;
 
-import com.newtowndata.events.core.io.utils.StringInputStream;
+import com.newtowndata.events.core.io.utils.ByteBufferInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Optional;
 
 /**
  * Object storage abstraction.
@@ -28,22 +31,64 @@ public interface ObjectStorage {
   InputStream getObject(String storageName, String path);
 
   default String getObjectAsString(String storageName, String path) {
+    return new String(getObjectBytes(storageName, path), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @return Content of the object, owned by the caller.
+   */
+  default byte[] getObjectBytes(String storageName, String path) {
     try (InputStream isr = getObject(storageName, path)) {
-      return new String(isr.readAllBytes(), StandardCharsets.UTF_8);
+      return isr.readAllBytes();
     } catch (IOException e) {
-      throw new IllegalStateException("Failed to read string for " + storageName + ", path " + path,
+      throw new IllegalStateException("Failed to read object " + storageName + ", path " + path,
           e);
     }
   }
 
+  /**
+   * @return Content of the object, which may be read-only and shared with the implementation.
+   */
+  default ByteBuffer getObjectBuffer(String storageName, String path) {
+    return ByteBuffer.wrap(getObjectBytes(storageName, path));
+  }
+
   void putObject(String storageName, String path, InputStream inputStream);
 
+  /**
+   * Uploads a stream of the given length, which lets implementations skip buffering it.
+   */
+  default void putObject(String storageName, String path, InputStream inputStream,
+      long contentLength) {
+    putObject(storageName, path, inputStream);
+  }
+
   default void putObject(String storageName, String path, String data) {
-    try (StringInputStream isr = new StringInputStream(data)) {
-      putObject(storageName, path, isr);
-    }
+    putObject(storageName, path, data.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Uploads the array, which must not be modified until the method returns.
+   */
+  default void putObject(String storageName, String path, byte[] data) {
+    putObject(storageName, path, new ByteArrayInputStream(data), data.length);
+  }
+
+  /**
+   * Uploads the remaining bytes of the buffer without changing its position.
+   */
+  default void putObject(String storageName, String path, ByteBuffer data) {
+    putObject(storageName, path, new ByteBufferInputStream(data), data.remaining());
   }
 
   void deleteObject(String storageName, String path);
 
+  /**
+   * @return Opaque version tag of the object that changes whenever the object changes, or empty
+   *         if the object does not exist or the storage does not support it.
+   */
+  default Optional<String> getETag(String storageName, String path) {
+    return Optional.empty();
+  }
+
 }
@@ -22,8 +22,71 @@ public interface StateTable {
 
   Set<String> getStates(String key);
 
-  void putState(String key, String state);
+  /**
+   * Add the states and return all states of the key, including the added ones. Implementations
+   * should do this atomically in a single round trip, so that exactly one of concurrent callers
+   * sees the complete set.
+   * 
+   * @param key Key.
+   * @param states States to add, must not be empty.
+   * @return All states of the key after the addition, empty if the key is completed, in which
+   *         case nothing is added.
+   */
+  Set<String> addStates(String key, Set<String> states);
 
-  void deleteState(String key);
+  /**
+   * Add the state and, if the key then contains all required states, complete the key as by
+   * {@link #complete(String)}. Only one of concurrent callers completes the key; implementations
+   * should do this in one atomic step.
+   * 
+   * @param key Key.
+   * @param state State to add.
+   * @param requiredStates States required to complete the key.
+   * @return {@code true} if this call completed the key.
+   */
+  default boolean addStateAndComplete(String key, String state, Set<String> requiredStates) {
+    return addStatesAndComplete(key, Set.of(state), requiredStates);
+  }
+
+  /**
+   * Add several states at once and complete the key, see
+   * {@link #addStateAndComplete(String, String, Set)}.
+   * 
+   * @param key Key.
+   * @param states States to add, must not be empty.
+   * @param requiredStates States required to complete the key.
+   * @return {@code true} if this call completed the key.
+   */
+  default boolean addStatesAndComplete(String key, Set<String> states,
+      Set<String> requiredStates) {
+    Set<String> allStates = addStates(key, states);
+    return allStates.containsAll(requiredStates) && complete(key);
+  }
+
+  /**
+   * Mark the key as completed and drop its states and bits. Exactly one of concurrent callers
+   * completes the key, even when several of them have seen all required states; the marker stays
+   * until the key expires, so duplicate deliveries cannot complete the key again.
+   * 
+   * @param key Key.
+   * @return {@code true} if this call completed the key.
+   */
+  boolean complete(String key);
+
+  /**
+   * Atomically combine the bits with the bits already stored for the key using bitwise OR.
+   * 
+   * @param key Key.
+   * @param bits Bits to add, must not be zero.
+   * @return All bits of the key after the addition, zero if the key is completed, in which case
+   *         nothing is added.
+   */
+  long addBits(String key, long bits);
+
+  /**
+   * Wait until operations running in the background have finished. Must be called before the
+   * process can be suspended, e.g. at the end of a Lambda invocation.
+   */
+  default void flush() {}
 
 }
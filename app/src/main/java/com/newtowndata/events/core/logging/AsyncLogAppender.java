@@ -0,0 +1,272 @@
+/*
+ * Copyright 2023-2024 Voyta Krizek, https://github.com/NewTownData
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.newtowndata.events.core.logging;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Log output that queues formatted records in a bounded lock-free ring buffer and writes them in
+ * batches from a background thread. The background thread parks while the buffer is empty and
+ * producers blocked on a full buffer park until a batch has been written.
+ */
+public class AsyncLogAppender implements Consumer<String>, AutoCloseable {
+
+  static final int SAMPLE_RATE = 16;
+
+  private static final int MAX_BATCH_RECORDS = 256;
+  private static final long FLUSH_TIMEOUT_IN_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+  private final Consumer<String> output;
+  private final OverflowPolicy overflowPolicy;
+  private final AtomicReferenceArray<String> slots;
+  private final int mask;
+  private final int sampleThreshold;
+  private final AtomicLong tail = new AtomicLong();
+  private final AtomicLong head = new AtomicLong();
+  private final AtomicLong written = new AtomicLong();
+  private final AtomicLong dropped = new AtomicLong();
+  private final AtomicLong overflowCounter = new AtomicLong();
+  private final AtomicInteger activeProducers = new AtomicInteger();
+  private final Queue<Thread> waiters = new ConcurrentLinkedQueue<>();
+  private final Thread drainThread;
+
+  private long reportedDropped;
+  private volatile boolean running = true;
+  private volatile boolean idle;
+  private volatile boolean terminated;
+
+  /**
+   * Create and start the appender.
+   * 
+   * @param output Destination of batched records.
+   * @param capacity Buffer capacity in records, rounded up to a power of two.
+   * @param overflowPolicy Behaviour when the buffer is full.
+   */
+  public AsyncLogAppender(Consumer<String> output, int capacity, OverflowPolicy overflowPolicy) {
+    if (capacity <= 0 || capacity > (1 << 30)) {
+      throw new IllegalArgumentException("Invalid capacity: " + capacity);
+    }
+
+    this.output = Objects.requireNonNull(output, "output");
+    this.overflowPolicy = Objects.requireNonNull(overflowPolicy, "overflowPolicy");
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) {
+      size <<= 1;
+    }
+    this.slots = new AtomicReferenceArray<>(size);
+    this.mask = size - 1;
+    this.sampleThreshold = size - size / 4;
+    this.drainThread = new Thread(this::drainLoop, "log-appender");
+    this.drainThread.setDaemon(true);
+    this.drainThread.start();
+  }
+
+  @Override
+  public void accept(String record) {
+    // close() lets the background thread finish only once no producer is between the running
+    // check and storing its record
+    activeProducers.incrementAndGet();
+    try {
+      if (!running) {
+        output.accept(record);
+        return;
+      }
+      enqueue(record);
+    } finally {
+      activeProducers.decrementAndGet();
+    }
+  }
+
+  private void enqueue(String record) {
+    while (true) {
+      long t = tail.get();
+      long used = t - head.get();
+      if (used >= slots.length() || (overflowPolicy == OverflowPolicy.SAMPLE
+          && used >= sampleThreshold && overflowCounter.incrementAndGet() % SAMPLE_RATE != 0)) {
+        if (overflowPolicy != OverflowPolicy.BLOCK) {
+          dropped.incrementAndGet();
+          return;
+        }
+        if (terminated) {
+          output.accept(record);
+          return;
+        }
+        awaitSpace();
+        continue;
+      }
+
+      if (tail.compareAndSet(t, t + 1)) {
+        slots.set((int) t & mask, record);
+        if (idle) {
+          wakeUp();
+        }
+        return;
+      }
+    }
+  }
+
+  /**
+   * Wait until all records accepted so far have been written.
+   * 
+   * @return {@code true} if all records have been written in time.
+   */
+  public boolean flush() {
+    return flush(Duration.ofNanos(FLUSH_TIMEOUT_IN_NANOS));
+  }
+
+  public boolean flush(Duration timeout) {
+    long target = tail.get();
+    long deadline = System.nanoTime() + timeout.toNanos();
+    Thread current = Thread.currentThread();
+    waiters.add(current);
+    try {
+      while (written.get() < target) {
+        long remaining = deadline - System.nanoTime();
+        if (terminated || remaining <= 0) {
+          return false;
+        }
+        wakeUp();
+        LockSupport.parkNanos(this, remaining);
+      }
+      return true;
+    } finally {
+      waiters.remove(current);
+    }
+  }
+
+  public long getDroppedCount() {
+    return dropped.get();
+  }
+
+  @Override
+  public void close() {
+    if (!running) {
+      return;
+    }
+
+    running = false;
+    wakeUp();
+    try {
+      drainThread.join(TimeUnit.NANOSECONDS.toMillis(FLUSH_TIMEOUT_IN_NANOS));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void wakeUp() {
+    LockSupport.unpark(drainThread);
+  }
+
+  /**
+   * Park a producer until the background thread has written a batch. The waiter is registered
+   * before the buffer is checked again, so a batch written in between still unparks it.
+   */
+  private void awaitSpace() {
+    Thread current = Thread.currentThread();
+    waiters.add(current);
+    try {
+      wakeUp();
+      if (!terminated && tail.get() - written.get() >= slots.length()) {
+        LockSupport.park(this);
+      }
+    } finally {
+      waiters.remove(current);
+    }
+  }
+
+  private void signalWaiters() {
+    for (Thread waiter : waiters) {
+      LockSupport.unpark(waiter);
+    }
+  }
+
+  private void drainLoop() {
+    try {
+      StringBuilder batch = new StringBuilder();
+      while (true) {
+        boolean stopping = !running;
+        int count = drain(batch);
+        if (count > 0) {
+          continue;
+        }
+
+        if (stopping) {
+          if (activeProducers.get() == 0 && tail.get() == head.get()) {
+            return;
+          }
+          // a producer that passed the running check before close() is still storing a record
+          Thread.yield();
+          continue;
+        }
+
+        idle = true;
+        if (tail.get() == head.get() && running) {
+          LockSupport.park(this);
+        }
+        idle = false;
+      }
+    } finally {
+      terminated = true;
+      signalWaiters();
+    }
+  }
+
+  private int drain(StringBuilder batch) {
+    long h = head.get();
+    int count = 0;
+    while (count < MAX_BATCH_RECORDS) {
+      int index = (int) h & mask;
+      String record = slots.get(index);
+      if (record == null) {
+        // empty, or the producer has claimed the slot but not stored the record yet
+        break;
+      }
+      slots.set(index, null);
+      batch.append(record);
+      h++;
+      count++;
+      head.lazySet(h);
+    }
+
+    long droppedRecords = dropped.get() - reportedDropped;
+    if (droppedRecords > 0) {
+      reportedDropped += droppedRecords;
+      batch.append(System.currentTimeMillis()).append("\tAsyncLogAppender\tWARN\t")
+          .append(droppedRecords).append(" log record(s) dropped\n");
+    }
+
+    if (batch.length() > 0) {
+      try {
+        output.accept(batch.toString());
+      } catch (RuntimeException e) {
+        // there is nowhere to report a failing log output, keep draining
+      } finally {
+        batch.setLength(0);
+        written.set(h);
+        signalWaiters();
+      }
+    }
+    return count;
+  }
+
+}
@@ -14,53 +14,149 @@
 package com.newtowndata.events.core.logging;
 
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
- * Simple logger.
+ * Simple logger. Messages below the minimum level are discarded before they are formatted, so
+ * supplier and template methods cost nothing when the level is disabled.
  */
 public class Logger {
 
   private static final char SEPARATOR = '\t';
+  private static final String PLACEHOLDER = "{}";
 
   private final String requestId;
   private final Consumer<String> loggerFunction;
+  private volatile LogLevel minimumLevel;
 
-  Logger(String requestId, Consumer<String> loggerFunction) {
+  Logger(String requestId, Consumer<String> loggerFunction, LogLevel minimumLevel) {
     this.requestId = requestId;
     this.loggerFunction = loggerFunction;
+    this.minimumLevel = minimumLevel;
+  }
+
+  String requestId() {
+    return requestId;
+  }
+
+  void setMinimumLevel(LogLevel minimumLevel) {
+    this.minimumLevel = minimumLevel;
+  }
+
+  public boolean isEnabled(LogLevel level) {
+    return level.isEnabledFor(minimumLevel);
+  }
+
+  public boolean isInfoEnabled() {
+    return isEnabled(LogLevel.INFO);
   }
 
   public void error(Object message, Exception e) {
-    log("ERROR", message, e);
+    logException(LogLevel.ERROR, message, e);
   }
 
   public void error(Object message) {
-    log("ERROR", message, null);
+    log(LogLevel.ERROR, message, null);
+  }
+
+  public void error(Supplier<?> message) {
+    if (isEnabled(LogLevel.ERROR)) {
+      log(LogLevel.ERROR, message.get(), null);
+    }
+  }
+
+  public void error(String template, Object... arguments) {
+    if (isEnabled(LogLevel.ERROR)) {
+      log(LogLevel.ERROR, format(template, arguments), null);
+    }
   }
 
   public void info(Object message) {
-    log("INFO", message, null);
+    log(LogLevel.INFO, message, null);
   }
 
   public void info(Object message, Exception e) {
-    log("INFO", message, e);
+    logException(LogLevel.INFO, message, e);
+  }
+
+  public void info(Supplier<?> message) {
+    if (isEnabled(LogLevel.INFO)) {
+      log(LogLevel.INFO, message.get(), null);
+    }
+  }
+
+  public void info(String template, Object... arguments) {
+    if (isEnabled(LogLevel.INFO)) {
+      log(LogLevel.INFO, format(template, arguments), null);
+    }
   }
 
   public void warn(Object message) {
-    log("WARN", message, null);
+    log(LogLevel.WARN, message, null);
   }
 
   public void warn(Object message, Exception e) {
-    log("WARN", message, e);
+    logException(LogLevel.WARN, message, e);
+  }
+
+  public void warn(Supplier<?> message) {
+    if (isEnabled(LogLevel.WARN)) {
+      log(LogLevel.WARN, message.get(), null);
+    }
+  }
+
+  public void warn(String template, Object... arguments) {
+    if (isEnabled(LogLevel.WARN)) {
+      log(LogLevel.WARN, format(template, arguments), null);
+    }
+  }
+
+  /**
+   * Replace each {@code {}} in the template with the next argument.
+   */
+  static String format(String template, Object... arguments) {
+    StringBuilder sb = new StringBuilder(template.length() + 16 * arguments.length);
+    int start = 0;
+    for (Object argument : arguments) {
+      int index = template.indexOf(PLACEHOLDER, start);
+      if (index < 0) {
+        break;
+      }
+      sb.append(template, start, index);
+      sb.append(argument);
+      start = index + PLACEHOLDER.length();
+    }
+    sb.append(template, start, template.length());
+    return sb.toString();
   }
 
-  private void log(String severity, Object message, Throwable e) {
+  /**
+   * Log the exception with its stack trace. Calls like {@code info("failed {}", e)} resolve to
+   * this overload rather than the template one, so a template message gets the exception as its
+   * argument.
+   */
+  private void logException(LogLevel level, Object message, Exception e) {
+    if (!isEnabled(level)) {
+      return;
+    }
+    if (message instanceof String template && template.contains(PLACEHOLDER)) {
+      log(level, format(template, e), e);
+    } else {
+      log(level, message, e);
+    }
+  }
+
+  private void log(LogLevel level, Object message, Throwable e) {
+    if (!isEnabled(level)) {
+      return;
+    }
+
     StringBuilder sb = new StringBuilder();
     sb.append(System.currentTimeMillis());
     sb.append(SEPARATOR);
     sb.append(requestId);
     sb.append(SEPARATOR);
-    sb.append(severity);
+    sb.append(level.name());
     sb.append(SEPARATOR);
     sb.append(message);
 
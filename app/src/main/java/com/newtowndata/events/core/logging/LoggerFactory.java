@@ -13,25 +13,133 @@
  */
 package com.newtowndata.events.core.logging;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Consumer;
 
 /**
- * Factory for {@link Logger}.
+ * Factory for {@link Logger}. Minimum levels of class loggers can be changed at runtime with
+ * {@link #configure(LogLevel, Map)} and their output can be made asynchronous with
+ * {@link #enableAsyncOutput(int, OverflowPolicy)}.
  */
 public class LoggerFactory {
 
+  private static final List<Logger> CLASS_LOGGERS = new CopyOnWriteArrayList<>();
+  private static final Consumer<String> STANDARD_OUTPUT = System.out::print;
+
+  private static volatile Consumer<String> output = STANDARD_OUTPUT;
+  private static volatile AsyncLogAppender asyncAppender;
+
+  private static volatile LogLevel defaultLevel = LogLevel.INFO;
+  private static volatile Map<String, LogLevel> levels = Map.of();
+
   private LoggerFactory() {}
 
   public static Logger create(String requestId, Consumer<String> logConsumer) {
+    return create(requestId, logConsumer, LogLevel.INFO);
+  }
+
+  public static Logger create(String requestId, Consumer<String> logConsumer,
+      LogLevel minimumLevel) {
     Objects.requireNonNull(requestId, "requestId");
     Objects.requireNonNull(logConsumer, "logConsumer");
-    return new Logger(requestId, logConsumer);
+    Objects.requireNonNull(minimumLevel, "minimumLevel");
+    return new Logger(requestId, logConsumer, minimumLevel);
   }
 
   public static Logger create(Class<?> clazz) {
     Objects.requireNonNull(clazz, "clazz");
-    return new Logger(clazz.getSimpleName(), System.out::print);
+    String name = clazz.getSimpleName();
+    Logger logger = new Logger(name, LoggerFactory::write, levelOf(name));
+    CLASS_LOGGERS.add(logger);
+    return logger;
+  }
+
+  /**
+   * Set minimum levels of all class loggers, including the ones created already.
+   * 
+   * @param defaultLevel Level of classes without an explicit level.
+   * @param classLevels Levels by simple class name.
+   */
+  public static synchronized void configure(LogLevel defaultLevel,
+      Map<String, LogLevel> classLevels) {
+    LoggerFactory.defaultLevel = Objects.requireNonNull(defaultLevel, "defaultLevel");
+    LoggerFactory.levels = Map.copyOf(Objects.requireNonNull(classLevels, "classLevels"));
+    for (Logger logger : CLASS_LOGGERS) {
+      logger.setMinimumLevel(levelOf(logger.requestId()));
+    }
+  }
+
+  /**
+   * Write output of class loggers through an {@link AsyncLogAppender}. The appender is flushed
+   * and closed on JVM shutdown.
+   * 
+   * @param capacity Buffer capacity in records.
+   * @param overflowPolicy Behaviour when the buffer is full.
+   */
+  public static synchronized void enableAsyncOutput(int capacity, OverflowPolicy overflowPolicy) {
+    AsyncLogAppender previous = asyncAppender;
+    AsyncLogAppender appender = new AsyncLogAppender(STANDARD_OUTPUT, capacity, overflowPolicy);
+    asyncAppender = appender;
+    output = appender;
+    if (previous == null) {
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+        AsyncLogAppender current = asyncAppender;
+        if (current != null) {
+          current.close();
+        }
+      }, "log-appender-shutdown"));
+    } else {
+      previous.close();
+    }
+  }
+
+  /**
+   * Wait until records of class loggers have been written. Does nothing for synchronous output.
+   */
+  public static void flush() {
+    AsyncLogAppender appender = asyncAppender;
+    if (appender != null) {
+      appender.flush();
+    }
+  }
+
+  /**
+   * Parse class levels in format {@code EventRouter=WARN,JoinState=ERROR}.
+   * 
+   * @param value Class levels, can be empty.
+   * @return Levels by simple class name.
+   */
+  public static Map<String, LogLevel> parseLevels(String value) {
+    Map<String, LogLevel> result = new HashMap<>();
+    for (String item : value.split(",")) {
+      if (item.isBlank()) {
+        continue;
+      }
+
+      String[] parts = item.split("=");
+      if (parts.length != 2) {
+        throw new IllegalArgumentException("Invalid log level definition: " + item);
+      }
+      result.put(parts[0].trim(), parseLevel(parts[1]));
+    }
+    return result;
+  }
+
+  public static LogLevel parseLevel(String value) {
+    return LogLevel.valueOf(value.trim().toUpperCase(Locale.ROOT));
+  }
+
+  private static void write(String record) {
+    output.accept(record);
+  }
+
+  private static LogLevel levelOf(String name) {
+    return levels.getOrDefault(name, defaultLevel);
   }
 
 }
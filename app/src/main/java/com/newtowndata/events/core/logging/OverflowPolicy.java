@@ -0,0 +1,36 @@
+/*
+ * Copyright 2023-2024 Voyta Krizek, https://github.com/NewTownData
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.newtowndata.events.core.logging;
+
+/**
+ * Behaviour of {@link AsyncLogAppender} when its buffer is full.
+ */
+public enum OverflowPolicy {
+
+  /**
+   * Wait until the background thread frees space; no records are lost.
+   */
+  BLOCK,
+
+  /**
+   * Drop records that do not fit into the buffer.
+   */
+  DROP,
+
+  /**
+   * Keep only a sample of records once the buffer is mostly full, drop the rest.
+   */
+  SAMPLE;
+
+}
@@ -14,17 +14,21 @@
 package com.newtowndata.events.core.router;
 
 import static com.newtowndata.events.core.utils.EventUtils.eventToString;
+import com.newtowndata.events.core.ApplicationConstants;
 import com.newtowndata.events.core.ApplicationContext;
 import com.newtowndata.events.core.ApplicationEvent;
 import com.newtowndata.events.core.ApplicationException;
 import com.newtowndata.events.core.ApplicationState;
+import com.newtowndata.events.core.CoalescingState;
 import com.newtowndata.events.core.OutputEvent;
 import com.newtowndata.events.core.logging.Logger;
 import com.newtowndata.events.core.logging.LoggerFactory;
-import java.util.HashMap;
+import com.newtowndata.events.core.utils.EventUtils;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 
 /**
  * Event router routes events to the required state and publishes the produced events.
@@ -33,12 +37,17 @@ public final class EventRouter {
 
   private static final Logger LOG = LoggerFactory.create(EventRouter.class);
 
+  private static final String KEY_SEPARATOR = "|";
+
   private final ApplicationContext applicationContext;
-  private final Map<String, ApplicationState> states;
+  private final RoutingTable routingTable;
+  private final FusionSettings fusionSettings;
 
-  private EventRouter(ApplicationContext applicationContext, Map<String, ApplicationState> states) {
+  private EventRouter(ApplicationContext applicationContext, RoutingTable routingTable,
+      FusionSettings fusionSettings) {
     this.applicationContext = Objects.requireNonNull(applicationContext, "applicationContext");
-    this.states = Objects.requireNonNull(states, "states");
+    this.routingTable = Objects.requireNonNull(routingTable, "routingTable");
+    this.fusionSettings = Objects.requireNonNull(fusionSettings, "fusionSettings");
   }
 
   public static Builder of(ApplicationContext applicationContext) {
@@ -46,36 +55,161 @@ public final class EventRouter {
   }
 
   public void processEvent(ApplicationEvent input) {
-    LOG.info(eventToString(input) + ": processing event");
+    long deadline = System.nanoTime() + fusionSettings.timeBudget().toNanos();
+    int stateIndex = routingTable.indexOf(input.targetState());
+    processFusedEvents(processEvent(input, stateIndex, fusionSettings.enabled(), false),
+        deadline);
+  }
+
+  /**
+   * @param input Event to process.
+   * @return Key shared by the events {@link #processEvents(List)} can process together with this
+   *         one, or empty if the event has to be processed on its own.
+   */
+  public Optional<String> coalescingKey(ApplicationEvent input) {
+    return coalescingKey(input, routingTable.indexOf(input.targetState()));
+  }
 
+  private Optional<String> coalescingKey(ApplicationEvent input, int stateIndex) {
     if (input.ttl() <= 0) {
-      LOG.info(eventToString(input) + ": event expired - ignoring");
-      return;
+      return Optional.empty();
+    }
+    if (stateIndex != RoutingTable.UNDEFINED
+        && routingTable.state(stateIndex) instanceof CoalescingState state) {
+      return Optional.of(state.stateName() + KEY_SEPARATOR + state.coalescingKey(input));
     }
+    return Optional.empty();
+  }
 
-    ApplicationState state = states.get(input.targetState());
-    if (state == null) {
-      LOG.info(eventToString(input) + ": no state defined - ignoring");
+  /**
+   * Process events with the same coalescing key in a single state call, e.g. branches of a join
+   * that arrived in the same batch. The produced events are handled as by
+   * {@link #processEvent(ApplicationEvent)} for the last event.
+   * 
+   * @param inputs Events with the same coalescing key.
+   * @throws IllegalArgumentException If the events do not share a coalescing key.
+   */
+  public void processEvents(List<ApplicationEvent> inputs) {
+    if (inputs.size() == 1) {
+      processEvent(inputs.get(0));
       return;
     }
 
+    int stateIndex = routingTable.indexOf(inputs.get(0).targetState());
+    Optional<String> key = coalescingKey(inputs.get(0), stateIndex);
+    if (key.isEmpty() || !inputs.stream().allMatch(input -> key.equals(coalescingKey(input)))) {
+      throw new IllegalArgumentException("Events cannot be processed together: "
+          + inputs.stream().map(EventUtils::eventToString).toList());
+    }
+
+    long deadline = System.nanoTime() + fusionSettings.timeBudget().toNanos();
+    ApplicationEvent input = inputs.get(inputs.size() - 1);
+    CoalescingState state = (CoalescingState) routingTable.state(stateIndex);
+    LOG.info(() -> key.get() + ": processing " + inputs.size() + " events together");
+
+    List<OutputEvent> outputEvents;
+    try {
+      outputEvents = state.handleEvents(applicationContext.stateContext(), inputs);
+    } catch (Exception e) {
+      LOG.error(key.get() + ": state failed", e);
+      throw new ApplicationException(key.get() + ": state failed");
+    }
+
+    processFusedEvents(
+        processOutputEvents(input, stateIndex, outputEvents, fusionSettings.enabled()), deadline);
+  }
+
+  private void processFusedEvents(RoutedEvent fusedEvent, long deadline) {
+    RoutedEvent event = fusedEvent;
+    for (int hop = 1; event != null; hop++) {
+      boolean fuseOutput = hop < fusionSettings.maxHops() && System.nanoTime() < deadline;
+      event = processEvent(event.event(), event.stateIndex(), fuseOutput, true);
+    }
+  }
+
+  /**
+   * Process a single event and publish the produced events.
+   * 
+   * @param input Event to process.
+   * @param stateIndex Resolved index of the target state of the event.
+   * @param fuseOutput Whether one of the produced events can be returned instead of published.
+   * @param fused Whether the event was fused instead of published by the previous state.
+   * @return Produced event that should be processed next in the same thread or {@code null}.
+   */
+  private RoutedEvent processEvent(ApplicationEvent input, int stateIndex, boolean fuseOutput,
+      boolean fused) {
+    LOG.info(() -> eventToString(input) + ": processing event");
+
+    if (input.ttl() <= 0) {
+      LOG.info(() -> eventToString(input) + ": event expired - ignoring");
+      return null;
+    }
+
+    if (stateIndex == RoutingTable.UNDEFINED) {
+      LOG.info(() -> eventToString(input) + ": no state defined - ignoring");
+      return null;
+    }
+    ApplicationState state = routingTable.state(stateIndex);
+
     List<OutputEvent> outputEvents;
     try {
       outputEvents = state.handleEvent(applicationContext.stateContext(), input);
     } catch (Exception e) {
       LOG.error(eventToString(input) + ": state failed", e);
+      if (fused) {
+        // the previous state already succeeded, so only this event should be retried
+        publishEvents(input, List.of(input));
+        return null;
+      }
       throw new ApplicationException(eventToString(input) + ": state failed");
     }
 
+    return processOutputEvents(input, stateIndex, outputEvents, fuseOutput);
+  }
+
+  /**
+   * Publish the events produced for the input, except the one that is fused.
+   * 
+   * @return Produced event that should be processed next in the same thread or {@code null}.
+   */
+  private RoutedEvent processOutputEvents(ApplicationEvent input, int stateIndex,
+      List<OutputEvent> outputEvents, boolean fuseOutput) {
     if (outputEvents == null || outputEvents.isEmpty()) {
-      LOG.info(eventToString(input) + ": no output events produced");
-      return;
+      LOG.info(() -> eventToString(input) + ": no output events produced");
+      return null;
     }
 
     List<ApplicationEvent> convertedOutputEvents = convertEvents(input, outputEvents);
-    publishEvents(convertedOutputEvents);
+    RoutedEvent fusedEvent = null;
+    if (fuseOutput) {
+      for (ApplicationEvent event : convertedOutputEvents) {
+        int targetIndex = routingTable.successorOf(stateIndex, event.targetState());
+        if (isFusable(event, targetIndex)) {
+          fusedEvent = new RoutedEvent(event, targetIndex);
+          break;
+        }
+      }
+    }
+
+    if (fusedEvent == null) {
+      publishEvents(input, convertedOutputEvents);
+    } else {
+      ApplicationEvent excludedEvent = fusedEvent.event();
+      List<ApplicationEvent> remainingEvents =
+          convertedOutputEvents.stream().filter(event -> event != excludedEvent).toList();
+      if (!remainingEvents.isEmpty()) {
+        publishEvents(input, remainingEvents);
+      }
+      LOG.info(() -> eventToString(excludedEvent) + ": fusing event");
+    }
+
+    LOG.info(() -> eventToString(input) + ": successfully processed");
+    return fusedEvent;
+  }
 
-    LOG.info(eventToString(input) + ": successfully processed");
+  private static boolean isFusable(ApplicationEvent event, int stateIndex) {
+    return event.ttl() > 0 && stateIndex != RoutingTable.UNDEFINED
+        && !event.attributes().containsKey(ApplicationConstants.ATTRIBUTE_WAIT_TIME_IN_SEC);
   }
 
   private List<ApplicationEvent> convertEvents(ApplicationEvent input,
@@ -83,19 +217,29 @@ public final class EventRouter {
     return outputEvents.stream().map(event -> ApplicationEvent.of(input, event)).toList();
   }
 
-  private void publishEvents(List<ApplicationEvent> outputEvents) {
+  private void publishEvents(ApplicationEvent input, List<ApplicationEvent> outputEvents) {
     for (ApplicationEvent event : outputEvents) {
-      LOG.info(eventToString(event) + ": producing event");
-      try {
-        applicationContext.eventPublisher().publishEvent(event);
-      } catch (Exception e) {
-        LOG.error(eventToString(event) + ": failed to produce event", e);
-        throw new ApplicationException(eventToString(event) + ": failed to produce event");
-      }
-      LOG.info(eventToString(event) + ": event produced");
+      LOG.info(() -> eventToString(event) + ": producing event");
+    }
+
+    try {
+      applicationContext.eventPublisher().publishEvents(outputEvents);
+    } catch (Exception e) {
+      LOG.error(eventToString(input) + ": failed to produce events", e);
+      throw new ApplicationException(eventToString(input) + ": failed to produce events");
+    }
+
+    for (ApplicationEvent event : outputEvents) {
+      LOG.info(() -> eventToString(event) + ": event produced");
     }
   }
 
+  /**
+   * Event together with the resolved index of its target state.
+   */
+  private record RoutedEvent(ApplicationEvent event, int stateIndex) {
+  }
+
   /**
    * Builder for {@link EventRouter}.
    */
@@ -103,10 +247,12 @@ public final class EventRouter {
 
     private final ApplicationContext applicationContext;
     private final Map<String, ApplicationState> states;
+    private FusionSettings fusionSettings;
 
     public Builder(ApplicationContext applicationContext) {
       this.applicationContext = Objects.requireNonNull(applicationContext, "applicationContext");
-      this.states = new HashMap<>();
+      this.states = new LinkedHashMap<>();
+      this.fusionSettings = FusionSettings.DISABLED;
     }
 
     public Builder withState(ApplicationState state) {
@@ -116,8 +262,20 @@ public final class EventRouter {
       return this;
     }
 
+    public Builder withFusion(FusionSettings fusionSettings) {
+      this.fusionSettings = Objects.requireNonNull(fusionSettings, "fusionSettings");
+      return this;
+    }
+
+    /**
+     * Build the router with an immutable routing table.
+     * 
+     * @return Event router.
+     * @throws IllegalStateException If a state references a target state that is not defined.
+     */
     public EventRouter build() {
-      return new EventRouter(applicationContext, states);
+      return new EventRouter(applicationContext, RoutingTable.compile(states.values()),
+          fusionSettings);
     }
   }
 
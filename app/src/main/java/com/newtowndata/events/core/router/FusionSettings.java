@@ -0,0 +1,44 @@
+/*
+ * Copyright 2023-2024 Voyta Krizek, https://github.com/NewTownData
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.newtowndata.events.core.router;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Settings of the fused execution mode, in which {@link EventRouter} processes an output event
+ * directly instead of publishing it. Only events for a defined state without any wait time are
+ * fused, at most {@code maxHops} of them per processed event and only until {@code timeBudget}
+ * has elapsed.
+ */
+public record FusionSettings(int maxHops, Duration timeBudget) {
+
+  public static final FusionSettings DISABLED = new FusionSettings(0, Duration.ZERO);
+
+  public FusionSettings {
+    if (maxHops < 0) {
+      throw new IllegalArgumentException("Max hops cannot be negative: " + maxHops);
+    }
+
+    Objects.requireNonNull(timeBudget, "timeBudget");
+    if (timeBudget.isNegative()) {
+      throw new IllegalArgumentException("Time budget cannot be negative: " + timeBudget);
+    }
+  }
+
+  public boolean enabled() {
+    return maxHops > 0 && !timeBudget.isZero();
+  }
+
+}
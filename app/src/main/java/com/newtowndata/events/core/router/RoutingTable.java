@@ -0,0 +1,116 @@
+/*
+ * Copyright 2023-2024 Voyta Krizek, https://github.com/NewTownData
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.newtowndata.events.core.router;
+
+import com.newtowndata.events.core.ApplicationConstants;
+import com.newtowndata.events.core.ApplicationState;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable dispatch table compiled from the state graph. Every state gets an index, so a resolved
+ * state is a plain array lookup. The declared target states of every state are resolved to indexes
+ * at build time, so events passed between states never go through the name lookup.
+ */
+final class RoutingTable {
+
+  static final int UNDEFINED = -1;
+
+  private final Map<String, Integer> indexes;
+  private final ApplicationState[] states;
+  private final String[][] successorNames;
+  private final int[][] successorIndexes;
+
+  private RoutingTable(Map<String, Integer> indexes, ApplicationState[] states,
+      String[][] successorNames, int[][] successorIndexes) {
+    this.indexes = indexes;
+    this.states = states;
+    this.successorNames = successorNames;
+    this.successorIndexes = successorIndexes;
+  }
+
+  /**
+   * Compile the supplied states into a routing table.
+   * 
+   * @param states States of the application.
+   * @return Routing table.
+   * @throws IllegalStateException If a state references a target state that is not defined.
+   */
+  static RoutingTable compile(Collection<ApplicationState> states) {
+    ApplicationState[] compiledStates = states.toArray(new ApplicationState[0]);
+    Map<String, Integer> indexes = new HashMap<>();
+    for (int i = 0; i < compiledStates.length; i++) {
+      indexes.put(compiledStates[i].stateName(), i);
+    }
+
+    String[][] successorNames = new String[compiledStates.length][];
+    int[][] successorIndexes = new int[compiledStates.length][];
+    for (int i = 0; i < compiledStates.length; i++) {
+      ApplicationState state = compiledStates[i];
+      String[] targetStates = state.targetStates().toArray(new String[0]);
+      successorNames[i] = targetStates;
+      successorIndexes[i] = new int[targetStates.length];
+      for (int j = 0; j < targetStates.length; j++) {
+        Integer index = indexes.get(targetStates[j]);
+        if (index == null && !ApplicationConstants.STATE_END.equals(targetStates[j])) {
+          throw new IllegalStateException(
+              "State " + state.stateName() + " references undefined state " + targetStates[j]);
+        }
+        successorIndexes[i][j] = index == null ? UNDEFINED : index;
+      }
+    }
+
+    return new RoutingTable(Map.copyOf(indexes), compiledStates, successorNames,
+        successorIndexes);
+  }
+
+  /**
+   * Resolve a state by name. Only needed for events that enter the router from outside, e.g.
+   * deserialized from a queue message.
+   */
+  int indexOf(String stateName) {
+    Integer index = indexes.get(stateName);
+    return index == null ? UNDEFINED : index;
+  }
+
+  /**
+   * Resolve a target state of an event produced by the state with the given index. Declared
+   * target states are matched against the pre-resolved successors, which are usually the very
+   * same string constants, so only undeclared targets fall back to {@link #indexOf(String)}.
+   * 
+   * @param stateIndex Index of the producing state.
+   * @param targetState Target state of the produced event.
+   * @return Index of the target state or {@link #UNDEFINED}.
+   */
+  int successorOf(int stateIndex, String targetState) {
+    String[] names = successorNames[stateIndex];
+    for (int i = 0; i < names.length; i++) {
+      if (names[i] == targetState) {
+        return successorIndexes[stateIndex][i];
+      }
+    }
+    for (int i = 0; i < names.length; i++) {
+      if (names[i].equals(targetState)) {
+        return successorIndexes[stateIndex][i];
+      }
+    }
+    return indexOf(targetState);
+  }
+
+  ApplicationState state(int index) {
+    return states[index];
+  }
+
+}
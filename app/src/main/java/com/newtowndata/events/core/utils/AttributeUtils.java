@@ -0,0 +1,200 @@
+/*
+ * Copyright 2023-2024 Voyta Krizek, https://github.com/NewTownData
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.newtowndata.events.core.utils;
+
+import com.newtowndata.events.core.io.AsyncObjectStorage;
+import com.newtowndata.events.core.io.ObjectStorage;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Utility class for event attributes that may not fit into a message.
+ */
+public final class AttributeUtils {
+
+  /**
+   * Prefix of an attribute value that was moved to the object storage. It is followed by the
+   * storage name and the path, which is in the {@value #ATTRIBUTES_PATH} directory reserved for
+   * moved values. Objects there expire, see the bucket lifecycle rules of the infrastructure.
+   */
+  public static final String REFERENCE_PREFIX = "objectstorage:";
+
+  /**
+   * Directory of a storage reserved for the moved values.
+   */
+  public static final String ATTRIBUTES_PATH = "attributes";
+
+  /**
+   * Maximum size of the attributes of an event. SQS allows 256 KiB per message, the rest is left
+   * for the other event fields.
+   */
+  public static final int MAX_ATTRIBUTES_SIZE_IN_BYTES = 248 * 1024;
+  // quotes, colon and comma of a JSON object entry
+  private static final int ENTRY_OVERHEAD_IN_BYTES = 6;
+
+  private AttributeUtils() {}
+
+  /**
+   * Estimate the size of the attributes serialized as JSON, including escaped characters.
+   * 
+   * @param attributes Attributes.
+   * @return Size in bytes.
+   */
+  public static int estimateSize(Map<String, String> attributes) {
+    int size = 2;
+    for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+      size += ENTRY_OVERHEAD_IN_BYTES + estimateSize(attribute.getKey())
+          + estimateSize(attribute.getValue());
+    }
+    return size;
+  }
+
+  /**
+   * Move the largest of the candidate attributes to the object storage until the attributes fit
+   * into the limit. Moved values are replaced by references.
+   * 
+   * @param objectStorage Object storage.
+   * @param storageName Storage for the moved values.
+   * @param pathPrefix Path prefix unique for the event, e.g. its trace and ID.
+   * @param attributes Attributes.
+   * @param candidates Names of the attributes that can be moved.
+   * @param maxSizeInBytes Maximum size of the attributes.
+   * @return Attributes that fit into the limit, unless the other attributes are too large.
+   */
+  public static Map<String, String> offload(ObjectStorage objectStorage, String storageName,
+      String pathPrefix, Map<String, String> attributes, Collection<String> candidates,
+      int maxSizeInBytes) {
+    int size = estimateSize(attributes);
+    if (size <= maxSizeInBytes) {
+      return attributes;
+    }
+
+    List<String> largestFirst = candidates.stream().filter(attributes::containsKey)
+        .sorted(Comparator.comparingInt((String name) -> estimateSize(attributes.get(name)))
+            .reversed())
+        .toList();
+    Map<String, String> result = new HashMap<>(attributes);
+    for (String name : largestFirst) {
+      if (size <= maxSizeInBytes) {
+        break;
+      }
+
+      String value = result.get(name);
+      String path = ATTRIBUTES_PATH + ObjectStorage.PATH_SEPARATOR + pathPrefix
+          + ObjectStorage.PATH_SEPARATOR + URLEncoder.encode(name, StandardCharsets.UTF_8);
+      String reference = REFERENCE_PREFIX + storageName + ObjectStorage.PATH_SEPARATOR + path;
+      if (estimateSize(reference) >= estimateSize(value)) {
+        // the remaining values are even smaller
+        break;
+      }
+
+      objectStorage.putObject(storageName, path, value);
+      result.put(name, reference);
+      size += estimateSize(reference) - estimateSize(value);
+    }
+    return result;
+  }
+
+  /**
+   * Replace references created by {@link #offload} with the values from the object storage. The
+   * values are read in parallel. Other values, including references outside of the reserved
+   * directory of the storage, are passed as they are, so an event cannot make a state read an
+   * arbitrary object.
+   * 
+   * @param objectStorage Object storage.
+   * @param storageName Storage of the moved values.
+   * @param attributes Attributes.
+   * @return Attributes with the values.
+   */
+  public static Map<String, String> resolve(AsyncObjectStorage objectStorage, String storageName,
+      Map<String, String> attributes) {
+    String referencePrefix = REFERENCE_PREFIX + storageName + ObjectStorage.PATH_SEPARATOR
+        + ATTRIBUTES_PATH + ObjectStorage.PATH_SEPARATOR;
+    Map<String, String> paths = new HashMap<>();
+    for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+      String value = attribute.getValue();
+      if (value.startsWith(referencePrefix) && isReservedPath(value, referencePrefix.length())) {
+        paths.put(attribute.getKey(),
+            value.substring(REFERENCE_PREFIX.length() + storageName.length() + 1));
+      }
+    }
+    if (paths.isEmpty()) {
+      return attributes;
+    }
+
+    Map<String, String> values;
+    try {
+      values = FutureUtils.mapLimited(paths.keySet(), AsyncObjectStorage.DEFAULT_MAX_CONCURRENCY,
+          name -> objectStorage.getObjectAsString(storageName, paths.get(name))).join();
+    } catch (CompletionException e) {
+      throw new IllegalStateException("Failed to resolve attributes " + paths.keySet(),
+          e.getCause());
+    }
+
+    Map<String, String> result = new HashMap<>(attributes);
+    result.putAll(values);
+    return result;
+  }
+
+  /**
+   * @return Whether the rest of the path has no empty or parent segments, which could leave the
+   *         reserved directory.
+   */
+  private static boolean isReservedPath(String value, int start) {
+    int segmentStart = start;
+    while (segmentStart <= value.length()) {
+      int segmentEnd = value.indexOf(ObjectStorage.PATH_SEPARATOR, segmentStart);
+      if (segmentEnd < 0) {
+        segmentEnd = value.length();
+      }
+      String segment = value.substring(segmentStart, segmentEnd);
+      if (segment.isEmpty() || segment.equals(".") || segment.equals("..")) {
+        return false;
+      }
+      segmentStart = segmentEnd + 1;
+    }
+    return true;
+  }
+
+  /**
+   * Characters escaped by Gson take up to six bytes, others their UTF-8 length.
+   */
+  private static int estimateSize(String value) {
+    int size = 0;
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c < 0x20 || c == '<' || c == '>' || c == '&' || c == '=' || c == '\''
+          || c == '\u2028' || c == '\u2029') {
+        size += 6;
+      } else if (c == '"' || c == '\\') {
+        size += 2;
+      } else if (c < 0x80) {
+        size += 1;
+      } else if (c < 0x800 || Character.isSurrogate(c)) {
+        // a surrogate pair takes four bytes
+        size += 2;
+      } else {
+        size += 3;
+      }
+    }
+    return size;
+  }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2023-2024 Voyta Krizek, https://github.com/NewTownData
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.newtowndata.events.core.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+/**
+ * Utility class for running asynchronous requests.
+ */
+public final class FutureUtils {
+
+  private FutureUtils() {}
+
+  /**
+   * Runs a request per key with at most {@code maxConcurrency} requests in flight. The result fails
+   * with the first failed request, after which no more requests are started.
+   *
+   * @return Results by key in the iteration order of the keys.
+   */
+  public static <K, V> CompletableFuture<Map<K, V>> mapLimited(Collection<K> keys,
+      int maxConcurrency, Function<K, CompletableFuture<V>> request) {
+    if (maxConcurrency <= 0) {
+      throw new IllegalArgumentException("Max concurrency must be positive: " + maxConcurrency);
+    }
+
+    List<K> uniqueKeys = new ArrayList<>(new LinkedHashSet<>(keys));
+    if (uniqueKeys.isEmpty()) {
+      return CompletableFuture.completedFuture(Map.of());
+    }
+
+    LimitedRequests<K, V> requests = new LimitedRequests<>(uniqueKeys, request);
+    for (int i = 0; i < Math.min(maxConcurrency, uniqueKeys.size()); i++) {
+      requests.startNext();
+    }
+    return requests.result;
+  }
+
+  private static final class LimitedRequests<K, V> {
+
+    private final List<K> keys;
+    private final Function<K, CompletableFuture<V>> request;
+    private final AtomicReferenceArray<V> values;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicInteger remaining;
+    private final CompletableFuture<Map<K, V>> result = new CompletableFuture<>();
+
+    LimitedRequests(List<K> keys, Function<K, CompletableFuture<V>> request) {
+      this.keys = keys;
+      this.request = request;
+      this.values = new AtomicReferenceArray<>(keys.size());
+      this.remaining = new AtomicInteger(keys.size());
+    }
+
+    void startNext() {
+      // completed requests are handled in the loop rather than recursively
+      while (!result.isDone()) {
+        int index = next.getAndIncrement();
+        if (index >= keys.size()) {
+          return;
+        }
+
+        CompletableFuture<V> future;
+        try {
+          future = request.apply(keys.get(index));
+        } catch (RuntimeException e) {
+          result.completeExceptionally(e);
+          return;
+        }
+        if (!future.isDone()) {
+          future.whenComplete((value, error) -> {
+            if (complete(index, value, error)) {
+              startNext();
+            }
+          });
+          return;
+        }
+
+        V value = null;
+        Throwable error = null;
+        try {
+          value = future.join();
+        } catch (RuntimeException e) {
+          error = e;
+        }
+        if (!complete(index, value, error)) {
+          return;
+        }
+      }
+    }
+
+    private boolean complete(int index, V value, Throwable error) {
+      if (error != null) {
+        result.completeExceptionally(
+            error instanceof CompletionException && error.getCause() != null ? error.getCause()
+                : error);
+        return false;
+      }
+
+      values.set(index, value);
+      if (remaining.decrementAndGet() == 0) {
+        Map<K, V> map = new LinkedHashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+          map.put(keys.get(i), values.get(i));
+        }
+        result.complete(map);
+        return false;
+      }
+      return true;
+    }
+  }
+
+}
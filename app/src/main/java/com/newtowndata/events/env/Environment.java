@@ -26,4 +26,12 @@ public class Environment {
     return result;
   }
 
+  public String getEnvironmentVariable(String name, String defaultValue) {
+    String result = System.getenv(name);
+    if (result == null || result.isEmpty()) {
+      return defaultValue;
+    }
+    return result;
+  }
+
 }
@@ -13,6 +13,8 @@
  */
 package com.newtowndata.events.lambda;
 
+import com.amazonaws.services.lambda.runtime.events.SQSBatchResponse;
+import com.amazonaws.services.lambda.runtime.events.SQSBatchResponse.BatchItemFailure;
 import com.amazonaws.services.lambda.runtime.events.SQSEvent;
 import com.amazonaws.services.lambda.runtime.events.SQSEvent.SQSMessage;
 import com.google.gson.Gson;
@@ -22,6 +24,17 @@ import com.newtowndata.events.core.ApplicationContext;
 import com.newtowndata.events.core.ApplicationEvent;
 import com.newtowndata.events.core.logging.Logger;
 import com.newtowndata.events.core.logging.LoggerFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * AWS-specific {@link Application} instance.
@@ -30,27 +43,158 @@ public class AwsApplication {
 
   private static final Logger LOG = LoggerFactory.create(AwsApplication.class);
 
+  private final ApplicationContext context;
   private final Application application;
   private final Gson gson;
+  private final ExecutorService executor;
+  private final boolean serializeTraces;
 
   public AwsApplication(ApplicationContext context, String bucketName) {
-    this.application = new Application(context, bucketName);
+    this(context, bucketName, AwsSettings.DEFAULT);
+  }
+
+  /**
+   * @param context Application context.
+   * @param bucketName S3 bucket for the application data.
+   * @param settings Parallelism, trace serialization and fusion settings.
+   */
+  public AwsApplication(ApplicationContext context, String bucketName, AwsSettings settings) {
+    this.context = context;
+    this.application = new Application(context, bucketName, settings.fusionSettings());
     this.gson = new GsonBuilder().create();
+    this.serializeTraces = settings.serializeTraces();
+    this.executor = Executors.newFixedThreadPool(settings.parallelism(), runnable -> {
+      Thread thread = new Thread(runnable, "sqs-record-worker");
+      thread.setDaemon(true);
+      return thread;
+    });
   }
 
-  public void run(SQSEvent event) {
-    if (event.getRecords() != null) {
-      for (SQSMessage message : event.getRecords()) {
-        run(message);
+  /**
+   * Process all records of the SQS event concurrently. A failed record does not stop processing of
+   * the other records.
+   * 
+   * @param event SQS event.
+   * @return Response listing the failed records, so only those get redelivered.
+   */
+  public SQSBatchResponse run(SQSEvent event) {
+    if (event.getRecords() == null || event.getRecords().isEmpty()) {
+      return new SQSBatchResponse(List.of());
+    }
+
+    Set<String> failedMessageIds = ConcurrentHashMap.newKeySet();
+    Map<String, List<ParsedMessage>> groups = new LinkedHashMap<>();
+    for (SQSMessage message : event.getRecords()) {
+      ApplicationEvent applicationEvent;
+      try {
+        applicationEvent = parse(message);
+      } catch (RuntimeException e) {
+        LOG.error("SQS message cannot be parsed: " + message.getMessageId(), e);
+        failedMessageIds.add(message.getMessageId());
+        continue;
+      }
+
+      // events of the same join are processed together with a single state table update
+      Optional<String> coalescingKey =
+          application.getEventRouter().coalescingKey(applicationEvent);
+      String groupKey = serializeTraces ? applicationEvent.traceId()
+          : coalescingKey.orElse(message.getMessageId());
+      groups.computeIfAbsent(groupKey, key -> new ArrayList<>())
+          .add(new ParsedMessage(message, applicationEvent, coalescingKey));
+    }
+
+    if (groups.size() == 1) {
+      groups.values().forEach(group -> run(group, failedMessageIds));
+    } else {
+      runConcurrently(List.copyOf(groups.values()), failedMessageIds);
+    }
+
+    if (!groups.isEmpty()) {
+      context.stateContext().stateTable().flush();
+    }
+
+    List<BatchItemFailure> failures = new ArrayList<>();
+    for (SQSMessage message : event.getRecords()) {
+      if (failedMessageIds.contains(message.getMessageId())) {
+        failures.add(new BatchItemFailure(message.getMessageId()));
       }
     }
+    return new SQSBatchResponse(failures);
   }
 
-  private void run(SQSMessage message) {
-    LOG.info("Processing SQS message: " + message.getMessageId());
+  private void runConcurrently(List<List<ParsedMessage>> groups, Set<String> failedMessageIds) {
+    List<Future<?>> futures = new ArrayList<>(groups.size());
+    for (List<ParsedMessage> group : groups) {
+      futures.add(executor.submit(() -> run(group, failedMessageIds)));
+    }
+
+    boolean interrupted = false;
+    for (int i = 0; i < futures.size(); i++) {
+      Future<?> future = futures.get(i);
+      try {
+        if (!interrupted) {
+          future.get();
+          continue;
+        }
+      } catch (InterruptedException e) {
+        LOG.error("Interrupted while waiting for SQS messages", e);
+        interrupted = true;
+      } catch (ExecutionException e) {
+        LOG.error("SQS message group failed", e);
+        markFailed(groups.get(i), failedMessageIds);
+        continue;
+      }
+
+      if (future.cancel(true)) {
+        markFailed(groups.get(i), failedMessageIds);
+      }
+    }
+
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void markFailed(List<ParsedMessage> group, Set<String> failedMessageIds) {
+    group.forEach(record -> failedMessageIds.add(record.message().getMessageId()));
+  }
+
+  private void run(List<ParsedMessage> group, Set<String> failedMessageIds) {
+    Map<String, List<ParsedMessage>> units = new LinkedHashMap<>();
+    for (ParsedMessage record : group) {
+      String unitKey = record.coalescingKey().orElse(record.message().getMessageId());
+      units.computeIfAbsent(unitKey, key -> new ArrayList<>()).add(record);
+    }
+
+    for (List<ParsedMessage> unit : units.values()) {
+      try {
+        run(unit);
+      } catch (RuntimeException e) {
+        for (ParsedMessage record : unit) {
+          LOG.error("SQS message failed: " + record.message().getMessageId(), e);
+          failedMessageIds.add(record.message().getMessageId());
+        }
+      }
+    }
+  }
+
+  private void run(List<ParsedMessage> unit) {
+    List<String> messageIds = unit.stream().map(record -> record.message().getMessageId()).toList();
+    LOG.info(() -> "Processing SQS messages: " + messageIds);
+    application.getEventRouter().processEvents(unit.stream().map(ParsedMessage::event).toList());
+    LOG.info(() -> "SQS messages processed: " + messageIds);
+  }
+
+  private ApplicationEvent parse(SQSMessage message) {
     ApplicationEvent event = gson.fromJson(message.getBody(), ApplicationEvent.class);
-    application.getEventRouter().processEvent(event);
-    LOG.info("SQS message processed: " + message.getMessageId());
+    if (event == null) {
+      throw new IllegalArgumentException("Empty SQS message: " + message.getMessageId());
+    }
+    return event;
+  }
+
+  private record ParsedMessage(SQSMessage message, ApplicationEvent event,
+      Optional<String> coalescingKey) {
   }
 
 }
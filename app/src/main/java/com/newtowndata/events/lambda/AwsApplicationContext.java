@@ -27,8 +27,17 @@ public class AwsApplicationContext implements ApplicationContext {
   private final StateContext stateContext;
 
   public AwsApplicationContext(String queueUrl, String tableName) {
+    this(queueUrl, tableName, AwsSettings.DEFAULT);
+  }
+
+  /**
+   * @param queueUrl SQS queue of the events.
+   * @param tableName DynamoDB table of the states.
+   * @param settings State table and object cache settings.
+   */
+  public AwsApplicationContext(String queueUrl, String tableName, AwsSettings settings) {
     this.eventPublisher = new AwsEventPublisher(queueUrl);
-    this.stateContext = new AwsStateContext(tableName);
+    this.stateContext = new AwsStateContext(tableName, settings);
   }
 
   @Override
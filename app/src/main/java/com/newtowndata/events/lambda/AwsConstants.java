@@ -21,6 +21,19 @@ public class AwsConstants {
   public static final String QUEUE_URL = "QUEUE_URL";
   public static final String TABLE_NAME = "TABLE_NAME";
   public static final String BUCKET_NAME = "BUCKET_NAME";
+  public static final String PARALLELISM = "PARALLELISM";
+  public static final String SERIALIZE_TRACES = "SERIALIZE_TRACES";
+  public static final String ASYNC_STATE_DELETES = "ASYNC_STATE_DELETES";
+  public static final String STATE_TTL_IN_SEC = "STATE_TTL_IN_SEC";
+  public static final String DELETE_LEGACY_STATE_ROWS = "DELETE_LEGACY_STATE_ROWS";
+  public static final String OBJECT_CACHE_SIZE_IN_BYTES = "OBJECT_CACHE_SIZE_IN_BYTES";
+  public static final String OBJECT_CACHE_REVALIDATE = "OBJECT_CACHE_REVALIDATE";
+  public static final String FUSION_MAX_HOPS = "FUSION_MAX_HOPS";
+  public static final String FUSION_TIME_BUDGET_IN_MS = "FUSION_TIME_BUDGET_IN_MS";
+  public static final String LOG_LEVEL = "LOG_LEVEL";
+  public static final String LOG_LEVELS = "LOG_LEVELS";
+  public static final String LOG_BUFFER_SIZE = "LOG_BUFFER_SIZE";
+  public static final String LOG_OVERFLOW_POLICY = "LOG_OVERFLOW_POLICY";
 
   private AwsConstants() {}
 
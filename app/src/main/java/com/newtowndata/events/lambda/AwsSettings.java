@@ -0,0 +1,172 @@
+/*
+ * Copyright 2023-2024 Voyta Krizek, https://github.com/NewTownData
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.newtowndata.events.lambda;
+
+import com.newtowndata.events.core.router.FusionSettings;
+import com.newtowndata.events.lambda.io.AwsStateTable;
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Tuning settings of {@link AwsApplication} and its context, e.g. read from the environment by
+ * {@link EventsHandler}. Names of the AWS resources are passed to the constructors on their own.
+ */
+public final class AwsSettings {
+
+  public static final int DEFAULT_PARALLELISM = 10;
+  public static final AwsSettings DEFAULT = builder().build();
+
+  private final boolean asyncStateDeletes;
+  private final Duration stateTtl;
+  private final boolean deleteLegacyStateRows;
+  private final long objectCacheSizeInBytes;
+  private final boolean objectCacheRevalidate;
+  private final int parallelism;
+  private final boolean serializeTraces;
+  private final FusionSettings fusionSettings;
+
+  private AwsSettings(Builder builder) {
+    this.asyncStateDeletes = builder.asyncStateDeletes;
+    this.stateTtl = builder.stateTtl;
+    this.deleteLegacyStateRows = builder.deleteLegacyStateRows;
+    this.objectCacheSizeInBytes = builder.objectCacheSizeInBytes;
+    this.objectCacheRevalidate = builder.objectCacheRevalidate;
+    this.parallelism = builder.parallelism;
+    this.serializeTraces = builder.serializeTraces;
+    this.fusionSettings = builder.fusionSettings;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * @return Whether legacy state rows are deleted in the background until the table is flushed.
+   */
+  public boolean asyncStateDeletes() {
+    return asyncStateDeletes;
+  }
+
+  /**
+   * @return Time after the last write when DynamoDB may remove a state, zero to disable.
+   */
+  public Duration stateTtl() {
+    return stateTtl;
+  }
+
+  /**
+   * @return Whether the one-row-per-state rows of older versions are deleted, see
+   *         {@link AwsStateTable}.
+   */
+  public boolean deleteLegacyStateRows() {
+    return deleteLegacyStateRows;
+  }
+
+  /**
+   * @return Size of the in-memory object cache, 0 disables the cache.
+   */
+  public long objectCacheSizeInBytes() {
+    return objectCacheSizeInBytes;
+  }
+
+  /**
+   * @return Whether cached objects are checked against their S3 ETag on every read.
+   */
+  public boolean objectCacheRevalidate() {
+    return objectCacheRevalidate;
+  }
+
+  /**
+   * @return Maximum number of SQS records processed concurrently.
+   */
+  public int parallelism() {
+    return parallelism;
+  }
+
+  /**
+   * @return Whether records with the same trace ID are processed one after another.
+   */
+  public boolean serializeTraces() {
+    return serializeTraces;
+  }
+
+  /**
+   * @return Settings for processing output events in the same invocation.
+   */
+  public FusionSettings fusionSettings() {
+    return fusionSettings;
+  }
+
+  /**
+   * Builder for {@link AwsSettings}.
+   */
+  public final static class Builder {
+
+    private boolean asyncStateDeletes;
+    private Duration stateTtl = AwsStateTable.DEFAULT_TTL;
+    private boolean deleteLegacyStateRows;
+    private long objectCacheSizeInBytes;
+    private boolean objectCacheRevalidate;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private boolean serializeTraces = true;
+    private FusionSettings fusionSettings = FusionSettings.DISABLED;
+
+    private Builder() {}
+
+    public Builder withAsyncStateDeletes(boolean asyncStateDeletes) {
+      this.asyncStateDeletes = asyncStateDeletes;
+      return this;
+    }
+
+    public Builder withStateTtl(Duration stateTtl) {
+      this.stateTtl = Objects.requireNonNull(stateTtl, "stateTtl");
+      return this;
+    }
+
+    public Builder withDeleteLegacyStateRows(boolean deleteLegacyStateRows) {
+      this.deleteLegacyStateRows = deleteLegacyStateRows;
+      return this;
+    }
+
+    public Builder withObjectCache(long sizeInBytes, boolean revalidate) {
+      this.objectCacheSizeInBytes = sizeInBytes;
+      this.objectCacheRevalidate = revalidate;
+      return this;
+    }
+
+    public Builder withParallelism(int parallelism) {
+      if (parallelism < 1) {
+        throw new IllegalArgumentException(
+            "Parallelism must be a positive number: " + parallelism);
+      }
+      this.parallelism = parallelism;
+      return this;
+    }
+
+    public Builder withSerializeTraces(boolean serializeTraces) {
+      this.serializeTraces = serializeTraces;
+      return this;
+    }
+
+    public Builder withFusion(FusionSettings fusionSettings) {
+      this.fusionSettings = Objects.requireNonNull(fusionSettings, "fusionSettings");
+      return this;
+    }
+
+    public AwsSettings build() {
+      return new AwsSettings(this);
+    }
+  }
+
+}
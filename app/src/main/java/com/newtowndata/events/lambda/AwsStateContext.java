@@ -14,22 +14,37 @@
 package com.newtowndata.events.lambda;
 
 import com.newtowndata.events.core.StateContext;
+import com.newtowndata.events.core.io.AsyncObjectStorage;
+import com.newtowndata.events.core.io.CachingObjectStorage;
+import com.newtowndata.events.core.io.ExecutorObjectStorage;
 import com.newtowndata.events.core.io.ObjectStorage;
 import com.newtowndata.events.core.io.StateTable;
+import com.newtowndata.events.lambda.io.AwsAsyncObjectStorage;
 import com.newtowndata.events.lambda.io.AwsObjectStorage;
 import com.newtowndata.events.lambda.io.AwsStateTable;
 
 /**
  * AWS-specific {@link StateContext} implementation.
  */
-public class AwsStateContext implements StateContext {
+public class AwsStateContext implements StateContext, AutoCloseable {
 
   private final ObjectStorage objectStorage;
   private final AwsStateTable stateTable;
+  private volatile AsyncObjectStorage asyncObjectStorage;
 
   public AwsStateContext(String tableArn) {
-    this.objectStorage = new AwsObjectStorage();
-    this.stateTable = new AwsStateTable(tableArn);
+    this(tableArn, AwsSettings.DEFAULT);
+  }
+
+  /**
+   * @param tableArn DynamoDB table of the states.
+   * @param settings State table and object cache settings.
+   */
+  public AwsStateContext(String tableArn, AwsSettings settings) {
+    this.objectStorage = CachingObjectStorage.wrap(new AwsObjectStorage(),
+        settings.objectCacheSizeInBytes(), settings.objectCacheRevalidate());
+    this.stateTable = new AwsStateTable(tableArn, settings.asyncStateDeletes(),
+        settings.stateTtl(), settings.deleteLegacyStateRows());
   }
 
   @Override
@@ -37,9 +52,33 @@ public class AwsStateContext implements StateContext {
     return objectStorage;
   }
 
+  @Override
+  public AsyncObjectStorage asyncObjectStorage() {
+    AsyncObjectStorage result = asyncObjectStorage;
+    if (result == null) {
+      synchronized (this) {
+        result = asyncObjectStorage;
+        if (result == null) {
+          // the async client is created on first use as it adds to the cold start,
+          // reads and writes must go through the cache when there is one
+          result = objectStorage instanceof CachingObjectStorage
+              ? new ExecutorObjectStorage(objectStorage)
+              : new AwsAsyncObjectStorage();
+          asyncObjectStorage = result;
+        }
+      }
+    }
+    return result;
+  }
+
   @Override
   public StateTable stateTable() {
     return stateTable;
   }
 
+  @Override
+  public void close() {
+    stateTable.close();
+  }
+
 }
@@ -13,26 +13,43 @@
  */
 package com.newtowndata.events.lambda;
 
+import static com.newtowndata.events.lambda.AwsConstants.ASYNC_STATE_DELETES;
 import static com.newtowndata.events.lambda.AwsConstants.BUCKET_NAME;
+import static com.newtowndata.events.lambda.AwsConstants.DELETE_LEGACY_STATE_ROWS;
+import static com.newtowndata.events.lambda.AwsConstants.FUSION_MAX_HOPS;
+import static com.newtowndata.events.lambda.AwsConstants.FUSION_TIME_BUDGET_IN_MS;
+import static com.newtowndata.events.lambda.AwsConstants.LOG_BUFFER_SIZE;
+import static com.newtowndata.events.lambda.AwsConstants.LOG_LEVEL;
+import static com.newtowndata.events.lambda.AwsConstants.LOG_LEVELS;
+import static com.newtowndata.events.lambda.AwsConstants.LOG_OVERFLOW_POLICY;
+import static com.newtowndata.events.lambda.AwsConstants.OBJECT_CACHE_REVALIDATE;
+import static com.newtowndata.events.lambda.AwsConstants.OBJECT_CACHE_SIZE_IN_BYTES;
+import static com.newtowndata.events.lambda.AwsConstants.PARALLELISM;
 import static com.newtowndata.events.lambda.AwsConstants.QUEUE_URL;
+import static com.newtowndata.events.lambda.AwsConstants.SERIALIZE_TRACES;
+import static com.newtowndata.events.lambda.AwsConstants.STATE_TTL_IN_SEC;
 import static com.newtowndata.events.lambda.AwsConstants.TABLE_NAME;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.SQSBatchResponse;
 import com.amazonaws.services.lambda.runtime.events.SQSEvent;
 import com.newtowndata.events.core.ApplicationContext;
 import com.newtowndata.events.core.logging.Logger;
 import com.newtowndata.events.core.logging.LoggerFactory;
+import com.newtowndata.events.core.logging.OverflowPolicy;
+import com.newtowndata.events.core.router.FusionSettings;
 import com.newtowndata.events.env.Environment;
+import com.newtowndata.events.lambda.io.AwsStateTable;
+import java.time.Duration;
+import java.util.Locale;
 
 /**
- * AWS Lambda event handler.
+ * AWS Lambda event handler. Failed records are reported back as batch item failures.
  */
-public class EventsHandler implements RequestHandler<SQSEvent, String> {
+public class EventsHandler implements RequestHandler<SQSEvent, SQSBatchResponse> {
 
   private static final Logger LOG = LoggerFactory.create(EventsHandler.class);
 
-  public static final String RESULT_OK = "ok";
-
   private final ApplicationContext applicationContext;
   private final AwsApplication application;
 
@@ -41,17 +58,62 @@ public class EventsHandler implements RequestHandler<SQSEvent, String> {
   }
 
   public EventsHandler(Environment environment) {
-    this.applicationContext =
-        new AwsApplicationContext(environment.getEnvironmentVariable(QUEUE_URL),
-            environment.getEnvironmentVariable(TABLE_NAME));
-    this.application =
-        new AwsApplication(applicationContext, environment.getEnvironmentVariable(BUCKET_NAME));
+    LoggerFactory.configure(
+        LoggerFactory.parseLevel(environment.getEnvironmentVariable(LOG_LEVEL, "INFO")),
+        LoggerFactory.parseLevels(environment.getEnvironmentVariable(LOG_LEVELS, "")));
+    int logBufferSize = Integer.parseInt(environment.getEnvironmentVariable(LOG_BUFFER_SIZE, "0"));
+    if (logBufferSize > 0) {
+      LoggerFactory.enableAsyncOutput(logBufferSize, OverflowPolicy.valueOf(environment
+          .getEnvironmentVariable(LOG_OVERFLOW_POLICY, "BLOCK").toUpperCase(Locale.ROOT)));
+    }
+    AwsSettings settings = createSettings(environment);
+    this.applicationContext = new AwsApplicationContext(
+        environment.getEnvironmentVariable(QUEUE_URL),
+        environment.getEnvironmentVariable(TABLE_NAME), settings);
+    this.application = new AwsApplication(applicationContext,
+        environment.getEnvironmentVariable(BUCKET_NAME), settings);
+  }
+
+  private static AwsSettings createSettings(Environment environment) {
+    return AwsSettings.builder()
+        .withAsyncStateDeletes(
+            Boolean.parseBoolean(environment.getEnvironmentVariable(ASYNC_STATE_DELETES, "false")))
+        .withStateTtl(Duration.ofSeconds(Long.parseLong(environment.getEnvironmentVariable(
+            STATE_TTL_IN_SEC, Long.toString(AwsStateTable.DEFAULT_TTL.toSeconds())))))
+        .withDeleteLegacyStateRows(Boolean.parseBoolean(
+            environment.getEnvironmentVariable(DELETE_LEGACY_STATE_ROWS, "false")))
+        .withObjectCache(
+            Long.parseLong(environment.getEnvironmentVariable(OBJECT_CACHE_SIZE_IN_BYTES, "0")),
+            Boolean.parseBoolean(
+                environment.getEnvironmentVariable(OBJECT_CACHE_REVALIDATE, "false")))
+        .withParallelism(Integer.parseInt(environment.getEnvironmentVariable(PARALLELISM,
+            Integer.toString(AwsSettings.DEFAULT_PARALLELISM))))
+        .withSerializeTraces(
+            Boolean.parseBoolean(environment.getEnvironmentVariable(SERIALIZE_TRACES, "true")))
+        .withFusion(createFusionSettings(environment))
+        .build();
+  }
+
+  private static FusionSettings createFusionSettings(Environment environment) {
+    int maxHops = Integer.parseInt(environment.getEnvironmentVariable(FUSION_MAX_HOPS, "0"));
+    long timeBudgetInMs =
+        Long.parseLong(environment.getEnvironmentVariable(FUSION_TIME_BUDGET_IN_MS, "0"));
+    return new FusionSettings(maxHops, Duration.ofMillis(timeBudgetInMs));
   }
 
   @Override
-  public String handleRequest(SQSEvent input, Context context) {
-    LOG.info("Request " + context.getAwsRequestId());
-    application.run(input);
-    return RESULT_OK;
+  public SQSBatchResponse handleRequest(SQSEvent input, Context context) {
+    try {
+      LOG.info("Request {}", context.getAwsRequestId());
+      SQSBatchResponse response = application.run(input);
+      if (!response.getBatchItemFailures().isEmpty()) {
+        LOG.warn("Request {}: {} failed record(s)", context.getAwsRequestId(),
+            response.getBatchItemFailures().size());
+      }
+      return response;
+    } finally {
+      // the execution environment can be frozen as soon as the handler returns
+      LoggerFactory.flush();
+    }
   }
 }
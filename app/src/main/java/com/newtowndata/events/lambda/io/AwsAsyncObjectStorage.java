@@ -0,0 +1,72 @@
+/*
+ * Copyright 2023-2024 Voyta Krizek, https://github.com/NewTownData
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.newtowndata.events.lambda.io;
+
+import com.newtowndata.events.core.io.AsyncObjectStorage;
+import com.newtowndata.events.core.logging.Logger;
+import com.newtowndata.events.core.logging.LoggerFactory;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+/**
+ * AWS-specific S3 implementation of {@link AsyncObjectStorage}. Requests share the connection pool
+ * of the async client instead of holding a thread each.
+ */
+public class AwsAsyncObjectStorage implements AsyncObjectStorage {
+
+  private static final Logger LOG = LoggerFactory.create(AwsAsyncObjectStorage.class);
+
+  private final S3AsyncClient client;
+
+  AwsAsyncObjectStorage(S3AsyncClient client) {
+    this.client = Objects.requireNonNull(client, "client");
+  }
+
+  public AwsAsyncObjectStorage() {
+    this(S3AsyncClient.create());
+  }
+
+  @Override
+  public CompletableFuture<byte[]> getObjectBytes(String storageName, String path) {
+    return client
+        .getObject(GetObjectRequest.builder().bucket(storageName).key(path).build(),
+            AsyncResponseTransformer.toBytes())
+        .thenApply(ResponseBytes::asByteArrayUnsafe);
+  }
+
+  @Override
+  public CompletableFuture<Void> putObject(String storageName, String path, byte[] data) {
+    return client
+        .putObject(PutObjectRequest.builder().bucket(storageName).key(path).build(),
+            AsyncRequestBody.fromBytesUnsafe(data))
+        .thenAccept(response -> LOG.info("S3 object s3://{}/{} created: {}", storageName, path,
+            response.eTag()));
+  }
+
+  @Override
+  public CompletableFuture<Void> deleteObject(String storageName, String path) {
+    return client
+        .deleteObject(DeleteObjectRequest.builder().bucket(storageName).key(path).build())
+        .thenAccept(response -> {
+        });
+  }
+
+}
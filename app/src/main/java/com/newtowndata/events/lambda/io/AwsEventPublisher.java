@@ -16,12 +16,24 @@ package com.newtowndata.events.lambda.io;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.newtowndata.events.core.ApplicationEvent;
+import com.newtowndata.events.core.io.DelayedEvent;
 import com.newtowndata.events.core.io.EventPublisher;
 import com.newtowndata.events.core.logging.Logger;
 import com.newtowndata.events.core.logging.LoggerFactory;
 import com.newtowndata.events.core.utils.EventUtils;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
 import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResponse;
 import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
 import software.amazon.awssdk.services.sqs.model.SendMessageRequest.Builder;
 import software.amazon.awssdk.services.sqs.model.SendMessageResponse;
@@ -33,6 +45,12 @@ public class AwsEventPublisher implements EventPublisher {
 
   private static final Logger LOG = LoggerFactory.create(AwsEventPublisher.class);
 
+  static final int MAX_BATCH_ENTRIES = 10;
+  static final int MAX_BATCH_SIZE_IN_BYTES = 256 * 1024;
+  static final int MAX_BATCH_ATTEMPTS = 3;
+  static final long BASE_BACKOFF_IN_MS = 50;
+  static final long MAX_BACKOFF_IN_MS = 1000;
+
   private final SqsClient client;
   private final String queueUrl;
   private final Gson gson;
@@ -57,11 +75,104 @@ public class AwsEventPublisher implements EventPublisher {
     builder.messageBody(gson.toJson(event)).queueUrl(queueUrl);
     if (waitInSec > 0) {
       builder.delaySeconds(waitInSec);
-      LOG.info(EventUtils.eventToString(event) + ": delaying for " + waitInSec + " sec");
+      LOG.info(() -> EventUtils.eventToString(event) + ": delaying for " + waitInSec + " sec");
     }
 
     SendMessageResponse result = client.sendMessage(builder.build());
-    LOG.info(EventUtils.eventToString(event) + ": sent " + result.messageId());
+    LOG.info(() -> EventUtils.eventToString(event) + ": sent " + result.messageId());
+  }
+
+  /**
+   * Publish events using SQS batches of up to {@value #MAX_BATCH_ENTRIES} messages. Entries that
+   * failed on the SQS side are retried with capped exponential backoff, entries rejected as sender
+   * faults are not.
+   */
+  @Override
+  public void publishDelayedEvents(List<DelayedEvent> events) {
+    if (events.size() == 1) {
+      DelayedEvent event = events.get(0);
+      publishEvent(event.event(), event.waitInSec());
+      return;
+    }
+
+    List<SendMessageBatchRequestEntry> batch = new ArrayList<>(MAX_BATCH_ENTRIES);
+    int batchSizeInBytes = 0;
+    for (DelayedEvent event : events) {
+      if (event.waitInSec() > 0) {
+        LOG.info(() -> EventUtils.eventToString(event.event()) + ": delaying for "
+            + event.waitInSec() + " sec");
+      }
+
+      SendMessageBatchRequestEntry entry = createEntry(event, batch.size());
+      int entrySizeInBytes = entry.messageBody().getBytes(StandardCharsets.UTF_8).length;
+
+      if (!batch.isEmpty() && (batch.size() == MAX_BATCH_ENTRIES
+          || batchSizeInBytes + entrySizeInBytes > MAX_BATCH_SIZE_IN_BYTES)) {
+        sendBatch(batch);
+        batch = new ArrayList<>(MAX_BATCH_ENTRIES);
+        batchSizeInBytes = 0;
+        entry = createEntry(event, 0);
+      }
+
+      batch.add(entry);
+      batchSizeInBytes += entrySizeInBytes;
+    }
+
+    if (!batch.isEmpty()) {
+      sendBatch(batch);
+    }
+  }
+
+  private SendMessageBatchRequestEntry createEntry(DelayedEvent event, int index) {
+    SendMessageBatchRequestEntry.Builder builder = SendMessageBatchRequestEntry.builder()
+        .id(Integer.toString(index)).messageBody(gson.toJson(event.event()));
+    if (event.waitInSec() > 0) {
+      builder.delaySeconds(event.waitInSec());
+    }
+    return builder.build();
+  }
+
+  private void sendBatch(List<SendMessageBatchRequestEntry> entries) {
+    Map<String, SendMessageBatchRequestEntry> pending = new LinkedHashMap<>();
+    entries.forEach(entry -> pending.put(entry.id(), entry));
+
+    for (int attempt = 1;; attempt++) {
+      SendMessageBatchResponse result = client.sendMessageBatch(SendMessageBatchRequest.builder()
+          .queueUrl(queueUrl).entries(List.copyOf(pending.values())).build());
+
+      result.successful().forEach(entry -> {
+        pending.remove(entry.id());
+        LOG.info(() -> "Batch entry " + entry.id() + ": sent " + entry.messageId());
+      });
+
+      if (pending.isEmpty()) {
+        return;
+      }
+
+      boolean senderFault = result.failed().stream().anyMatch(BatchResultErrorEntry::senderFault);
+      if (senderFault || attempt >= MAX_BATCH_ATTEMPTS) {
+        throw new IllegalStateException("Failed to send " + pending.size() + " of "
+            + entries.size() + " messages: " + result.failed().stream()
+                .map(entry -> entry.id() + "=" + entry.code()).collect(Collectors.joining(", ")));
+      }
+
+      LOG.warn("Retrying {} failed batch entries, attempt {}", pending.size(), attempt);
+      try {
+        Thread.sleep(backoffInMs(attempt));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while retrying batch entries", e);
+      }
+    }
+  }
+
+  /**
+   * Full-jitter backoff: a random delay up to the exponential ceiling for the given attempt, capped
+   * at {@value #MAX_BACKOFF_IN_MS} ms.
+   */
+  static long backoffInMs(int attempt) {
+    long ceiling = Math.min(MAX_BACKOFF_IN_MS, BASE_BACKOFF_IN_MS << Math.min(attempt - 1, 20));
+    return ThreadLocalRandom.current().nextLong(ceiling + 1);
   }
 
 }
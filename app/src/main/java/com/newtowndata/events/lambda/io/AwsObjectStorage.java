@@ -14,50 +14,196 @@
 package com.newtowndata.events.lambda.io;
 
 import com.newtowndata.events.core.io.ObjectStorage;
+import com.newtowndata.events.core.io.utils.ByteBufferInputStream;
 import com.newtowndata.events.core.logging.Logger;
 import com.newtowndata.events.core.logging.LoggerFactory;
-import com.newtowndata.events.lambda.io.utils.TemporaryFile;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.exception.SdkClientException;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
 
 /**
- * AWS-specific S3 implementation of {@link ObjectStorage}.
+ * AWS-specific S3 implementation of {@link ObjectStorage}. Objects up to the part size are
+ * buffered in memory and uploaded with a single request, larger objects are uploaded as a
+ * multipart upload with parts uploaded in parallel.
  */
 public class AwsObjectStorage implements ObjectStorage {
 
+  public static final int DEFAULT_PART_SIZE_IN_BYTES = 8 * 1024 * 1024;
+  public static final int DEFAULT_UPLOAD_CONCURRENCY = 4;
+
+  static final int MIN_PART_SIZE_IN_BYTES = 5 * 1024 * 1024;
+  static final int MAX_PARTS = 10_000;
+
+  private static final String CONTENT_TYPE = "application/octet-stream";
+
   private static final Logger LOG = LoggerFactory.create(AwsObjectStorage.class);
 
   private final S3Client client;
+  private final int partSizeInBytes;
+  private final int uploadConcurrency;
+  private final Executor uploadExecutor;
+
+  AwsObjectStorage(S3Client client, int partSizeInBytes, int uploadConcurrency,
+      Executor uploadExecutor) {
+    if (partSizeInBytes <= 0) {
+      throw new IllegalArgumentException("Part size must be positive: " + partSizeInBytes);
+    }
+    if (uploadConcurrency <= 0) {
+      throw new IllegalArgumentException(
+          "Upload concurrency must be positive: " + uploadConcurrency);
+    }
 
-  AwsObjectStorage(S3Client client) {
     this.client = Objects.requireNonNull(client, "client");
+    this.partSizeInBytes = partSizeInBytes;
+    this.uploadConcurrency = uploadConcurrency;
+    this.uploadExecutor = Objects.requireNonNull(uploadExecutor, "uploadExecutor");
+  }
+
+  AwsObjectStorage(S3Client client, int partSizeInBytes, int uploadConcurrency) {
+    this(client, partSizeInBytes, uploadConcurrency, SharedExecutor.EXECUTOR);
+  }
+
+  AwsObjectStorage(S3Client client) {
+    this(client, DEFAULT_PART_SIZE_IN_BYTES, DEFAULT_UPLOAD_CONCURRENCY);
   }
 
   public AwsObjectStorage() {
     this(S3Client.create());
   }
 
+  /**
+   * @param partSizeInBytes Objects up to this size are uploaded with a single request, larger ones
+   *        in parts of this size. S3 requires at least 5 MiB.
+   * @param uploadConcurrency Maximum parts uploaded in parallel, which also bounds the memory used
+   *        by one upload to {@code (uploadConcurrency + 1) * partSizeInBytes}.
+   */
+  public AwsObjectStorage(int partSizeInBytes, int uploadConcurrency) {
+    this(S3Client.create(), validatePartSize(partSizeInBytes), uploadConcurrency);
+  }
+
+  /**
+   * @param uploadExecutor Executor uploading the parts, owned by the caller.
+   */
+  public AwsObjectStorage(int partSizeInBytes, int uploadConcurrency, Executor uploadExecutor) {
+    this(S3Client.create(), validatePartSize(partSizeInBytes), uploadConcurrency,
+        uploadExecutor);
+  }
+
   @Override
   public InputStream getObject(String storageName, String path) {
     return client.getObject(GetObjectRequest.builder().bucket(storageName).key(path).build());
   }
 
+  @Override
+  public byte[] getObjectBytes(String storageName, String path) {
+    return getObjectAsBytes(storageName, path).asByteArrayUnsafe();
+  }
+
+  @Override
+  public ByteBuffer getObjectBuffer(String storageName, String path) {
+    return getObjectAsBytes(storageName, path).asByteBuffer();
+  }
+
   @Override
   public void putObject(String storageName, String path, InputStream inputStream) {
-    // S3 needs to know object size before upload, so we will create a temp file first
-    try (TemporaryFile tempFile = new TemporaryFile("s3-upload", ".bin")) {
-      tempFile.overwrite(inputStream);
-      PutObjectResponse response =
-          client.putObject(PutObjectRequest.builder().bucket(storageName).key(path).build(),
-              RequestBody.fromFile(tempFile.getTempFile()));
-      LOG.info("S3 object s3://" + storageName + "/" + path + " created: " + response.eTag());
+    // S3 needs to know the object size before upload, so the first part is read ahead
+    PushbackInputStream isr = new PushbackInputStream(inputStream, 1);
+    ByteBuffer firstPart = readPart(isr);
+    if (!hasMoreData(isr)) {
+      putBuffer(storageName, path, firstPart);
+      return;
+    }
+
+    uploadMultipart(storageName, path, firstPart, () -> readPart(isr));
+  }
+
+  /**
+   * Uploads a stream of known length, which needs no buffering up to the part size. At most
+   * {@code contentLength} bytes are read, a shorter stream fails the upload.
+   */
+  @Override
+  public void putObject(String storageName, String path, InputStream inputStream,
+      long contentLength) {
+    if (contentLength < 0) {
+      throw new IllegalArgumentException("Content length must not be negative: " + contentLength);
+    }
+    if (contentLength > partSizeInBytes) {
+      AtomicLong remaining = new AtomicLong(contentLength);
+      Supplier<ByteBuffer> nextPart = () -> {
+        int expected = (int) Math.min(partSizeInBytes, remaining.get());
+        ByteBuffer part = readPart(inputStream, expected);
+        if (part.remaining() < expected) {
+          throw new IllegalStateException("Object s3://" + storageName + "/" + path
+              + " ended after " + (contentLength - remaining.get() + part.remaining())
+              + " of " + contentLength + " bytes");
+        }
+        remaining.addAndGet(-expected);
+        return part;
+      };
+      uploadMultipart(storageName, path, nextPart.get(), nextPart);
+      return;
+    }
+
+    PutObjectResponse response = client.putObject(
+        PutObjectRequest.builder().bucket(storageName).key(path).contentLength(contentLength)
+            .build(),
+        RequestBody.fromInputStream(inputStream, contentLength));
+    LOG.info("S3 object s3://{}/{} created: {}", storageName, path, response.eTag());
+  }
+
+  @Override
+  public void putObject(String storageName, String path, byte[] data) {
+    putObject(storageName, path, ByteBuffer.wrap(data));
+  }
+
+  @Override
+  public void putObject(String storageName, String path, ByteBuffer data) {
+    if (data.remaining() <= partSizeInBytes) {
+      putBuffer(storageName, path, data);
+      return;
     }
+
+    // parts are slices of the buffer, so nothing is copied
+    ByteBuffer remaining = data.duplicate();
+    Supplier<ByteBuffer> nextPart = () -> {
+      ByteBuffer part = remaining.slice();
+      part.limit(Math.min(part.limit(), partSizeInBytes));
+      remaining.position(remaining.position() + part.remaining());
+      return part;
+    };
+    uploadMultipart(storageName, path, nextPart.get(), nextPart);
   }
 
   @Override
@@ -65,4 +211,153 @@ public class AwsObjectStorage implements ObjectStorage {
     client.deleteObject(DeleteObjectRequest.builder().bucket(storageName).key(path).build());
   }
 
+  @Override
+  public Optional<String> getETag(String storageName, String path) {
+    try {
+      return Optional.ofNullable(client
+          .headObject(HeadObjectRequest.builder().bucket(storageName).key(path).build()).eTag());
+    } catch (S3Exception e) {
+      if (e.statusCode() == 404) {
+        return Optional.empty();
+      }
+      throw e;
+    }
+  }
+
+  private ResponseBytes<GetObjectResponse> getObjectAsBytes(String storageName, String path) {
+    try {
+      return client
+          .getObjectAsBytes(GetObjectRequest.builder().bucket(storageName).key(path).build());
+    } catch (SdkClientException e) {
+      throw new IllegalStateException("Failed to read object " + storageName + ", path " + path,
+          e);
+    }
+  }
+
+  private void putBuffer(String storageName, String path, ByteBuffer data) {
+    PutObjectResponse response =
+        client.putObject(PutObjectRequest.builder().bucket(storageName).key(path).build(),
+            fromBuffer(data));
+    LOG.info("S3 object s3://{}/{} created: {}", storageName, path, response.eTag());
+  }
+
+  private void uploadMultipart(String storageName, String path, ByteBuffer firstPart,
+      Supplier<ByteBuffer> nextPart) {
+    String uploadId = client.createMultipartUpload(
+        CreateMultipartUploadRequest.builder().bucket(storageName).key(path).build()).uploadId();
+    List<Future<CompletedPart>> uploads = new ArrayList<>();
+    try {
+      ByteBuffer part = firstPart;
+      while (part.hasRemaining()) {
+        int partNumber = uploads.size() + 1;
+        if (partNumber > MAX_PARTS) {
+          throw new IllegalStateException("Object s3://" + storageName + "/" + path
+              + " exceeds " + MAX_PARTS + " parts of " + partSizeInBytes + " bytes");
+        }
+        // bound the parts held in memory to those being uploaded plus the one being read
+        if (partNumber > uploadConcurrency) {
+          uploads.get(partNumber - 1 - uploadConcurrency).get();
+        }
+
+        ByteBuffer data = part;
+        uploads.add(CompletableFuture.supplyAsync(
+            () -> uploadPart(storageName, path, uploadId, partNumber, data), uploadExecutor));
+        part = nextPart.get();
+      }
+
+      List<CompletedPart> completedParts = new ArrayList<>(uploads.size());
+      for (Future<CompletedPart> upload : uploads) {
+        completedParts.add(upload.get());
+      }
+      CompleteMultipartUploadResponse response = client.completeMultipartUpload(
+          CompleteMultipartUploadRequest.builder().bucket(storageName).key(path).uploadId(uploadId)
+              .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build())
+              .build());
+      LOG.info("S3 object s3://{}/{} created from {} parts: {}", storageName, path,
+          completedParts.size(), response.eTag());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      abortMultipart(storageName, path, uploadId, uploads);
+      throw new IllegalStateException("Interrupted upload of s3://" + storageName + "/" + path, e);
+    } catch (ExecutionException e) {
+      abortMultipart(storageName, path, uploadId, uploads);
+      throw new IllegalStateException("Failed to upload part of s3://" + storageName + "/" + path,
+          e.getCause());
+    } catch (RuntimeException e) {
+      abortMultipart(storageName, path, uploadId, uploads);
+      throw e;
+    }
+  }
+
+  private CompletedPart uploadPart(String storageName, String path, String uploadId,
+      int partNumber, ByteBuffer data) {
+    UploadPartResponse response = client.uploadPart(UploadPartRequest.builder().bucket(storageName)
+        .key(path).uploadId(uploadId).partNumber(partNumber).build(), fromBuffer(data));
+    return CompletedPart.builder().partNumber(partNumber).eTag(response.eTag()).build();
+  }
+
+  private void abortMultipart(String storageName, String path, String uploadId,
+      List<Future<CompletedPart>> uploads) {
+    uploads.forEach(upload -> upload.cancel(true));
+    try {
+      client.abortMultipartUpload(AbortMultipartUploadRequest.builder().bucket(storageName)
+          .key(path).uploadId(uploadId).build());
+    } catch (RuntimeException e) {
+      // S3 lifecycle rules can still clean up incomplete uploads
+      LOG.warn("Failed to abort upload {} of s3://{}/{}: {}", uploadId, storageName, path,
+          e.toString());
+    }
+  }
+
+  private ByteBuffer readPart(InputStream inputStream) {
+    return readPart(inputStream, partSizeInBytes);
+  }
+
+  private static ByteBuffer readPart(InputStream inputStream, int length) {
+    try {
+      return ByteBuffer.wrap(inputStream.readNBytes(length));
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to read object data", e);
+    }
+  }
+
+  private static boolean hasMoreData(PushbackInputStream inputStream) {
+    try {
+      int next = inputStream.read();
+      if (next < 0) {
+        return false;
+      }
+      inputStream.unread(next);
+      return true;
+    } catch (IOException e) {
+      throw new IllegalStateException("Failed to read object data", e);
+    }
+  }
+
+  private static RequestBody fromBuffer(ByteBuffer data) {
+    // unlike RequestBody.fromBytes or fromByteBuffer, this does not copy the data
+    return RequestBody.fromContentProvider(() -> new ByteBufferInputStream(data), data.remaining(),
+        CONTENT_TYPE);
+  }
+
+  private static int validatePartSize(int partSizeInBytes) {
+    if (partSizeInBytes < MIN_PART_SIZE_IN_BYTES) {
+      throw new IllegalArgumentException("Part size must be at least " + MIN_PART_SIZE_IN_BYTES
+          + " bytes: " + partSizeInBytes);
+    }
+    return partSizeInBytes;
+  }
+
+  /**
+   * Lazily created pool shared by all instances, each upload bounds its own parts in flight.
+   */
+  private static final class SharedExecutor {
+
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable, "s3-upload-part");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
 }
@@ -14,67 +14,371 @@
 package com.newtowndata.events.lambda.io;
 
 import com.newtowndata.events.core.io.StateTable;
+import com.newtowndata.events.core.logging.Logger;
+import com.newtowndata.events.core.logging.LoggerFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
 import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
-import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.DeleteRequest;
 import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
 import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValue;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
 
 /**
- * AWS-specific DynamoDB implementation of {@link StateTable}.
+ * AWS-specific DynamoDB implementation of {@link StateTable}. All data of a key is stored in a
+ * single row with sort key {@link #STATES_SORT_KEY}, so sort keys never depend on state values and
+ * every operation on a key is a single conditional update of that row: states in a string set,
+ * bits written by {@link #addBits(String, long)} in a number set of bit indexes, because DynamoDB
+ * has no bitwise update; adding to a set is atomic and idempotent just like a bitwise OR. A
+ * completed key is marked by {@link #COMPLETED_NAME} in the same update that drops its states and
+ * bits, and the marker is only set if it is absent, so exactly one caller completes the key. Every
+ * other update is conditional on the marker as well, so a late arrival does not bring the states
+ * of a completed key back. Older
+ * versions stored one row per state; those legacy rows are still read, but only deleted when the
+ * table is created with legacy row deletes enabled, which queries the rows first. Every write sets
+ * {@link #EXPIRES_AT_NAME} in epoch seconds, so DynamoDB TTL removes orphaned entries and
+ * completion markers.
  */
-public class AwsStateTable implements StateTable {
+public class AwsStateTable implements StateTable, AutoCloseable {
 
   public static final String KEY_NAME = "app_key";
   public static final String SORT_KEY_NAME = "app_state";
+  public static final String STATES_NAME = "app_states";
+  public static final String STATES_SORT_KEY = "#states";
+  public static final String BITS_NAME = "app_bits";
+  public static final String COMPLETED_NAME = "app_completed";
+  public static final String EXPIRES_AT_NAME = "expires_at";
+  public static final Duration DEFAULT_TTL = Duration.ofDays(1);
+
+  static final int MAX_BATCH_WRITE_ITEMS = 25;
+  static final int MAX_BATCH_ATTEMPTS = 5;
+  static final long BASE_BACKOFF_IN_MS = 20;
+
+  private static final Logger LOG = LoggerFactory.create(AwsStateTable.class);
+
+  private static final int DELETE_THREADS = 4;
+  private static final String NOT_COMPLETED = "attribute_not_exists(" + COMPLETED_NAME + ")";
 
   private final DynamoDbClient client;
   private final String tableName;
+  private final ExecutorService deleteExecutor;
+  private final Set<CompletableFuture<Void>> pendingDeletes = ConcurrentHashMap.newKeySet();
+  private final long ttlInSec;
+  private final boolean deleteLegacyRows;
+
+  AwsStateTable(String tableName, DynamoDbClient client, boolean asyncDeletes, Duration ttl,
+      boolean deleteLegacyRows) {
+    if (ttl.isNegative()) {
+      throw new IllegalArgumentException("TTL must not be negative: " + ttl);
+    }
 
-  AwsStateTable(String tableName, DynamoDbClient client) {
     this.tableName = Objects.requireNonNull(tableName, "tableName");
     this.client = Objects.requireNonNull(client, "client");
+    this.ttlInSec = ttl.toSeconds();
+    this.deleteLegacyRows = deleteLegacyRows;
+    this.deleteExecutor = asyncDeletes && deleteLegacyRows
+        ? Executors.newFixedThreadPool(DELETE_THREADS, runnable -> {
+          Thread thread = new Thread(runnable, "state-table-delete");
+          thread.setDaemon(true);
+          return thread;
+        })
+        : null;
+  }
+
+  AwsStateTable(String tableName, DynamoDbClient client) {
+    this(tableName, client, false, Duration.ZERO, false);
   }
 
   public AwsStateTable(String tableName) {
-    this(tableName, DynamoDbClient.create());
+    this(tableName, false, DEFAULT_TTL, false);
+  }
+
+  /**
+   * @param tableName DynamoDB table name.
+   * @param asyncDeletes Delete legacy rows of completed keys in the background, see
+   *        {@link #flush()}.
+   * @param ttl Time after the last write when DynamoDB may remove an entry, zero to disable.
+   * @param deleteLegacyRows Query and delete the one-row-per-state rows of older versions when a
+   *        key is completed, only needed while such rows can exist.
+   */
+  public AwsStateTable(String tableName, boolean asyncDeletes, Duration ttl,
+      boolean deleteLegacyRows) {
+    this(tableName, DynamoDbClient.create(), asyncDeletes, ttl, deleteLegacyRows);
   }
 
   @Override
   public Set<String> getStates(String key) {
+    Set<String> states = new HashSet<>();
+    for (Map<String, AttributeValue> row : query(key)) {
+      String sortKey = row.get(SORT_KEY_NAME).s();
+      if (STATES_SORT_KEY.equals(sortKey)) {
+        AttributeValue stateSet = row.get(STATES_NAME);
+        if (stateSet != null) {
+          states.addAll(stateSet.ss());
+        }
+      } else {
+        states.add(sortKey);
+      }
+    }
+    return states;
+  }
+
+  private List<Map<String, AttributeValue>> query(String key) {
     QueryResponse result = client.query(QueryRequest.builder().tableName(tableName)
         .keyConditionExpression(KEY_NAME + " = :" + KEY_NAME)
         .expressionAttributeValues(Map.of(":" + KEY_NAME, AttributeValue.fromS(key))).build());
 
     if (!result.hasItems()) {
+      return List.of();
+    }
+    return result.items();
+  }
+
+  @Override
+  public Set<String> addStates(String key, Set<String> states) {
+    if (states.isEmpty()) {
+      throw new IllegalArgumentException("No states to add for key " + key);
+    }
+    Map<String, AttributeValue> attributes;
+    try {
+      attributes = addToSet(key, STATES_NAME, AttributeValue.fromSs(List.copyOf(states)),
+          NOT_COMPLETED, ReturnValue.ALL_NEW);
+    } catch (ConditionalCheckFailedException e) {
       return Set.of();
     }
+    return Set.copyOf(attributes.get(STATES_NAME).ss());
+  }
+
+  /**
+   * Add the states in one update that returns the states from before it. Updates of a row are
+   * applied one after another, so exactly one caller sees the required states missing before its
+   * update and present after it. The states then stay in the row as the completion marker until
+   * it expires; a key completed by {@link #complete(String)} is not updated at all.
+   */
+  @Override
+  public boolean addStatesAndComplete(String key, Set<String> states,
+      Set<String> requiredStates) {
+    if (states.isEmpty()) {
+      throw new IllegalArgumentException("No states to add for key " + key);
+    }
 
-    return result.items().stream().map(row -> row.get(SORT_KEY_NAME).s())
-        .collect(Collectors.toSet());
+    Map<String, AttributeValue> attributes;
+    try {
+      attributes = addToSet(key, STATES_NAME, AttributeValue.fromSs(List.copyOf(states)),
+          NOT_COMPLETED, ReturnValue.UPDATED_OLD);
+    } catch (ConditionalCheckFailedException e) {
+      return false;
+    }
+
+    AttributeValue previous = attributes.get(STATES_NAME);
+    if (previous != null && previous.ss().containsAll(requiredStates)) {
+      return false;
+    }
+    Set<String> allStates = new HashSet<>(states);
+    if (previous != null) {
+      allStates.addAll(previous.ss());
+    }
+    if (!allStates.containsAll(requiredStates)) {
+      return false;
+    }
+    if (deleteLegacyRows) {
+      // legacy rows are keyed by the state, so they are known without a query
+      submitLegacyDelete(key, () -> requiredStates);
+    }
+    return true;
   }
 
+  /**
+   * Set the completion marker and drop the states and bits in one update, unless the marker is set
+   * already.
+   */
   @Override
-  public void putState(String key, String state) {
-    client.putItem(PutItemRequest.builder().tableName(tableName)
-        .item(
-            Map.of(KEY_NAME, AttributeValue.fromS(key), SORT_KEY_NAME, AttributeValue.fromS(state)))
-        .build());
+  public boolean complete(String key) {
+    String updateExpression = "SET " + COMPLETED_NAME + " = :" + COMPLETED_NAME;
+    Map<String, AttributeValue> expressionValues = new HashMap<>();
+    expressionValues.put(":" + COMPLETED_NAME, AttributeValue.fromBool(true));
+    if (ttlInSec > 0) {
+      updateExpression += ", " + EXPIRES_AT_NAME + " = :" + EXPIRES_AT_NAME;
+      expressionValues.put(":" + EXPIRES_AT_NAME, createExpiresAt());
+    }
+    updateExpression += " REMOVE " + STATES_NAME + ", " + BITS_NAME;
+
+    try {
+      client.updateItem(UpdateItemRequest.builder().tableName(tableName)
+          .key(createKey(key, STATES_SORT_KEY)).updateExpression(updateExpression)
+          .conditionExpression(NOT_COMPLETED).expressionAttributeValues(expressionValues)
+          .returnValues(ReturnValue.NONE).build());
+    } catch (ConditionalCheckFailedException e) {
+      return false;
+    }
+    if (deleteLegacyRows) {
+      submitLegacyDelete(key, () -> legacyRows(key));
+    }
+    return true;
   }
 
   @Override
-  public void deleteState(String key) {
-    Set<String> states = getStates(key);
-    for (String state : states) {
-      client.deleteItem(DeleteItemRequest.builder().tableName(tableName).key(
-          Map.of(KEY_NAME, AttributeValue.fromS(key), SORT_KEY_NAME, AttributeValue.fromS(state)))
-          .build());
+  public long addBits(String key, long bits) {
+    List<String> bitIndexes = new ArrayList<>(Long.bitCount(bits));
+    for (long remaining = bits; remaining != 0; remaining &= remaining - 1) {
+      bitIndexes.add(Integer.toString(Long.numberOfTrailingZeros(remaining)));
+    }
+    if (bitIndexes.isEmpty()) {
+      throw new IllegalArgumentException("No bits to add for key " + key);
+    }
+
+    Map<String, AttributeValue> attributes;
+    try {
+      attributes = addToSet(key, BITS_NAME, AttributeValue.fromNs(bitIndexes), NOT_COMPLETED,
+          ReturnValue.ALL_NEW);
+    } catch (ConditionalCheckFailedException e) {
+      return 0;
     }
+    long result = 0;
+    for (String bitIndex : attributes.get(BITS_NAME).ns()) {
+      result |= 1L << Integer.parseInt(bitIndex);
+    }
+    return result;
+  }
+
+  private Map<String, AttributeValue> addToSet(String key, String attributeName,
+      AttributeValue values, String conditionExpression, ReturnValue returnValue) {
+    String updateExpression = "ADD " + attributeName + " :" + attributeName;
+    Map<String, AttributeValue> expressionValues = new HashMap<>();
+    expressionValues.put(":" + attributeName, values);
+    if (ttlInSec > 0) {
+      updateExpression += " SET " + EXPIRES_AT_NAME + " = :" + EXPIRES_AT_NAME;
+      expressionValues.put(":" + EXPIRES_AT_NAME, createExpiresAt());
+    }
+
+    UpdateItemResponse response = client.updateItem(UpdateItemRequest.builder()
+        .tableName(tableName).key(createKey(key, STATES_SORT_KEY))
+        .updateExpression(updateExpression).conditionExpression(conditionExpression)
+        .expressionAttributeValues(expressionValues).returnValues(returnValue).build());
+    return response.attributes();
+  }
+
+  private AttributeValue createExpiresAt() {
+    return AttributeValue.fromN(Long.toString(Instant.now().getEpochSecond() + ttlInSec));
+  }
+
+  /**
+   * Delete the legacy rows of a completed key, in the background after the output event is
+   * published if enabled.
+   */
+  private void submitLegacyDelete(String key, Supplier<Collection<String>> sortKeys) {
+    if (deleteExecutor == null) {
+      deleteRows(key, sortKeys.get());
+      return;
+    }
+
+    CompletableFuture<Void> future =
+        CompletableFuture.runAsync(() -> deleteRows(key, sortKeys.get()), deleteExecutor);
+    pendingDeletes.add(future);
+    future.whenComplete((result, e) -> pendingDeletes.remove(future));
+  }
+
+  /**
+   * Wait for deletes running in the background. A failed delete is only logged, as the output of
+   * the join has been published already.
+   */
+  @Override
+  public void flush() {
+    for (CompletableFuture<Void> future : List.copyOf(pendingDeletes)) {
+      try {
+        future.join();
+      } catch (CompletionException e) {
+        LOG.error("State delete failed", e);
+      }
+    }
+  }
+
+  /**
+   * Wait for deletes running in the background and stop their threads.
+   */
+  @Override
+  public void close() {
+    if (deleteExecutor != null) {
+      deleteExecutor.shutdown();
+    }
+    flush();
+  }
+
+  private List<String> legacyRows(String key) {
+    return query(key).stream().map(row -> row.get(SORT_KEY_NAME).s())
+        .filter(sortKey -> !STATES_SORT_KEY.equals(sortKey)).toList();
+  }
+
+  private void deleteRows(String key, Collection<String> sortKeys) {
+    if (sortKeys.isEmpty()) {
+      return;
+    }
+
+    if (sortKeys.size() == 1) {
+      client.deleteItem(DeleteItemRequest.builder().tableName(tableName)
+          .key(createKey(key, sortKeys.iterator().next())).build());
+      return;
+    }
+
+    List<WriteRequest> requests = sortKeys.stream().map(sortKey -> WriteRequest.builder()
+        .deleteRequest(DeleteRequest.builder().key(createKey(key, sortKey)).build()).build())
+        .toList();
+    for (int i = 0; i < requests.size(); i += MAX_BATCH_WRITE_ITEMS) {
+      writeBatch(requests.subList(i, Math.min(i + MAX_BATCH_WRITE_ITEMS, requests.size())));
+    }
+  }
+
+  private void writeBatch(List<WriteRequest> requests) {
+    Map<String, List<WriteRequest>> pending = Map.of(tableName, new ArrayList<>(requests));
+    for (int attempt = 1;; attempt++) {
+      BatchWriteItemResponse response =
+          client.batchWriteItem(BatchWriteItemRequest.builder().requestItems(pending).build());
+      if (!response.hasUnprocessedItems() || response.unprocessedItems().isEmpty()) {
+        return;
+      }
+
+      pending = response.unprocessedItems();
+      if (attempt >= MAX_BATCH_ATTEMPTS) {
+        throw new IllegalStateException("Unprocessed deletes in table " + tableName + " after "
+            + attempt + " attempts: " + pending.getOrDefault(tableName, List.of()).size());
+      }
+
+      LOG.warn("Retrying {} unprocessed deletes, attempt {}",
+          pending.getOrDefault(tableName, List.of()).size(), attempt);
+      try {
+        Thread.sleep(BASE_BACKOFF_IN_MS << (attempt - 1));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while deleting states", e);
+      }
+    }
+  }
+
+  private static Map<String, AttributeValue> createKey(String key, String sortKey) {
+    return Map.of(KEY_NAME, AttributeValue.fromS(key), SORT_KEY_NAME,
+        AttributeValue.fromS(sortKey));
   }
 
 }
@@ -29,15 +29,21 @@ public final class AwsHelper {
   private AwsHelper() {}
 
   public static SQSEvent createEvent(ApplicationEvent applicationEvent) {
+    return createEvent(List.of(applicationEvent));
+  }
+
+  public static SQSEvent createEvent(List<ApplicationEvent> applicationEvents) {
     Gson gson = new GsonBuilder().create();
-    String message = gson.toJson(applicationEvent);
 
-    SQSMessage sqsMessage = new SQSMessage();
-    sqsMessage.setBody(message);
-    sqsMessage.setMessageId(UUID.randomUUID().toString());
+    List<SQSMessage> sqsMessages = applicationEvents.stream().map(applicationEvent -> {
+      SQSMessage sqsMessage = new SQSMessage();
+      sqsMessage.setBody(gson.toJson(applicationEvent));
+      sqsMessage.setMessageId(UUID.randomUUID().toString());
+      return sqsMessage;
+    }).toList();
 
     SQSEvent event = new SQSEvent();
-    event.setRecords(List.of(sqsMessage));
+    event.setRecords(sqsMessages);
 
     return event;
   }
@@ -20,6 +20,8 @@ import com.newtowndata.events.core.ApplicationEvent;
 import com.newtowndata.events.core.StateContext;
 import com.newtowndata.events.core.logging.Logger;
 import com.newtowndata.events.core.logging.LoggerFactory;
+import com.newtowndata.events.local.io.FileStateTable;
+import com.newtowndata.events.local.io.LocalObjectStorage;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
@@ -27,7 +29,16 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Local standalone instance of {@link Application};
@@ -36,30 +47,130 @@ public class LocalApplication {
 
   private static final Logger LOG = LoggerFactory.create(LocalApplication.class);
 
+  public static final String PROPERTY_WORKERS = "events.workers";
+  public static final String PROPERTY_STATE_DIRECTORY = "events.stateDirectory";
+  public static final String PROPERTY_OBJECT_CACHE_SIZE = "events.objectCacheSize";
+  public static final String PROPERTY_OBJECT_SYNC_POLICY = "events.objectSyncPolicy";
+  public static final String PROPERTY_OBJECT_MAP_THRESHOLD = "events.objectMapThreshold";
+
+  private static final long POLL_INTERVAL_IN_MS = 50L;
+
   private LocalApplication() {}
 
   public static void run(Path objectStorageRoot, ApplicationEvent initialEvent) {
-    StateContext stateContext = new LocalStateContext(objectStorageRoot);
+    run(objectStorageRoot, initialEvent, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Process the initial event and all events produced by it using a pool of workers. Returns once
+   * the queue is empty and no worker is processing an event. Branches of the same trace can be
+   * processed at the same time, so joins rely on the atomic updates of the state table.
+   * 
+   * @param objectStorageRoot Root directory of the local object storage.
+   * @param initialEvent Event to start with.
+   * @param workerCount Number of worker threads.
+   */
+  public static void run(Path objectStorageRoot, ApplicationEvent initialEvent, int workerCount) {
+    run(new LocalStateContext(objectStorageRoot), initialEvent, workerCount);
+  }
+
+  /**
+   * Process the initial event and all events produced by it using a pool of workers.
+   * 
+   * @param stateContext State context, e.g. with a durable state table.
+   * @param initialEvent Event to start with.
+   * @param workerCount Number of worker threads.
+   */
+  public static void run(StateContext stateContext, ApplicationEvent initialEvent,
+      int workerCount) {
+    if (workerCount < 1) {
+      throw new IllegalArgumentException("Worker count must be a positive number: " + workerCount);
+    }
+
     LocalApplicationContext localContext = new LocalApplicationContext(stateContext, initialEvent);
     Application application = new Application(localContext);
 
-    Optional<ApplicationEvent> event;
-    while ((event = localContext.consumeEvent()).isPresent()) {
-      LOG.info("----- START -----");
-      application.getEventRouter().processEvent(event.get());
-      LOG.info("----- END -----");
+    AtomicReference<RuntimeException> failure = new AtomicReference<>();
+    ExecutorService executor = Executors.newFixedThreadPool(workerCount);
+    try {
+      List<Future<?>> workers = new ArrayList<>(workerCount);
+      for (int i = 0; i < workerCount; i++) {
+        workers.add(executor.submit(() -> runWorker(localContext, application, failure)));
+      }
+      for (Future<?> worker : workers) {
+        worker.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for workers", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Worker failed", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+
+    if (failure.get() != null) {
+      throw failure.get();
     }
 
     LOG.info("Done");
   }
 
+  private static void runWorker(LocalApplicationContext localContext, Application application,
+      AtomicReference<RuntimeException> failure) {
+    while (failure.get() == null && !localContext.isIdle()) {
+      Optional<ApplicationEvent> event;
+      try {
+        event = localContext.consumeEvent(POLL_INTERVAL_IN_MS, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+
+      if (event.isEmpty()) {
+        continue;
+      }
+
+      LOG.info("----- START -----");
+      try {
+        application.getEventRouter().processEvent(event.get());
+      } catch (RuntimeException e) {
+        failure.compareAndSet(null, e);
+      } finally {
+        localContext.completeEvent();
+      }
+      LOG.info("----- END -----");
+    }
+  }
+
   public static void main(String[] args) {
     if (args.length < 1) {
       throw new IllegalArgumentException("Missing input event file. Example: event.json");
     }
 
     ApplicationEvent initialEvent = loadEventFromFile(args[0]);
-    run(Paths.get(System.getProperty("user.dir"), "temp"), initialEvent);
+    Path objectStorageRoot = Paths.get(System.getProperty("user.dir"), "temp");
+    int workerCount =
+        Integer.getInteger(PROPERTY_WORKERS, Runtime.getRuntime().availableProcessors());
+
+    LocalObjectStorage objectStorage = new LocalObjectStorage(objectStorageRoot,
+        LocalObjectStorage.SyncPolicy.valueOf(System.getProperty(PROPERTY_OBJECT_SYNC_POLICY,
+            LocalObjectStorage.SyncPolicy.NONE.name()).toUpperCase(Locale.ROOT)),
+        Integer.getInteger(PROPERTY_OBJECT_MAP_THRESHOLD, LocalObjectStorage.MAPPING_DISABLED));
+    long objectCacheSize = Long.getLong(PROPERTY_OBJECT_CACHE_SIZE, 0L);
+
+    String stateDirectory = System.getProperty(PROPERTY_STATE_DIRECTORY);
+    if (stateDirectory == null) {
+      run(LocalStateContext.of(objectStorage).withObjectCache(objectCacheSize).build(),
+          initialEvent, workerCount);
+      return;
+    }
+
+    // joins in progress survive a restart
+    try (FileStateTable stateTable = new FileStateTable(Paths.get(stateDirectory))) {
+      run(LocalStateContext.of(objectStorage).withStateTable(stateTable)
+          .withObjectCache(objectCacheSize).build(), initialEvent, workerCount);
+    }
   }
 
   static ApplicationEvent loadEventFromFile(String file) {
@@ -20,27 +20,35 @@ import com.newtowndata.events.core.io.EventPublisher;
 import com.newtowndata.events.core.logging.Logger;
 import com.newtowndata.events.core.logging.LoggerFactory;
 import com.newtowndata.events.core.utils.EventUtils;
-import java.util.LinkedList;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.Queue;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Local implementation of {@link ApplicationContext}.
+ * Local implementation of {@link ApplicationContext}. Delayed events are kept in a delay queue and
+ * become available for consumption at their due time.
  */
 public class LocalApplicationContext implements ApplicationContext {
 
   private static final Logger LOG = LoggerFactory.create(LocalApplicationContext.class);
 
-  private final Queue<ApplicationEvent> queue;
+  private final DelayQueue<QueuedEvent> queue;
+  private final AtomicLong sequence;
+  private final AtomicInteger pendingEvents;
   private final StateContext stateContext;
 
   public LocalApplicationContext(StateContext stateContext, ApplicationEvent initialEvent) {
     this.stateContext = Objects.requireNonNull(stateContext, "stateContext");
     Objects.requireNonNull(initialEvent, "initialEvent");
 
-    this.queue = new LinkedList<>();
-    LOG.info("Initialized queue with event: " + EventUtils.eventToString(initialEvent));
+    this.queue = new DelayQueue<>();
+    this.sequence = new AtomicLong();
+    this.pendingEvents = new AtomicInteger();
+    LOG.info(() -> "Initialized queue with event: " + EventUtils.eventToString(initialEvent));
     eventPublisher().publishEvent(initialEvent);
   }
 
@@ -56,16 +64,13 @@ public class LocalApplicationContext implements ApplicationContext {
     }
 
     if (waitInSec > 0) {
-      LOG.info(EventUtils.eventToString(event) + ": sleeping for " + waitInSec + " sec");
-      try {
-        Thread.sleep(1000L * waitInSec);
-      } catch (InterruptedException e) {
-        Thread.currentThread().interrupt();
-      }
+      LOG.info(() -> EventUtils.eventToString(event) + ": delaying for " + waitInSec + " sec");
     }
 
-    queue.add(event);
-    LOG.info("Added event to queue: " + EventUtils.eventToString(event));
+    long dueTimeInNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(waitInSec);
+    pendingEvents.incrementAndGet();
+    queue.add(new QueuedEvent(event, dueTimeInNanos, sequence.getAndIncrement()));
+    LOG.info(() -> "Added event to queue: " + EventUtils.eventToString(event));
   }
 
   @Override
@@ -73,14 +78,60 @@ public class LocalApplicationContext implements ApplicationContext {
     return stateContext;
   }
 
-  public Optional<ApplicationEvent> consumeEvent() {
-    Optional<ApplicationEvent> event = Optional.ofNullable(queue.poll());
-    if (event.isPresent()) {
-      LOG.info("Event consumed: " + EventUtils.eventToString(event.get()));
-    } else {
-      LOG.info("No event found");
-    }
+  /**
+   * Wait up to the supplied timeout for the next event that is due. Every consumed event must be
+   * followed by {@link #completeEvent()} once its processing finished.
+   * 
+   * @param timeout Maximum time to wait.
+   * @param unit Unit of the timeout.
+   * @return Consumed event or empty if no event became available in time.
+   * @throws InterruptedException If interrupted while waiting.
+   */
+  public Optional<ApplicationEvent> consumeEvent(long timeout, TimeUnit unit)
+      throws InterruptedException {
+    Optional<ApplicationEvent> event =
+        Optional.ofNullable(queue.poll(timeout, unit)).map(QueuedEvent::event);
+    event.ifPresent(e -> LOG.info(() -> "Event consumed: " + EventUtils.eventToString(e)));
     return event;
   }
 
+  /**
+   * Mark a consumed event as processed. Events published while processing it are already counted,
+   * so the context only becomes idle once the whole chain has been drained.
+   */
+  public void completeEvent() {
+    if (pendingEvents.decrementAndGet() < 0) {
+      throw new IllegalStateException("More events completed than published");
+    }
+  }
+
+  /**
+   * @return {@code true} if there are no queued events and no events being processed.
+   */
+  public boolean isIdle() {
+    return pendingEvents.get() == 0;
+  }
+
+  /**
+   * Queued event with its due time. Events with the same due time are consumed in publishing order.
+   */
+  private record QueuedEvent(ApplicationEvent event, long dueTimeInNanos, long sequence)
+      implements Delayed {
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+      return unit.convert(dueTimeInNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+      if (other instanceof QueuedEvent otherEvent) {
+        int result = Long.compare(dueTimeInNanos - otherEvent.dueTimeInNanos, 0L);
+        return result != 0 ? result : Long.compare(sequence, otherEvent.sequence);
+      }
+      return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+    }
+
+  }
+
 }
@@ -14,23 +14,45 @@
 package com.newtowndata.events.local;
 
 import com.newtowndata.events.core.StateContext;
+import com.newtowndata.events.core.io.AsyncObjectStorage;
+import com.newtowndata.events.core.io.CachingObjectStorage;
+import com.newtowndata.events.core.io.ExecutorObjectStorage;
 import com.newtowndata.events.core.io.ObjectStorage;
 import com.newtowndata.events.core.io.StateTable;
+import com.newtowndata.events.local.io.FileStateTable;
 import com.newtowndata.events.local.io.LocalObjectStorage;
 import com.newtowndata.events.local.io.LocalStateTable;
 import java.nio.file.Path;
+import java.util.Objects;
 
 /**
  * Local implementation of {@link StateContext}.
  */
 public class LocalStateContext implements StateContext {
 
-  private final LocalObjectStorage objectStorage;
-  private final LocalStateTable stateTable;
+  private final ObjectStorage objectStorage;
+  private final StateTable stateTable;
+  private final AsyncObjectStorage asyncObjectStorage;
 
   public LocalStateContext(Path objectStorageRoot) {
-    this.objectStorage = new LocalObjectStorage(objectStorageRoot);
-    this.stateTable = new LocalStateTable();
+    this(of(new LocalObjectStorage(objectStorageRoot)));
+  }
+
+  private LocalStateContext(Builder builder) {
+    // nothing else writes to the directory while the application runs, so no revalidation
+    this.objectStorage =
+        CachingObjectStorage.wrap(builder.objectStorage, builder.objectCacheSizeInBytes, false);
+    this.stateTable = builder.stateTable == null ? new LocalStateTable() : builder.stateTable;
+    // async reads and writes must go through the cache as well
+    this.asyncObjectStorage = new ExecutorObjectStorage(this.objectStorage);
+  }
+
+  /**
+   * @param objectStorage Local object storage, e.g. with a stricter sync policy.
+   * @return Context builder.
+   */
+  public static Builder of(LocalObjectStorage objectStorage) {
+    return new Builder(objectStorage);
   }
 
   @Override
@@ -38,9 +60,46 @@ public class LocalStateContext implements StateContext {
     return objectStorage;
   }
 
+  @Override
+  public AsyncObjectStorage asyncObjectStorage() {
+    return asyncObjectStorage;
+  }
+
   @Override
   public StateTable stateTable() {
     return stateTable;
   }
 
+  public final static class Builder {
+
+    private final LocalObjectStorage objectStorage;
+    private StateTable stateTable;
+    private long objectCacheSizeInBytes;
+
+    private Builder(LocalObjectStorage objectStorage) {
+      this.objectStorage = Objects.requireNonNull(objectStorage, "objectStorage");
+    }
+
+    /**
+     * @param stateTable State table, e.g. a durable {@link FileStateTable}.
+     */
+    public Builder withStateTable(StateTable stateTable) {
+      this.stateTable = Objects.requireNonNull(stateTable, "stateTable");
+      return this;
+    }
+
+    /**
+     * @param objectCacheSizeInBytes Size of the in-memory object cache, 0 disables the cache.
+     */
+    public Builder withObjectCache(long objectCacheSizeInBytes) {
+      this.objectCacheSizeInBytes = objectCacheSizeInBytes;
+      return this;
+    }
+
+    public LocalStateContext build() {
+      return new LocalStateContext(this);
+    }
+
+  }
+
 }
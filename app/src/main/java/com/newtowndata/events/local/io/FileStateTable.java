@@ -0,0 +1,756 @@
+/*
+ * Copyright 2023-2024 Voyta Krizek, https://github.com/NewTownData
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.newtowndata.events.local.io;
+
+import com.newtowndata.events.core.io.StateTable;
+import com.newtowndata.events.core.logging.Logger;
+import com.newtowndata.events.core.logging.LoggerFactory;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Durable local implementation of {@link StateTable}. Every change is appended to a log of
+ * memory-mapped segment files and applied to an in-memory index, which is rebuilt from the log on
+ * startup. Once the log grows to twice its size after the last compaction, it is compacted in the
+ * background by writing the live entries to a new segment and deleting the old ones.
+ * 
+ * <p>
+ * Changes of a key are appended and applied while holding the lock of its stripe, so changes of
+ * different keys only share the short copy into the active segment. Replaying a record again
+ * after a snapshot that already contains it yields the same entry, which lets the compaction
+ * snapshot the index while changes keep being appended.
+ * 
+ * <p>
+ * Appended records reach the disk when the segment is synced. With a positive sync interval,
+ * segments are synced in the background, so a power failure can lose the changes of the last
+ * interval; a zero interval syncs on every change.
+ */
+public class FileStateTable implements StateTable, AutoCloseable {
+
+  public static final Duration DEFAULT_TTL = LocalStateTable.DEFAULT_TTL;
+  public static final Duration DEFAULT_SYNC_INTERVAL = Duration.ofMillis(100);
+  public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+  private static final Logger LOG = LoggerFactory.create(FileStateTable.class);
+
+  private static final String SEGMENT_PREFIX = "segment-";
+  private static final String SEGMENT_SUFFIX = ".log";
+  private static final String TEMPORARY_SUFFIX = ".tmp";
+  private static final int LOCK_STRIPES = 64;
+  private static final int MIN_COMPACTION_SEGMENTS = 2;
+  private static final long MIN_SWEEP_INTERVAL_IN_MS = TimeUnit.SECONDS.toMillis(1);
+  private static final long MAX_SWEEP_INTERVAL_IN_MS = TimeUnit.MINUTES.toMillis(1);
+
+  private final Path directory;
+  private final Map<String, Entry> index;
+  private final long ttlInMs;
+  private final boolean syncOnWrite;
+  private final int segmentSize;
+  private final LongSupplier clock;
+  private final ScheduledExecutorService scheduler;
+  private final ExecutorService compactor;
+  // a key is changed only while holding the lock of its stripe
+  private final Object[] keyLocks;
+  private final AtomicBoolean compactionDue;
+
+  // guarded by appendLock
+  private final Object appendLock;
+  private final Deque<Path> segments;
+  private MappedByteBuffer activeSegment;
+  private long nextSequence;
+  private int compactedSegments;
+  private boolean compacting;
+  private boolean dirty;
+  private boolean closed;
+
+  public FileStateTable(Path directory) {
+    this(directory, DEFAULT_TTL, DEFAULT_SYNC_INTERVAL);
+  }
+
+  /**
+   * @param directory Directory of the log segments.
+   * @param ttl Time after the last write when an entry expires.
+   * @param syncInterval Interval of syncing the log to the disk, zero to sync on every change.
+   */
+  public FileStateTable(Path directory, Duration ttl, Duration syncInterval) {
+    this(directory, ttl, syncInterval, DEFAULT_SEGMENT_SIZE, System::currentTimeMillis, true);
+  }
+
+  FileStateTable(Path directory, Duration ttl, Duration syncInterval, int segmentSize,
+      LongSupplier clock, boolean background) {
+    if (ttl.isNegative() || ttl.isZero()) {
+      throw new IllegalArgumentException("TTL must be positive: " + ttl);
+    }
+    if (syncInterval.isNegative()) {
+      throw new IllegalArgumentException("Sync interval must not be negative: " + syncInterval);
+    }
+    if (segmentSize < LogRecord.MAX_SIZE) {
+      throw new IllegalArgumentException("Segment size must be at least " + LogRecord.MAX_SIZE
+          + " bytes: " + segmentSize);
+    }
+
+    this.directory = directory;
+    this.index = new ConcurrentHashMap<>();
+    this.ttlInMs = ttl.toMillis();
+    this.syncOnWrite = syncInterval.isZero();
+    this.segmentSize = segmentSize;
+    this.clock = clock;
+    this.keyLocks = new Object[LOCK_STRIPES];
+    for (int i = 0; i < keyLocks.length; i++) {
+      keyLocks[i] = new Object();
+    }
+    this.compactionDue = new AtomicBoolean();
+    this.appendLock = new Object();
+    this.segments = new ArrayDeque<>();
+
+    long start = System.nanoTime();
+    recover();
+    LOG.info(() -> "Recovered " + index.size() + " state table entries from " + segments.size()
+        + " segments in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+
+    if (background) {
+      this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "state-table-log");
+        thread.setDaemon(true);
+        return thread;
+      });
+      long sweepInterval = Math.max(MIN_SWEEP_INTERVAL_IN_MS,
+          Math.min(MAX_SWEEP_INTERVAL_IN_MS, ttlInMs / 10));
+      scheduler.scheduleWithFixedDelay(this::sweepExpired, sweepInterval, sweepInterval,
+          TimeUnit.MILLISECONDS);
+      if (!syncOnWrite) {
+        scheduler.scheduleWithFixedDelay(this::syncQuietly, syncInterval.toNanos(),
+            syncInterval.toNanos(), TimeUnit.NANOSECONDS);
+      }
+      this.compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "state-table-compaction");
+        thread.setDaemon(true);
+        return thread;
+      });
+    } else {
+      // without background threads the writer that fills a segment compacts the log
+      this.scheduler = null;
+      this.compactor = null;
+    }
+  }
+
+  @Override
+  public Set<String> getStates(String key) {
+    Entry entry = index.get(key);
+    if (entry == null || isExpired(entry, clock.getAsLong())) {
+      return Set.of();
+    }
+    return entry.states();
+  }
+
+  @Override
+  public Set<String> addStates(String key, Set<String> states) {
+    if (states.isEmpty()) {
+      throw new IllegalArgumentException("No states to add for key " + key);
+    }
+
+    long now = clock.getAsLong();
+    Entry result;
+    synchronized (keyLock(key)) {
+      Entry current = live(index.get(key), now);
+      if (current.completed()) {
+        return Set.of();
+      }
+      result = current.withStates(states, now);
+      states.forEach(state -> append(LogRecord.addState(now, key, state)));
+      index.put(key, result);
+    }
+    compactIfDue();
+    return result.states();
+  }
+
+  /**
+   * Add the states and complete the key in the same atomic step if it has all required states.
+   */
+  @Override
+  public boolean addStatesAndComplete(String key, Set<String> states,
+      Set<String> requiredStates) {
+    if (states.isEmpty()) {
+      throw new IllegalArgumentException("No states to add for key " + key);
+    }
+    return complete(key, states, requiredStates);
+  }
+
+  @Override
+  public boolean complete(String key) {
+    return complete(key, Set.of(), Set.of());
+  }
+
+  /**
+   * Add the states and replace the entry by a completion marker if it has all required states,
+   * unless it is completed already.
+   */
+  private boolean complete(String key, Set<String> states, Set<String> requiredStates) {
+    long now = clock.getAsLong();
+    boolean completed;
+    synchronized (keyLock(key)) {
+      Entry current = live(index.get(key), now);
+      if (current.completed()) {
+        return false;
+      }
+      Entry updated = states.isEmpty() ? current : current.withStates(states, now);
+      completed = updated.states().containsAll(requiredStates);
+      if (completed) {
+        append(LogRecord.complete(now, key));
+        index.put(key, Entry.completed(now));
+      } else if (!states.isEmpty()) {
+        states.forEach(state -> append(LogRecord.addState(now, key, state)));
+        index.put(key, updated);
+      }
+    }
+    compactIfDue();
+    return completed;
+  }
+
+  @Override
+  public long addBits(String key, long bits) {
+    if (bits == 0) {
+      throw new IllegalArgumentException("No bits to add for key " + key);
+    }
+
+    long now = clock.getAsLong();
+    Entry result;
+    synchronized (keyLock(key)) {
+      Entry current = live(index.get(key), now);
+      if (current.completed()) {
+        return 0;
+      }
+      result = current.withBits(bits, now);
+      append(LogRecord.addBits(now, key, bits));
+      index.put(key, result);
+    }
+    compactIfDue();
+    return result.bits();
+  }
+
+  /**
+   * Sync the appended changes to the disk.
+   */
+  @Override
+  public void flush() {
+    MappedByteBuffer segment;
+    synchronized (appendLock) {
+      if (!dirty || closed) {
+        return;
+      }
+      segment = activeSegment;
+      dirty = false;
+    }
+    segment.force();
+  }
+
+  @Override
+  public void close() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+      // a running compaction finishes, so the log is not left with a partial snapshot
+      compactor.shutdown();
+      try {
+        compactor.awaitTermination(1, TimeUnit.MINUTES);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    synchronized (appendLock) {
+      if (closed) {
+        return;
+      }
+      activeSegment.force();
+      closed = true;
+    }
+  }
+
+  /**
+   * Remove expired entries from the index. The log keeps their records until the next
+   * compaction, recovery skips them.
+   * 
+   * @return Number of removed entries.
+   */
+  int sweep() {
+    long now = clock.getAsLong();
+    int removed = 0;
+    for (Map.Entry<String, Entry> item : index.entrySet()) {
+      if (isExpired(item.getValue(), now) && index.remove(item.getKey(), item.getValue())) {
+        removed++;
+      }
+    }
+    return removed;
+  }
+
+  int size() {
+    return index.size();
+  }
+
+  int segmentCount() {
+    synchronized (appendLock) {
+      return segments.size();
+    }
+  }
+
+  private void sweepExpired() {
+    int removed = sweep();
+    if (removed > 0) {
+      LOG.info(() -> "Removed " + removed + " expired state table entries");
+    }
+  }
+
+  private void syncQuietly() {
+    try {
+      flush();
+    } catch (RuntimeException e) {
+      LOG.error("Cannot sync state table " + directory, e);
+    }
+  }
+
+  private Object keyLock(String key) {
+    int hash = key.hashCode();
+    return keyLocks[(hash ^ (hash >>> 16)) & (LOCK_STRIPES - 1)];
+  }
+
+  private Entry live(Entry entry, long now) {
+    return entry == null || isExpired(entry, now) ? Entry.EMPTY : entry;
+  }
+
+  private boolean isExpired(Entry entry, long now) {
+    return now - entry.writtenAt() >= ttlInMs;
+  }
+
+  /**
+   * Append the record to the active segment. Called while holding the lock of the key, so
+   * records of the same key are in the log in the order they are applied to the index.
+   */
+  private void append(byte[] record) {
+    MappedByteBuffer segment;
+    synchronized (appendLock) {
+      if (closed) {
+        throw new IllegalStateException("State table is closed: " + directory);
+      }
+
+      if (activeSegment.remaining() < record.length) {
+        openNextSegment();
+        if (!compacting
+            && segments.size() > Math.max(MIN_COMPACTION_SEGMENTS, 2 * compactedSegments)) {
+          compactionDue.set(true);
+        }
+      }
+      segment = activeSegment;
+      segment.put(record);
+      dirty = !syncOnWrite;
+    }
+
+    if (syncOnWrite) {
+      segment.force();
+    }
+  }
+
+  /**
+   * Start the compaction requested by a write, after the writer released the lock of its key.
+   */
+  private void compactIfDue() {
+    if (!compactionDue.get() || !compactionDue.compareAndSet(true, false)) {
+      return;
+    }
+    if (compactor == null) {
+      compact();
+      return;
+    }
+    try {
+      compactor.execute(this::compactQuietly);
+    } catch (RejectedExecutionException e) {
+      // the table is closing
+    }
+  }
+
+  private void compactQuietly() {
+    try {
+      compact();
+    } catch (RuntimeException e) {
+      LOG.error("Cannot compact state table " + directory, e);
+    }
+  }
+
+  /**
+   * Write the live entries to a new segment and delete the older segments. The new segment
+   * takes the place between the old segments and the ones opened for the writes that follow.
+   * The old segments are deleted only after the snapshot is on the disk.
+   * 
+   * @return Whether the log was compacted, false when another compaction is running.
+   */
+  boolean compact() {
+    long start = System.nanoTime();
+    List<Path> oldSegments;
+    Path compactedSegment;
+    synchronized (appendLock) {
+      if (closed || compacting) {
+        return false;
+      }
+      compacting = true;
+      oldSegments = new ArrayList<>(segments);
+      compactedSegment = segmentPath(nextSequence++);
+      openNextSegment();
+    }
+
+    try {
+      // records in the old segments are appended while holding the lock of their key, which is
+      // released only after the index is updated, so the snapshot contains all of them
+      for (Object keyLock : keyLocks) {
+        synchronized (keyLock) {
+          // wait for the writer
+        }
+      }
+      long snapshotSize = writeSnapshot(compactedSegment);
+
+      synchronized (appendLock) {
+        segments.removeAll(oldSegments);
+        segments.addFirst(compactedSegment);
+        compactedSegments = (int) Math.max(1, (snapshotSize + segmentSize - 1) / segmentSize);
+      }
+      for (Path segment : oldSegments) {
+        Files.delete(segment);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Cannot compact segments of " + directory, e);
+    } finally {
+      synchronized (appendLock) {
+        compacting = false;
+      }
+    }
+
+    LOG.info(() -> "Compacted state table " + directory + " to " + index.size() + " entries in "
+        + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+    return true;
+  }
+
+  /**
+   * Write the live entries of the index to a temporary file and move it to the segment.
+   * 
+   * @return Size of the segment in bytes.
+   */
+  private long writeSnapshot(Path segment) throws IOException {
+    Path temporary = segment.resolveSibling(segment.getFileName() + TEMPORARY_SUFFIX);
+    long now = clock.getAsLong();
+    long size;
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      OutputStream output = new BufferedOutputStream(Channels.newOutputStream(channel));
+      for (Map.Entry<String, Entry> item : index.entrySet()) {
+        Entry entry = item.getValue();
+        if (isExpired(entry, now)) {
+          continue;
+        }
+        if (entry.completed()) {
+          output.write(LogRecord.complete(entry.writtenAt(), item.getKey()));
+        }
+        for (String state : entry.states()) {
+          output.write(LogRecord.addState(entry.writtenAt(), item.getKey(), state));
+        }
+        if (entry.bits() != 0) {
+          output.write(LogRecord.addBits(entry.writtenAt(), item.getKey(), entry.bits()));
+        }
+      }
+      output.flush();
+      channel.force(true);
+      size = channel.size();
+    }
+    Files.move(temporary, segment, StandardCopyOption.ATOMIC_MOVE);
+    return size;
+  }
+
+  private void openNextSegment() {
+    if (activeSegment != null) {
+      activeSegment.force();
+    }
+
+    Path segment = segmentPath(nextSequence++);
+    activeSegment = map(segment, segmentSize);
+    segments.addLast(segment);
+  }
+
+  private Path segmentPath(long sequence) {
+    return directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, sequence,
+        SEGMENT_SUFFIX));
+  }
+
+  private static MappedByteBuffer map(Path segment, long size) {
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.CREATE,
+        StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      return channel.map(MapMode.READ_WRITE, 0, size);
+    } catch (IOException e) {
+      throw new IllegalStateException("Cannot map segment " + segment, e);
+    }
+  }
+
+  private void recover() {
+    List<Path> files;
+    try {
+      Files.createDirectories(directory);
+      try (Stream<Path> stream = Files.list(directory)) {
+        files = stream.filter(FileStateTable::isSegment).sorted().toList();
+      }
+      // snapshots of interrupted compactions, the old segments are still there
+      try (Stream<Path> stream = Files.list(directory)) {
+        for (Path file : stream.filter(FileStateTable::isTemporary).toList()) {
+          Files.delete(file);
+        }
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Cannot list segments in " + directory, e);
+    }
+
+    if (files.isEmpty()) {
+      openNextSegment();
+      compactedSegments = 1;
+      return;
+    }
+
+    for (Path file : files) {
+      long size;
+      try {
+        size = Files.size(file);
+      } catch (IOException e) {
+        throw new IllegalStateException("Cannot read segment " + file, e);
+      }
+      MappedByteBuffer segment = map(file, size);
+      replay(file, segment);
+      segments.addLast(file);
+      activeSegment = segment;
+    }
+
+    long now = clock.getAsLong();
+    index.values().removeIf(entry -> isExpired(entry, now));
+
+    String lastName = files.get(files.size() - 1).getFileName().toString();
+    nextSequence = Long.parseLong(lastName.substring(SEGMENT_PREFIX.length(),
+        lastName.length() - SEGMENT_SUFFIX.length())) + 1;
+    compactedSegments = files.size();
+  }
+
+  private static boolean isSegment(Path path) {
+    String name = path.getFileName().toString();
+    return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+  }
+
+  private static boolean isTemporary(Path path) {
+    String name = path.getFileName().toString();
+    return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX + TEMPORARY_SUFFIX);
+  }
+
+  /**
+   * Apply the records of the segment to the index and leave the buffer positioned after the last
+   * valid record.
+   */
+  private void replay(Path file, ByteBuffer segment) {
+    while (true) {
+      int start = segment.position();
+      LogRecord record = LogRecord.read(segment);
+      if (record == null) {
+        if (segment.limit() - start >= Integer.BYTES && segment.getInt(start) != 0) {
+          LOG.warn(() -> "Ignoring incomplete record in " + file + " at " + start);
+        }
+        segment.position(start);
+        return;
+      }
+      apply(record);
+    }
+  }
+
+  private void apply(LogRecord record) {
+    long timestamp = record.timestamp();
+    switch (record.operation()) {
+      case LogRecord.ADD_STATE -> index.compute(record.key(),
+          (k, entry) -> replayed(entry, timestamp).withStates(Set.of(record.state()), timestamp));
+      case LogRecord.ADD_BITS -> index.compute(record.key(),
+          (k, entry) -> replayed(entry, timestamp).withBits(record.bits(), timestamp));
+      case LogRecord.DELETE -> index.remove(record.key());
+      case LogRecord.DELETE_BITS -> index.computeIfPresent(record.key(),
+          (k, entry) -> entry.states().isEmpty() && !entry.completed() ? null
+              : entry.withoutBits());
+      case LogRecord.COMPLETE -> index.put(record.key(), Entry.completed(timestamp));
+      default -> throw new IllegalStateException(
+          "Unknown operation " + record.operation() + " in " + directory);
+    }
+  }
+
+  /**
+   * An entry that expired before the replayed write was reset by that write.
+   */
+  private Entry replayed(Entry entry, long timestamp) {
+    return entry == null || timestamp - entry.writtenAt() >= ttlInMs ? Entry.EMPTY : entry;
+  }
+
+  /**
+   * Immutable value of a key, replaced on every write.
+   */
+  private record Entry(Set<String> states, long bits, boolean completed, long writtenAt) {
+
+    static final Entry EMPTY = new Entry(Set.of(), 0, false, 0);
+
+    static Entry completed(long timestamp) {
+      return new Entry(Set.of(), 0, true, timestamp);
+    }
+
+    Entry withStates(Set<String> addedStates, long timestamp) {
+      if (states.containsAll(addedStates)) {
+        return new Entry(states, bits, completed, timestamp);
+      }
+      Set<String> updatedStates = new LinkedHashSet<>(states);
+      updatedStates.addAll(addedStates);
+      return new Entry(Set.copyOf(updatedStates), bits, completed, timestamp);
+    }
+
+    Entry withBits(long addedBits, long timestamp) {
+      return new Entry(states, bits | addedBits, completed, timestamp);
+    }
+
+    Entry withoutBits() {
+      return new Entry(states, 0, completed, writtenAt);
+    }
+
+  }
+
+  /**
+   * Log record: length and CRC32 of the payload, followed by the payload with the operation,
+   * timestamp, key and the operation's value. A zero length marks the end of the segment.
+   */
+  private record LogRecord(byte operation, long timestamp, String key, String state, long bits) {
+
+    static final byte ADD_STATE = 1;
+    static final byte ADD_BITS = 2;
+    // only replayed, deletes are no longer written
+    static final byte DELETE = 3;
+    static final byte DELETE_BITS = 4;
+    static final byte COMPLETE = 5;
+
+    static final int MAX_STRING_LENGTH = 0xFFFF;
+    static final int HEADER_SIZE = 2 * Integer.BYTES;
+    static final int MAX_SIZE =
+        HEADER_SIZE + 1 + Long.BYTES + 2 * (Short.BYTES + MAX_STRING_LENGTH);
+
+    static byte[] addState(long timestamp, String key, String state) {
+      return encode(ADD_STATE, timestamp, key, toBytes(state), 0);
+    }
+
+    static byte[] addBits(long timestamp, String key, long bits) {
+      return encode(ADD_BITS, timestamp, key, null, bits);
+    }
+
+    static byte[] complete(long timestamp, String key) {
+      return encode(COMPLETE, timestamp, key, null, 0);
+    }
+
+    private static byte[] encode(byte operation, long timestamp, String key, byte[] state,
+        long bits) {
+      byte[] keyBytes = toBytes(key);
+      int payloadSize = 1 + Long.BYTES + Short.BYTES + keyBytes.length;
+      if (operation == ADD_STATE) {
+        payloadSize += Short.BYTES + state.length;
+      } else if (operation == ADD_BITS) {
+        payloadSize += Long.BYTES;
+      }
+
+      ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + payloadSize);
+      buffer.position(HEADER_SIZE);
+      buffer.put(operation).putLong(timestamp);
+      buffer.putShort((short) keyBytes.length).put(keyBytes);
+      if (operation == ADD_STATE) {
+        buffer.putShort((short) state.length).put(state);
+      } else if (operation == ADD_BITS) {
+        buffer.putLong(bits);
+      }
+
+      CRC32 crc = new CRC32();
+      crc.update(buffer.array(), HEADER_SIZE, payloadSize);
+      buffer.putInt(0, payloadSize).putInt(Integer.BYTES, (int) crc.getValue());
+      return buffer.array();
+    }
+
+    /**
+     * @return Record at the position of the buffer or {@code null} if there is no valid record.
+     */
+    static LogRecord read(ByteBuffer buffer) {
+      if (buffer.remaining() < HEADER_SIZE) {
+        return null;
+      }
+      int payloadSize = buffer.getInt();
+      int checksum = buffer.getInt();
+      if (payloadSize <= 0 || payloadSize > buffer.remaining()) {
+        return null;
+      }
+
+      CRC32 crc = new CRC32();
+      crc.update(buffer.slice(buffer.position(), payloadSize));
+      if ((int) crc.getValue() != checksum) {
+        return null;
+      }
+
+      byte operation = buffer.get();
+      long timestamp = buffer.getLong();
+      String key = readString(buffer);
+      String state = operation == ADD_STATE ? readString(buffer) : null;
+      long bits = operation == ADD_BITS ? buffer.getLong() : 0;
+      return new LogRecord(operation, timestamp, key, state, bits);
+    }
+
+    private static byte[] toBytes(String value) {
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      if (bytes.length > MAX_STRING_LENGTH) {
+        throw new IllegalArgumentException(
+            "Value longer than " + MAX_STRING_LENGTH + " bytes: " + value);
+      }
+      return bytes;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+      byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+      buffer.get(bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+  }
+
+}
@@ -14,35 +14,102 @@
 package com.newtowndata.events.local.io;
 
 import com.newtowndata.events.core.io.ObjectStorage;
+import com.newtowndata.events.core.io.utils.ByteBufferInputStream;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 /**
- * Local filesystem backed implementation of {@ObjectStorage}.
+ * Local filesystem backed implementation of {@link ObjectStorage}. Writes go to a temporary file
+ * that is renamed over the object, so readers never see a partially written object.
+ * 
+ * <p>
+ * Memory mapping of large objects on read is opt-in with a map threshold. A mapping is only
+ * released once its buffer is garbage collected, and on Windows a mapped file cannot be deleted or
+ * replaced until then, so deleting or writing a recently read object fails there.
  */
 public class LocalObjectStorage implements ObjectStorage {
 
+  public static final int DEFAULT_MAP_THRESHOLD_IN_BYTES = 1024 * 1024;
+  public static final int MAPPING_DISABLED = 0;
+
+  private static final int MAX_CACHED_PATHS = 10_000;
+  private static final long TRANSFER_CHUNK_SIZE = 8 * 1024 * 1024;
+  private static final String TEMP_SUFFIX = ".tmp";
+  private static final Pattern PATH_SEPARATOR_PATTERN =
+      Pattern.compile(Pattern.quote(ObjectStorage.PATH_SEPARATOR));
+
+  /**
+   * When written objects are synced to the disk.
+   */
+  public enum SyncPolicy {
+    /** Leave syncing to the operating system. */
+    NONE,
+    /** Sync the content before the object is replaced, so it is complete after a crash. */
+    FILE,
+    /** Sync the content and then the directory, so the new object survives a crash. */
+    FILE_AND_DIRECTORY
+  }
+
   private final Path objectStorageRoot;
+  private final SyncPolicy syncPolicy;
+  private final long mapThresholdInBytes;
+  private final Map<String, Path> pathCache;
 
   public LocalObjectStorage(Path objectStorageRoot) {
+    this(objectStorageRoot, SyncPolicy.NONE, MAPPING_DISABLED);
+  }
+
+  /**
+   * @param objectStorageRoot Root directory of the objects.
+   * @param syncPolicy When written objects are synced to the disk.
+   * @param mapThresholdInBytes Objects of this size and larger are memory-mapped on read,
+   *        {@link #MAPPING_DISABLED} to never map them.
+   */
+  public LocalObjectStorage(Path objectStorageRoot, SyncPolicy syncPolicy,
+      int mapThresholdInBytes) {
     this.objectStorageRoot = Objects.requireNonNull(objectStorageRoot, "objectStorageRoot");
     if (!Files.exists(objectStorageRoot) || !Files.isDirectory(objectStorageRoot)) {
       throw new IllegalArgumentException(
           "Provided object storage root is not a directory: " + objectStorageRoot);
     }
+    if (mapThresholdInBytes < 0) {
+      throw new IllegalArgumentException(
+          "Map threshold must not be negative: " + mapThresholdInBytes);
+    }
+
+    this.syncPolicy = Objects.requireNonNull(syncPolicy, "syncPolicy");
+    this.mapThresholdInBytes = mapThresholdInBytes;
+    this.pathCache = new ConcurrentHashMap<>();
   }
 
   @Override
   public InputStream getObject(String storageName, String path) {
     Path computedPath = computePath(storageName, path);
     try {
+      MappedByteBuffer mapped = map(computedPath);
+      if (mapped != null) {
+        return new ByteBufferInputStream(mapped);
+      }
       return Files.newInputStream(computedPath, StandardOpenOption.READ);
     } catch (IOException e) {
       throw new IllegalStateException("Cannot read path " + computedPath, e);
@@ -50,26 +117,77 @@ public class LocalObjectStorage implements ObjectStorage {
   }
 
   @Override
-  public void putObject(String storageName, String path, InputStream inputStream) {
+  public byte[] getObjectBytes(String storageName, String path) {
     Path computedPath = computePath(storageName, path);
-    Path parentPath = computedPath.getParent();
-    if (!Files.exists(parentPath)) {
-      try {
-        Files.createDirectories(parentPath);
-      } catch (IOException e) {
-        throw new IllegalStateException("Cannot create parent directory " + parentPath, e);
-      }
+    try {
+      return Files.readAllBytes(computedPath);
+    } catch (IOException e) {
+      throw new IllegalStateException("Cannot read path " + computedPath, e);
     }
+  }
 
-    try (
-        OutputStream osr = Files.newOutputStream(computedPath, StandardOpenOption.TRUNCATE_EXISTING,
-            StandardOpenOption.WRITE, StandardOpenOption.CREATE)) {
-      inputStream.transferTo(osr);
+  /**
+   * Large objects are returned as read-only mapped buffers, which are unmapped once they are
+   * garbage collected.
+   */
+  @Override
+  public ByteBuffer getObjectBuffer(String storageName, String path) {
+    Path computedPath = computePath(storageName, path);
+    try {
+      MappedByteBuffer mapped = map(computedPath);
+      if (mapped != null) {
+        return mapped;
+      }
+      return ByteBuffer.wrap(Files.readAllBytes(computedPath));
     } catch (IOException e) {
-      throw new IllegalStateException("Cannot write path " + computedPath, e);
+      throw new IllegalStateException("Cannot read path " + computedPath, e);
     }
   }
 
+  @Override
+  public void putObject(String storageName, String path, InputStream inputStream) {
+    write(storageName, path, channel -> {
+      if (inputStream instanceof FileInputStream fileInputStream) {
+        // file to file copies stay in the kernel
+        FileChannel source = fileInputStream.getChannel();
+        long position = source.position();
+        long size = source.size();
+        while (position < size) {
+          long count = source.transferTo(position, size - position, channel);
+          if (count <= 0) {
+            // the source was truncated while copying
+            break;
+          }
+          position += count;
+        }
+        source.position(position);
+        return;
+      }
+
+      ReadableByteChannel source = Channels.newChannel(inputStream);
+      long position = 0;
+      long count;
+      while ((count = channel.transferFrom(source, position, TRANSFER_CHUNK_SIZE)) > 0) {
+        position += count;
+      }
+    });
+  }
+
+  @Override
+  public void putObject(String storageName, String path, byte[] data) {
+    putObject(storageName, path, ByteBuffer.wrap(data));
+  }
+
+  @Override
+  public void putObject(String storageName, String path, ByteBuffer data) {
+    write(storageName, path, channel -> {
+      ByteBuffer remaining = data.duplicate();
+      while (remaining.hasRemaining()) {
+        channel.write(remaining);
+      }
+    });
+  }
+
   @Override
   public void deleteObject(String storageName, String path) {
     Path computedPath = computePath(storageName, path);
@@ -80,27 +198,113 @@ public class LocalObjectStorage implements ObjectStorage {
     }
   }
 
+  @Override
+  public Optional<String> getETag(String storageName, String path) {
+    Path computedPath = computePath(storageName, path);
+    try {
+      BasicFileAttributes attributes =
+          Files.readAttributes(computedPath, BasicFileAttributes.class);
+      long modifiedAt = attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+      return Optional
+          .of(Long.toHexString(modifiedAt) + "-" + Long.toHexString(attributes.size()));
+    } catch (NoSuchFileException e) {
+      return Optional.empty();
+    } catch (IOException e) {
+      throw new IllegalStateException("Cannot read attributes of path " + computedPath, e);
+    }
+  }
 
   Path computePath(String storageName, String path) {
     Objects.requireNonNull(storageName, "storageName");
     Objects.requireNonNull(path, "path");
 
-    return Paths.get(objectStorageRoot.toString(), storageName, parsePath(path).toString());
+    String cacheKey = storageName + ObjectStorage.PATH_SEPARATOR + path;
+    Path computedPath = pathCache.get(cacheKey);
+    if (computedPath == null) {
+      computedPath = objectStorageRoot.resolve(storageName).resolve(parsePath(path));
+      if (pathCache.size() >= MAX_CACHED_PATHS) {
+        pathCache.clear();
+      }
+      pathCache.put(cacheKey, computedPath);
+    }
+    return computedPath;
   }
 
   Path parsePath(String path) {
-    String[] components = path.split(Pattern.quote(ObjectStorage.PATH_SEPARATOR));
-    Path result = null;
-
-    for (int i = 0; i < components.length; i++) {
-      if (i == 0) {
-        result = Paths.get(components[0]);
-      } else {
-        result = Paths.get(result.toString(), components[i]);
+    String[] components = PATH_SEPARATOR_PATTERN.split(path);
+    if (components.length == 0) {
+      return Path.of("");
+    }
+
+    String[] more = new String[components.length - 1];
+    System.arraycopy(components, 1, more, 0, more.length);
+    return Path.of(components[0], more);
+  }
+
+  private MappedByteBuffer map(Path computedPath) throws IOException {
+    if (mapThresholdInBytes == MAPPING_DISABLED) {
+      return null;
+    }
+    try (FileChannel channel = FileChannel.open(computedPath, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size < mapThresholdInBytes || size > Integer.MAX_VALUE) {
+        return null;
+      }
+      // the mapping stays valid after the channel is closed
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+  }
+
+  private void write(String storageName, String path, ChannelWriter writer) {
+    Path computedPath = computePath(storageName, path);
+    Path parentPath = computedPath.getParent();
+    if (!Files.exists(parentPath)) {
+      try {
+        Files.createDirectories(parentPath);
+      } catch (IOException e) {
+        throw new IllegalStateException("Cannot create parent directory " + parentPath, e);
+      }
+    }
+
+    Path tempPath = parentPath.resolve("." + computedPath.getFileName() + "."
+        + Long.toHexString(ThreadLocalRandom.current().nextLong()) + TEMP_SUFFIX);
+    try {
+      try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE_NEW,
+          StandardOpenOption.WRITE)) {
+        writer.write(channel);
+        if (syncPolicy != SyncPolicy.NONE) {
+          channel.force(false);
+        }
+      }
+      move(tempPath, computedPath);
+      if (syncPolicy == SyncPolicy.FILE_AND_DIRECTORY) {
+        try (FileChannel directory = FileChannel.open(parentPath, StandardOpenOption.READ)) {
+          directory.force(true);
+        }
       }
+    } catch (IOException e) {
+      try {
+        Files.deleteIfExists(tempPath);
+      } catch (IOException suppressed) {
+        e.addSuppressed(suppressed);
+      }
+      throw new IllegalStateException("Cannot write path " + computedPath, e);
+    }
+  }
+
+  private static void move(Path source, Path target) throws IOException {
+    try {
+      Files.move(source, target, StandardCopyOption.ATOMIC_MOVE,
+          StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
     }
+  }
+
+  @FunctionalInterface
+  private interface ChannelWriter {
 
-    return result;
+    void write(FileChannel channel) throws IOException;
   }
 
 }
@@ -14,39 +14,301 @@
 package com.newtowndata.events.local.io;
 
 import com.newtowndata.events.core.io.StateTable;
-import java.util.HashMap;
+import com.newtowndata.events.core.logging.Logger;
+import com.newtowndata.events.core.logging.LoggerFactory;
+import java.lang.ref.WeakReference;
+import java.time.Duration;
 import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+import java.util.function.UnaryOperator;
 
 /**
- * Local in-memory implementation of {@StateTable}.
+ * Local in-memory implementation of {@StateTable}. Each key is updated atomically on its own, so
+ * concurrent workers only contend when they write the same key. Entries expire after the TTL since
+ * their last write and are removed by a background sweeper; when the table is full, the least
+ * recently written entry is evicted.
  */
-public class LocalStateTable implements StateTable {
+public class LocalStateTable implements StateTable, AutoCloseable {
 
-  private final Map<String, Set<String>> table;
+  public static final Duration DEFAULT_TTL = Duration.ofDays(1);
+  public static final int DEFAULT_MAX_ENTRIES = 100_000;
+
+  private static final Logger LOG = LoggerFactory.create(LocalStateTable.class);
+
+  private static final long MIN_SWEEP_INTERVAL_IN_NANOS = TimeUnit.SECONDS.toNanos(1);
+  private static final long MAX_SWEEP_INTERVAL_IN_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+  private static final ScheduledExecutorService SWEEPER =
+      Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "state-table-sweeper");
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  private final Map<String, Entry> table;
+  // keys in the order they were written, older writes of the same key are skipped on eviction
+  private final Queue<Slot> slots;
+  private final AtomicInteger slotCount;
+  private final AtomicLong generations;
+  private final long ttlInNanos;
+  private final int maxEntries;
+  private final LongSupplier clock;
+  private final ScheduledFuture<?> sweepTask;
 
   public LocalStateTable() {
-    this.table = new HashMap<>();
+    this(DEFAULT_TTL, DEFAULT_MAX_ENTRIES);
+  }
+
+  /**
+   * @param ttl Time after the last write when an entry expires.
+   * @param maxEntries Maximum number of keys kept in memory.
+   */
+  public LocalStateTable(Duration ttl, int maxEntries) {
+    this(ttl, maxEntries, System::nanoTime, true);
+  }
+
+  LocalStateTable(Duration ttl, int maxEntries, LongSupplier clock, boolean sweep) {
+    if (ttl.isNegative() || ttl.isZero()) {
+      throw new IllegalArgumentException("TTL must be positive: " + ttl);
+    }
+    if (maxEntries < 1) {
+      throw new IllegalArgumentException("Max entries must be a positive number: " + maxEntries);
+    }
+
+    this.table = new ConcurrentHashMap<>();
+    this.slots = new ConcurrentLinkedQueue<>();
+    this.slotCount = new AtomicInteger();
+    this.generations = new AtomicLong();
+    this.ttlInNanos = ttl.toNanos();
+    this.maxEntries = maxEntries;
+    this.clock = clock;
+    this.sweepTask = sweep ? scheduleSweep(this, Math.max(MIN_SWEEP_INTERVAL_IN_NANOS,
+        Math.min(MAX_SWEEP_INTERVAL_IN_NANOS, ttlInNanos / 10))) : null;
   }
 
   @Override
   public Set<String> getStates(String key) {
-    Set<String> result = this.table.get(key);
-    if (result == null) {
+    Entry entry = this.table.get(key);
+    if (entry == null || isExpired(entry, clock.getAsLong())) {
       return Set.of();
     }
-    return result;
+    return entry.states();
+  }
+
+  @Override
+  public Set<String> addStates(String key, Set<String> states) {
+    if (states.isEmpty()) {
+      throw new IllegalArgumentException("No states to add for key " + key);
+    }
+    return update(key, entry -> entry.withStates(states)).states();
+  }
+
+  /**
+   * Add the states and complete the key in the same atomic step if it has all required states.
+   */
+  @Override
+  public boolean addStatesAndComplete(String key, Set<String> states,
+      Set<String> requiredStates) {
+    if (states.isEmpty()) {
+      throw new IllegalArgumentException("No states to add for key " + key);
+    }
+    return complete(key, states, requiredStates);
   }
 
   @Override
-  public void putState(String key, String state) {
-    this.table.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(state);
+  public boolean complete(String key) {
+    return complete(key, Set.of(), Set.of());
+  }
+
+  /**
+   * Add the states and replace the entry by a completion marker if it has all required states,
+   * unless it is completed already.
+   */
+  private boolean complete(String key, Set<String> states, Set<String> requiredStates) {
+    long now = clock.getAsLong();
+    long generation = generations.incrementAndGet();
+    Entry result = this.table.compute(key, (k, entry) -> {
+      Entry current = currentEntry(entry, now);
+      if (current.completed()) {
+        return entry;
+      }
+      Entry updated = states.isEmpty() ? current : current.withStates(states);
+      if (updated.states().containsAll(requiredStates)) {
+        return Entry.COMPLETED.written(now + ttlInNanos, generation);
+      }
+      return updated.written(now + ttlInNanos, generation);
+    });
+
+    if (result.generation() != generation) {
+      return false;
+    }
+    onWritten(key, generation);
+    return result.completed();
   }
 
   @Override
-  public void deleteState(String key) {
-    this.table.remove(key);
+  public long addBits(String key, long bits) {
+    if (bits == 0) {
+      throw new IllegalArgumentException("No bits to add for key " + key);
+    }
+    return update(key, entry -> entry.withBits(entry.bits() | bits)).bits();
+  }
+
+  /**
+   * Remove expired entries.
+   * 
+   * @return Number of removed entries.
+   */
+  int sweep() {
+    long now = clock.getAsLong();
+    int removed = 0;
+    for (Map.Entry<String, Entry> item : this.table.entrySet()) {
+      if (isExpired(item.getValue(), now) && this.table.remove(item.getKey(), item.getValue())) {
+        removed++;
+      }
+    }
+    pruneSlots();
+    return removed;
+  }
+
+  int size() {
+    return this.table.size();
+  }
+
+  @Override
+  public void close() {
+    if (sweepTask != null) {
+      sweepTask.cancel(false);
+    }
+  }
+
+  /**
+   * Apply the operation unless the key is completed.
+   */
+  private Entry update(String key, UnaryOperator<Entry> operation) {
+    long now = clock.getAsLong();
+    long generation = generations.incrementAndGet();
+    Entry result = this.table.compute(key, (k, entry) -> {
+      Entry current = currentEntry(entry, now);
+      if (current.completed()) {
+        return entry;
+      }
+      return operation.apply(current).written(now + ttlInNanos, generation);
+    });
+
+    if (result.generation() == generation) {
+      onWritten(key, generation);
+    }
+    return result;
+  }
+
+  private static Entry currentEntry(Entry entry, long now) {
+    if (entry == null || isExpired(entry, now)) {
+      return Entry.EMPTY;
+    }
+    return entry;
+  }
+
+  private void onWritten(String key, long generation) {
+    this.slots.add(new Slot(key, generation));
+    if (this.slotCount.incrementAndGet() > 2 * maxEntries) {
+      // frequently written keys leave many stale slots behind
+      pruneSlots();
+    }
+
+    while (this.table.size() > maxEntries) {
+      Slot slot = this.slots.poll();
+      if (slot == null) {
+        return;
+      }
+      this.slotCount.decrementAndGet();
+      if (this.table.computeIfPresent(slot.key(),
+          (k, current) -> current.generation() == slot.generation() ? null : current) == null) {
+        LOG.warn(() -> "State table is full, evicted key " + slot.key());
+      }
+    }
+  }
+
+  private void pruneSlots() {
+    this.slots.removeIf(slot -> {
+      if (isCurrent(slot)) {
+        return false;
+      }
+      this.slotCount.decrementAndGet();
+      return true;
+    });
+  }
+
+  private boolean isCurrent(Slot slot) {
+    Entry entry = this.table.get(slot.key());
+    return entry != null && entry.generation() == slot.generation();
+  }
+
+  private static boolean isExpired(Entry entry, long now) {
+    return now - entry.expiresAt() >= 0;
+  }
+
+  /**
+   * The task only holds a weak reference, so a table that is not closed can still be collected.
+   */
+  private static ScheduledFuture<?> scheduleSweep(LocalStateTable table, long intervalInNanos) {
+    WeakReference<LocalStateTable> reference = new WeakReference<>(table);
+    AtomicReference<ScheduledFuture<?>> task = new AtomicReference<>();
+    task.set(SWEEPER.scheduleWithFixedDelay(() -> {
+      LocalStateTable current = reference.get();
+      if (current == null) {
+        task.get().cancel(false);
+        return;
+      }
+      int removed = current.sweep();
+      if (removed > 0) {
+        LOG.info(() -> "Removed " + removed + " expired state table entries");
+      }
+    }, intervalInNanos, intervalInNanos, TimeUnit.NANOSECONDS));
+    return task.get();
+  }
+
+  /**
+   * Immutable value of a key, replaced on every write.
+   */
+  private record Entry(Set<String> states, long bits, boolean completed, long expiresAt,
+      long generation) {
+
+    static final Entry EMPTY = new Entry(Set.of(), 0, false, 0, 0);
+    static final Entry COMPLETED = new Entry(Set.of(), 0, true, 0, 0);
+
+    Entry withStates(Set<String> addedStates) {
+      if (states.containsAll(addedStates)) {
+        return this;
+      }
+      Set<String> updatedStates = new LinkedHashSet<>(states);
+      updatedStates.addAll(addedStates);
+      return new Entry(Set.copyOf(updatedStates), bits, completed, expiresAt, generation);
+    }
+
+    Entry withBits(long updatedBits) {
+      return new Entry(states, updatedBits, completed, expiresAt, generation);
+    }
+
+    Entry written(long updatedExpiresAt, long updatedGeneration) {
+      return new Entry(states, bits, completed, updatedExpiresAt, updatedGeneration);
+    }
+
+  }
+
+  private record Slot(String key, long generation) {
   }
 
 }
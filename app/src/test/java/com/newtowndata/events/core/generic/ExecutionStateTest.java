@@ -17,12 +17,20 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
 import com.newtowndata.events.core.ApplicationEvent;
 import com.newtowndata.events.core.OutputEvent;
 import com.newtowndata.events.core.StateContext;
+import com.newtowndata.events.core.io.ExecutorObjectStorage;
+import com.newtowndata.events.core.io.ObjectStorage;
+import com.newtowndata.events.core.utils.AttributeUtils;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
@@ -38,10 +46,14 @@ class ExecutionStateTest {
   
   private static final String TEST_ATTR = "test-attr";
   private static final String TEST_VALUE = "test-value";
+  private static final String STORAGE_NAME = "storage";
 
   @Mock
   StateContext stateContext;
 
+  @Mock
+  ObjectStorage objectStorage;
+
   @Test
   void testHandleEvent() {
     AtomicBoolean executionMarker = new AtomicBoolean(false);
@@ -62,4 +74,83 @@ class ExecutionStateTest {
     assertEquals(1, outputEvent.attributes().size());
     assertEquals(TEST_VALUE, outputEvent.attributes().get(TEST_ATTR));
   }
+
+  @Test
+  void testHandleEventWithResult() {
+    ExecutionState state = new ExecutionState(STATE_TEST, STATE_TARGET, (context, input) -> {
+      Map<String, String> updates = new HashMap<>();
+      updates.put("result", input.attributes().get(TEST_ATTR) + "!");
+      updates.put(TEST_ATTR, null);
+      return updates;
+    }, STORAGE_NAME);
+
+    List<OutputEvent> result = state.handleEvent(stateContext,
+        ApplicationEvent.ofStart(10, STATE_TEST, Map.of(TEST_ATTR, TEST_VALUE, "other", "x")));
+
+    assertEquals(1, result.size());
+    assertEquals(Map.of("result", TEST_VALUE + "!", "other", "x"), result.get(0).attributes());
+  }
+
+  @Test
+  void testHandleEventOffloadsLargeResult() {
+    when(stateContext.objectStorage()).thenReturn(objectStorage);
+    String largeValue = "x".repeat(300);
+
+    ExecutionState state = new ExecutionState(STATE_TEST, STATE_TARGET,
+        (context, input) -> Map.of("large", largeValue, "small", "y"), STORAGE_NAME, 250);
+    ApplicationEvent input =
+        ApplicationEvent.ofStart(10, STATE_TEST, Map.of(TEST_ATTR, TEST_VALUE));
+    List<OutputEvent> result = state.handleEvent(stateContext, input);
+
+    String path = "attributes/" + input.traceId() + "/" + input.id() + "/large";
+    verify(objectStorage).putObject(STORAGE_NAME, path, largeValue);
+    assertEquals(Map.of(TEST_ATTR, TEST_VALUE, "small", "y", "large",
+        AttributeUtils.REFERENCE_PREFIX + STORAGE_NAME + "/" + path), result.get(0).attributes());
+  }
+
+  @Test
+  void testHandleEventResolvesReference() {
+    when(stateContext.asyncObjectStorage()).thenReturn(new ExecutorObjectStorage(objectStorage));
+    when(objectStorage.getObjectAsString(STORAGE_NAME, "attributes/a/b/large")).thenReturn("value");
+    String reference = AttributeUtils.REFERENCE_PREFIX + STORAGE_NAME + "/attributes/a/b/large";
+    AtomicReference<String> seenValue = new AtomicReference<>();
+
+    ExecutionState state = new ExecutionState(STATE_TEST, STATE_TARGET, (context, input) -> {
+      seenValue.set(input.attributes().get("large"));
+      return Map.of("result", "done");
+    }, STORAGE_NAME);
+    List<OutputEvent> result = state.handleEvent(stateContext,
+        ApplicationEvent.ofStart(10, STATE_TEST, Map.of("large", reference)));
+
+    assertEquals("value", seenValue.get());
+    assertEquals(Map.of("large", reference, "result", "done"), result.get(0).attributes());
+  }
+
+  @Test
+  void testHandleEventIgnoresForeignReferences() {
+    when(stateContext.asyncObjectStorage()).thenReturn(new ExecutorObjectStorage(objectStorage));
+    Map<String, String> attributes = Map.of(
+        "otherStorage", AttributeUtils.REFERENCE_PREFIX + "other/attributes/a/b/large",
+        "otherPath", AttributeUtils.REFERENCE_PREFIX + STORAGE_NAME + "/secret",
+        "parentPath", AttributeUtils.REFERENCE_PREFIX + STORAGE_NAME + "/attributes/../secret",
+        "emptySegment", AttributeUtils.REFERENCE_PREFIX + STORAGE_NAME + "/attributes//a");
+    AtomicReference<Map<String, String>> seenAttributes = new AtomicReference<>();
+
+    ExecutionState state = new ExecutionState(STATE_TEST, STATE_TARGET, (context, input) -> {
+      seenAttributes.set(input.attributes());
+      return Map.of();
+    }, STORAGE_NAME);
+    state.handleEvent(stateContext, ApplicationEvent.ofStart(10, STATE_TEST, attributes));
+
+    assertEquals(attributes, seenAttributes.get());
+    verifyNoInteractions(objectStorage);
+  }
+
+  @Test
+  void testEstimateSize() {
+    assertEquals(2, AttributeUtils.estimateSize(Map.of()));
+    assertEquals(2 + 6 + 1 + 3, AttributeUtils.estimateSize(Map.of("a", "b\"")));
+    assertEquals(2 + 6 + 1 + 6 + 2 + 3, AttributeUtils.estimateSize(Map.of("a", "=é€")));
+  }
+
 }
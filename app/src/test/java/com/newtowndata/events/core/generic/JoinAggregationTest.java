@@ -0,0 +1,50 @@
+/*
+ * Copyright 2023-2024 Voyta Krizek, https://github.com/NewTownData
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.newtowndata.events.core.generic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import com.newtowndata.events.core.ApplicationConstants;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class JoinAggregationTest {
+
+  @Test
+  void encodeDecode() {
+    JoinAggregation aggregation = JoinAggregation.LAST_VALUE_WINS;
+    Map<String, String> attributes = Map.of("a=b", "c&d?", "empty", "", "unicode", "žluť");
+
+    String state = aggregation.encode("source?1", attributes);
+    String emptyState = aggregation.encode("source2",
+        Map.of(ApplicationConstants.ATTRIBUTE_WAIT_TIME_IN_SEC, "10"));
+
+    assertEquals(Map.of("source?1", attributes, "source2", Map.of()),
+        aggregation.decode(List.of(state, emptyState, "legacy")));
+  }
+
+  @Test
+  void merge() {
+    JoinAggregation aggregation =
+        JoinAggregation.of(Map.of("names", JoinAggregation.joining("\n")));
+
+    Map<String, String> merged = aggregation.merge(aggregation.decode(List.of(
+        aggregation.encode("b", Map.of("names", "Alice", "last", "b")),
+        aggregation.encode("a", Map.of("names", "John", "last", "a")),
+        aggregation.encode("c", Map.of("names", "Amy", "c", "only")))));
+
+    assertEquals(Map.of("names", "John\nAlice\nAmy", "last", "b", "c", "only"), merged);
+  }
+
+}
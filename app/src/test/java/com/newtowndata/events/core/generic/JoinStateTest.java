@@ -15,20 +15,39 @@ package com.newtowndata.events.core.generic;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
+import com.newtowndata.events.core.ApplicationConstants;
 import com.newtowndata.events.core.ApplicationEvent;
 import com.newtowndata.events.core.OutputEvent;
 import com.newtowndata.events.core.StateContext;
 import com.newtowndata.events.core.io.StateTable;
+import com.newtowndata.events.core.utils.AttributeUtils;
+import com.newtowndata.events.local.io.LocalStateTable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
@@ -40,12 +59,14 @@ class JoinStateTest {
   private static final String STATE_TARGET = "target";
   private static final String STATE_SOURCE2 = "source2";
   private static final String STATE_SOURCE1 = "source1";
+  private static final String STATE_SOURCE3 = "source3";
   private static final String STATE_TEST = "test";
 
   private static final String ID_PATTERN = "[abcdef0-9-]+";
 
   private static final String TEST_ATTR = "test-attr";
   private static final String TEST_VALUE = "test-value";
+  private static final String TRACE_ID = "trace";
 
   @Mock
   StateContext stateContext;
@@ -58,6 +79,8 @@ class JoinStateTest {
     final String eventId = UUID.randomUUID().toString();
 
     when(stateContext.stateTable()).thenReturn(stateTable);
+    when(stateTable.addStateAndComplete(STATE_TEST + "|" + eventId, STATE_SOURCE1,
+        Set.of(STATE_SOURCE1, STATE_SOURCE2))).thenReturn(false);
 
     JoinState state = new JoinState(STATE_TEST, Set.of(STATE_SOURCE1, STATE_SOURCE2), STATE_TARGET);
     List<OutputEvent> result = state.handleEvent(stateContext, new ApplicationEvent(eventId,
@@ -66,7 +89,8 @@ class JoinStateTest {
     assertNotNull(result);
     assertEquals(0, result.size());
 
-    verify(stateTable, times(1)).putState(STATE_TEST + "|" + eventId, STATE_SOURCE1);
+    verify(stateTable, times(1)).addStateAndComplete(STATE_TEST + "|" + eventId, STATE_SOURCE1,
+        Set.of(STATE_SOURCE1, STATE_SOURCE2));
   }
 
   @Test
@@ -74,17 +98,20 @@ class JoinStateTest {
     final String eventId = UUID.randomUUID().toString();
 
     when(stateContext.stateTable()).thenReturn(stateTable);
-    when(stateTable.getStates(STATE_TEST + "|" + eventId)).thenReturn(Set.of(STATE_SOURCE1));
-
+    when(stateTable.addStateAndComplete(STATE_TEST + "|" + eventId, STATE_SOURCE1,
+        Set.of(STATE_SOURCE1, STATE_SOURCE2))).thenReturn(false);
 
     JoinState state = new JoinState(STATE_TEST, Set.of(STATE_SOURCE1, STATE_SOURCE2), STATE_TARGET);
+    state.handleEvent(stateContext, new ApplicationEvent(eventId, eventId, 10, STATE_SOURCE1,
+        STATE_TEST, Map.of(TEST_ATTR, TEST_VALUE)));
     List<OutputEvent> result = state.handleEvent(stateContext, new ApplicationEvent(eventId,
         eventId, 10, STATE_SOURCE1, STATE_TEST, Map.of(TEST_ATTR, TEST_VALUE)));
 
     assertNotNull(result);
     assertEquals(0, result.size());
 
-    verify(stateTable, times(1)).putState(STATE_TEST + "|" + eventId, STATE_SOURCE1);
+    verify(stateTable, times(2)).addStateAndComplete(STATE_TEST + "|" + eventId, STATE_SOURCE1,
+        Set.of(STATE_SOURCE1, STATE_SOURCE2));
   }
 
   @Test
@@ -92,8 +119,8 @@ class JoinStateTest {
     final String eventId = UUID.randomUUID().toString();
 
     when(stateContext.stateTable()).thenReturn(stateTable);
-    when(stateTable.getStates(STATE_TEST + "|" + eventId)).thenReturn(Set.of(STATE_SOURCE2));
-
+    when(stateTable.addStateAndComplete(STATE_TEST + "|" + eventId, STATE_SOURCE1,
+        Set.of(STATE_SOURCE1, STATE_SOURCE2))).thenReturn(true);
 
     JoinState state = new JoinState(STATE_TEST, Set.of(STATE_SOURCE1, STATE_SOURCE2), STATE_TARGET);
     List<OutputEvent> result = state.handleEvent(stateContext, new ApplicationEvent(eventId,
@@ -108,7 +135,354 @@ class JoinStateTest {
     assertEquals(1, outputEvent.attributes().size());
     assertEquals(TEST_VALUE, outputEvent.attributes().get(TEST_ATTR));
 
-    verify(stateTable, never()).putState(any(), any());
-    verify(stateTable, times(1)).deleteState(STATE_TEST + "|" + eventId);
   }
+
+  @Test
+  void handleEventBitmaskNotComplete() {
+    final String eventId = UUID.randomUUID().toString();
+
+    when(stateContext.stateTable()).thenReturn(stateTable);
+    when(stateTable.addBits(STATE_TEST + "|" + eventId, 2L)).thenReturn(2L);
+
+    JoinState state = JoinState.of(STATE_TEST, Set.of(STATE_SOURCE1, STATE_SOURCE2), STATE_TARGET)
+        .withMode(JoinMode.BITMASK).build();
+    List<OutputEvent> result = state.handleEvent(stateContext, new ApplicationEvent(eventId,
+        eventId, 10, STATE_SOURCE2, STATE_TEST, Map.of(TEST_ATTR, TEST_VALUE)));
+
+    assertEquals(0, result.size());
+    verify(stateTable, never()).complete(any());
+  }
+
+  @Test
+  void handleEventBitmaskComplete() {
+    final String eventId = UUID.randomUUID().toString();
+
+    when(stateContext.stateTable()).thenReturn(stateTable);
+    when(stateTable.addBits(STATE_TEST + "|" + eventId, 1L)).thenReturn(3L);
+    when(stateTable.complete(STATE_TEST + "|" + eventId)).thenReturn(true);
+
+    JoinState state = JoinState.of(STATE_TEST, Set.of(STATE_SOURCE1, STATE_SOURCE2), STATE_TARGET)
+        .withMode(JoinMode.BITMASK).build();
+    List<OutputEvent> result = state.handleEvent(stateContext, new ApplicationEvent(eventId,
+        eventId, 10, STATE_SOURCE1, STATE_TEST, Map.of(TEST_ATTR, TEST_VALUE)));
+
+    assertEquals(1, result.size());
+    assertEquals(STATE_TARGET, result.get(0).targetState());
+    assertEquals(TEST_VALUE, result.get(0).attributes().get(TEST_ATTR));
+    verify(stateTable, never()).addStateAndComplete(any(), any(), any());
+  }
+
+  @Test
+  void handleEventBitmaskCompletedByOther() {
+    final String eventId = UUID.randomUUID().toString();
+
+    when(stateContext.stateTable()).thenReturn(stateTable);
+    when(stateTable.addBits(STATE_TEST + "|" + eventId, 1L)).thenReturn(3L);
+    when(stateTable.complete(STATE_TEST + "|" + eventId)).thenReturn(false);
+
+    JoinState state = JoinState.of(STATE_TEST, Set.of(STATE_SOURCE1, STATE_SOURCE2), STATE_TARGET)
+        .withMode(JoinMode.BITMASK).build();
+    List<OutputEvent> result = state.handleEvent(stateContext, new ApplicationEvent(eventId,
+        eventId, 10, STATE_SOURCE1, STATE_TEST, Map.of(TEST_ATTR, TEST_VALUE)));
+
+    assertEquals(0, result.size());
+  }
+
+  @Test
+  void handleEventBitmaskUnexpectedSourceState() {
+    final String eventId = UUID.randomUUID().toString();
+
+    when(stateContext.stateTable()).thenReturn(stateTable);
+
+    JoinState state = JoinState.of(STATE_TEST, Set.of(STATE_SOURCE1, STATE_SOURCE2), STATE_TARGET)
+        .withMode(JoinMode.BITMASK).build();
+    List<OutputEvent> result = state.handleEvent(stateContext, new ApplicationEvent(eventId,
+        eventId, 10, "other", STATE_TEST, Map.of(TEST_ATTR, TEST_VALUE)));
+
+    assertEquals(0, result.size());
+    verify(stateTable, never()).addBits(any(), anyLong());
+  }
+
+  @Test
+  void bitmaskTooManySourceStates() {
+    Set<String> sourceStates =
+        IntStream.range(0, 65).mapToObj(i -> "source" + i).collect(Collectors.toSet());
+
+    assertThrows(IllegalArgumentException.class,
+        () -> JoinState.of(STATE_TEST, sourceStates, STATE_TARGET).withMode(JoinMode.BITMASK)
+            .build());
+  }
+  @Test
+  void handleEventsCoalesced() {
+    final String eventId = UUID.randomUUID().toString();
+
+    when(stateContext.stateTable()).thenReturn(stateTable);
+    when(stateTable.addStatesAndComplete(STATE_TEST + "|" + eventId,
+        Set.of(STATE_SOURCE1, STATE_SOURCE2), Set.of(STATE_SOURCE1, STATE_SOURCE2)))
+        .thenReturn(true);
+
+    JoinState state = new JoinState(STATE_TEST, Set.of(STATE_SOURCE1, STATE_SOURCE2), STATE_TARGET);
+    List<OutputEvent> result = state.handleEvents(stateContext,
+        List.of(new ApplicationEvent("id-1", eventId, 10, STATE_SOURCE1, STATE_TEST, Map.of()),
+            new ApplicationEvent("id-2", eventId, 10, STATE_SOURCE2, STATE_TEST,
+                Map.of(TEST_ATTR, TEST_VALUE))));
+
+    assertEquals(1, result.size());
+    assertEquals(STATE_TARGET, result.get(0).targetState());
+    assertEquals(Map.of(TEST_ATTR, TEST_VALUE), result.get(0).attributes());
+    assertEquals(eventId, state.coalescingKey(
+        new ApplicationEvent("id-1", eventId, 10, STATE_SOURCE1, STATE_TEST, Map.of())));
+  }
+
+  @Test
+  void handleEventsCoalescedBitmask() {
+    final String eventId = UUID.randomUUID().toString();
+
+    when(stateContext.stateTable()).thenReturn(stateTable);
+    when(stateTable.addBits(STATE_TEST + "|" + eventId, 3L)).thenReturn(3L);
+    when(stateTable.complete(STATE_TEST + "|" + eventId)).thenReturn(true);
+
+    JoinState state = JoinState.of(STATE_TEST, Set.of(STATE_SOURCE1, STATE_SOURCE2), STATE_TARGET)
+        .withMode(JoinMode.BITMASK).build();
+    List<OutputEvent> result = state.handleEvents(stateContext,
+        List.of(new ApplicationEvent("id-1", eventId, 10, STATE_SOURCE2, STATE_TEST, Map.of()),
+            new ApplicationEvent("id-2", eventId, 10, STATE_SOURCE1, STATE_TEST, Map.of())));
+
+    assertEquals(1, result.size());
+    verify(stateTable, times(1)).complete(STATE_TEST + "|" + eventId);
+  }
+
+  @Test
+  void handleEventsDifferentTraces() {
+    JoinState state = new JoinState(STATE_TEST, Set.of(STATE_SOURCE1, STATE_SOURCE2), STATE_TARGET);
+
+    assertThrows(IllegalArgumentException.class, () -> state.handleEvents(stateContext,
+        List.of(new ApplicationEvent("id-1", "trace-1", 10, STATE_SOURCE1, STATE_TEST, Map.of()),
+            new ApplicationEvent("id-2", "trace-2", 10, STATE_SOURCE2, STATE_TEST, Map.of()))));
+    assertThrows(IllegalArgumentException.class,
+        () -> state.handleEvents(stateContext, List.of()));
+  }
+
+  @Test
+  void handleEventQuorum() {
+    StateTable table = new LocalStateTable();
+    when(stateContext.stateTable()).thenReturn(table);
+
+    JoinState state = JoinState.of(STATE_TEST, Set.of(STATE_SOURCE1, STATE_SOURCE2, STATE_SOURCE3),
+        STATE_TARGET).withQuorum(2).build();
+    assertEquals(Set.of(STATE_TARGET), state.targetStates());
+
+    assertEquals(0, state.handleEvent(stateContext, joinEvent(STATE_SOURCE1)).size());
+    // a duplicate delivery does not count twice
+    assertEquals(0, state.handleEvent(stateContext, joinEvent(STATE_SOURCE1)).size());
+    List<OutputEvent> result = state.handleEvent(stateContext, joinEvent(STATE_SOURCE3));
+
+    assertEquals(1, result.size());
+    assertEquals(STATE_TARGET, result.get(0).targetState());
+    assertEquals(Map.of(TEST_ATTR, TEST_VALUE, ApplicationConstants.ATTRIBUTE_JOIN_MISSING_STATES,
+        STATE_SOURCE2), result.get(0).attributes());
+    // completion drops the states
+    assertEquals(Set.of(), table.getStates(STATE_TEST + "|" + TRACE_ID));
+
+    // duplicate and late arrivals do not complete the join again
+    assertEquals(0, state.handleEvent(stateContext, joinEvent(STATE_SOURCE3)).size());
+    assertEquals(0, state.handleEvent(stateContext, joinEvent(STATE_SOURCE2)).size());
+  }
+
+  @Test
+  void handleEventQuorumLateArrival() {
+    String key = STATE_TEST + "|" + TRACE_ID;
+    when(stateContext.stateTable()).thenReturn(stateTable);
+    when(stateTable.addStates(key, Set.of(STATE_SOURCE1))).thenReturn(Set.of(STATE_SOURCE1));
+    when(stateTable.addStates(key, Set.of(STATE_SOURCE2)))
+        .thenReturn(Set.of(STATE_SOURCE1, STATE_SOURCE2));
+    when(stateTable.complete(key)).thenReturn(true);
+
+    JoinState state = JoinState.of(STATE_TEST, Set.of(STATE_SOURCE1, STATE_SOURCE2, STATE_SOURCE3),
+        STATE_TARGET).withQuorum(2).build();
+    assertEquals(0, state.handleEvent(stateContext, joinEvent(STATE_SOURCE1)).size());
+    assertEquals(1, state.handleEvent(stateContext, joinEvent(STATE_SOURCE2)).size());
+
+    // discarded without a state table round trip
+    assertEquals(0, state.handleEvent(stateContext, joinEvent(STATE_SOURCE3)).size());
+    verify(stateTable, times(2)).addStates(any(), any());
+    verify(stateTable, times(1)).complete(key);
+    verifyNoMoreInteractions(stateTable);
+  }
+
+  @Test
+  void handleEventDeadline() {
+    StateTable table = new LocalStateTable();
+    when(stateContext.stateTable()).thenReturn(table);
+
+    JoinState state = JoinState.of(STATE_TEST,
+        Set.of(STATE_SOURCE1, STATE_SOURCE2, STATE_SOURCE3), STATE_TARGET)
+        .withDeadline(Duration.ofSeconds(30)).build();
+    assertEquals(Set.of(STATE_TARGET, STATE_TEST), state.targetStates());
+
+    List<OutputEvent> result = state.handleEvent(stateContext, joinEvent(STATE_SOURCE1));
+    assertEquals(1, result.size());
+    assertEquals(STATE_TEST, result.get(0).targetState());
+    assertEquals("30",
+        result.get(0).attributes().get(ApplicationConstants.ATTRIBUTE_WAIT_TIME_IN_SEC));
+    // a duplicate of the first arrival does not send another deadline
+    assertEquals(0, state.handleEvent(stateContext, joinEvent(STATE_SOURCE1)).size());
+    assertEquals(0, state.handleEvent(stateContext, joinEvent(STATE_SOURCE2)).size());
+
+    result = state.handleEvent(stateContext, new ApplicationEvent("deadline", TRACE_ID, 10,
+        STATE_TEST, STATE_TEST, result.get(0).attributes()));
+    assertEquals(1, result.size());
+    assertEquals(STATE_TARGET, result.get(0).targetState());
+    assertEquals(Map.of(TEST_ATTR, TEST_VALUE, ApplicationConstants.ATTRIBUTE_JOIN_MISSING_STATES,
+        STATE_SOURCE3), result.get(0).attributes());
+
+    // late arrival neither completes the join nor sends another deadline
+    JoinState otherState = JoinState.of(STATE_TEST,
+        Set.of(STATE_SOURCE1, STATE_SOURCE2, STATE_SOURCE3), STATE_TARGET)
+        .withDeadline(Duration.ofSeconds(30)).build();
+    assertEquals(0, otherState.handleEvent(stateContext, joinEvent(STATE_SOURCE3)).size());
+    assertEquals(0, otherState.handleEvent(stateContext, new ApplicationEvent("deadline-2",
+        TRACE_ID, 10, STATE_TEST, STATE_TEST, Map.of())).size());
+    // nor brings the states of the completed key back
+    assertEquals(Set.of(), table.getStates(STATE_TEST + "|" + TRACE_ID));
+  }
+
+  @Test
+  void handleEventQuorumBeforeDeadline() {
+    StateTable table = new LocalStateTable();
+    when(stateContext.stateTable()).thenReturn(table);
+
+    JoinState state = JoinState.of(STATE_TEST, Set.of(STATE_SOURCE1, STATE_SOURCE2),
+        STATE_TARGET).withDeadline(Duration.ofSeconds(1)).build();
+    assertEquals(1, state.handleEvent(stateContext, joinEvent(STATE_SOURCE1)).size());
+    List<OutputEvent> result = state.handleEvent(stateContext, joinEvent(STATE_SOURCE2));
+    assertEquals(1, result.size());
+    assertEquals(Map.of(TEST_ATTR, TEST_VALUE), result.get(0).attributes());
+
+    JoinState otherState = JoinState.of(STATE_TEST, Set.of(STATE_SOURCE1, STATE_SOURCE2),
+        STATE_TARGET).withDeadline(Duration.ofSeconds(1)).build();
+    assertEquals(0, otherState.handleEvent(stateContext,
+        new ApplicationEvent("deadline", TRACE_ID, 10, STATE_TEST, STATE_TEST, Map.of())).size());
+  }
+
+  @Test
+  void invalidQuorum() {
+    Set<String> sourceStates = Set.of(STATE_SOURCE1, STATE_SOURCE2);
+    assertThrows(IllegalArgumentException.class,
+        () -> JoinState.of(STATE_TEST, sourceStates, STATE_TARGET).withQuorum(0).build());
+    assertThrows(IllegalArgumentException.class,
+        () -> JoinState.of(STATE_TEST, sourceStates, STATE_TARGET).withQuorum(3).build());
+    assertThrows(IllegalArgumentException.class,
+        () -> JoinState.of(STATE_TEST, sourceStates, STATE_TARGET)
+            .withDeadline(Duration.ofSeconds(-1)).build());
+    // longer than an SQS message can be delayed
+    assertThrows(IllegalArgumentException.class,
+        () -> JoinState.of(STATE_TEST, sourceStates, STATE_TARGET)
+            .withDeadline(JoinState.MAX_DEADLINE.plusSeconds(1)).build());
+    assertThrows(IllegalArgumentException.class,
+        () -> JoinState.of(STATE_TEST, sourceStates, STATE_TARGET).withQuorum(1)
+            .withMode(JoinMode.BITMASK).build());
+  }
+
+  @Test
+  void handleEventAggregating() {
+    StateTable table = new LocalStateTable();
+    when(stateContext.stateTable()).thenReturn(table);
+
+    JoinState state = JoinState.of(STATE_TEST, Set.of(STATE_SOURCE1, STATE_SOURCE2, STATE_SOURCE3),
+        STATE_TARGET)
+        .withAggregation(JoinAggregation.of(Map.of(TEST_ATTR, JoinAggregation.joining(","))))
+        .build();
+
+    assertEquals(0, state.handleEvent(stateContext, new ApplicationEvent("id-2", TRACE_ID, 10,
+        STATE_SOURCE2, STATE_TEST, Map.of(TEST_ATTR, "2", "source2-attr", "x"))).size());
+    List<OutputEvent> result = state.handleEvents(stateContext, List.of(
+        new ApplicationEvent("id-3", TRACE_ID, 10, STATE_SOURCE3, STATE_TEST,
+            Map.of(TEST_ATTR, "3")),
+        new ApplicationEvent("id-1", TRACE_ID, 10, STATE_SOURCE1, STATE_TEST,
+            Map.of(TEST_ATTR, "1"))));
+
+    assertEquals(1, result.size());
+    assertEquals(STATE_TARGET, result.get(0).targetState());
+    assertEquals(Map.of(TEST_ATTR, "1,2,3", "source2-attr", "x"), result.get(0).attributes());
+    assertEquals(Set.of(), table.getStates(STATE_TEST + "|" + TRACE_ID));
+  }
+
+  @Test
+  void handleEventAggregatingRetry() {
+    String key = STATE_TEST + "|" + TRACE_ID;
+    StateTable table = spy(new LocalStateTable());
+    when(stateContext.stateTable()).thenReturn(table);
+    doThrow(new IllegalStateException("test")).doCallRealMethod().when(table).complete(key);
+
+    JoinState state = JoinState.of(STATE_TEST, Set.of(STATE_SOURCE1, STATE_SOURCE2), STATE_TARGET)
+        .withAggregation(JoinAggregation.LAST_VALUE_WINS).build();
+    assertEquals(0, state.handleEvent(stateContext, joinEvent(STATE_SOURCE1)).size());
+    assertThrows(IllegalStateException.class,
+        () -> state.handleEvent(stateContext, joinEvent(STATE_SOURCE2)));
+
+    // the branches are kept until the completion succeeds
+    assertEquals(1, state.handleEvent(stateContext, joinEvent(STATE_SOURCE2)).size());
+    assertEquals(0, state.handleEvent(stateContext, joinEvent(STATE_SOURCE2)).size());
+  }
+
+  @Test
+  void handleEventAggregatingTooLarge() {
+    StateTable table = new LocalStateTable();
+    when(stateContext.stateTable()).thenReturn(table);
+    String value = "x".repeat(AttributeUtils.MAX_ATTRIBUTES_SIZE_IN_BYTES * 2 / 3);
+
+    JoinState state = JoinState.of(STATE_TEST, Set.of(STATE_SOURCE1, STATE_SOURCE2), STATE_TARGET)
+        .withAggregation(JoinAggregation.LAST_VALUE_WINS).build();
+    assertEquals(0, state.handleEvent(stateContext, new ApplicationEvent("id-1", TRACE_ID, 10,
+        STATE_SOURCE1, STATE_TEST, Map.of("attr1", value))).size());
+    // each branch fits into its share of the item, but not into one event together
+    assertThrows(IllegalArgumentException.class,
+        () -> state.handleEvent(stateContext, new ApplicationEvent("id-2", TRACE_ID, 10,
+            STATE_SOURCE2, STATE_TEST, Map.of("attr2", value))));
+
+    JoinState wideState = JoinState.of(STATE_TEST,
+        Set.of(STATE_SOURCE1, STATE_SOURCE2, STATE_SOURCE3), STATE_TARGET)
+        .withAggregation(JoinAggregation.LAST_VALUE_WINS).build();
+    assertThrows(IllegalArgumentException.class,
+        () -> wideState.handleEvent(stateContext, new ApplicationEvent("id-3", "other", 10,
+            STATE_SOURCE3, STATE_TEST, Map.of("attr3", value))));
+  }
+
+  @Test
+  void handleEventConcurrentArrivals() throws InterruptedException, ExecutionException {
+    StateTable table = new LocalStateTable();
+    when(stateContext.stateTable()).thenReturn(table);
+    JoinState state = new JoinState(STATE_TEST, Set.of(STATE_SOURCE1, STATE_SOURCE2, STATE_SOURCE3),
+        STATE_TARGET);
+
+    // branches of the same trace are processed by different workers at the same time
+    int traces = 200;
+    List<Callable<Integer>> arrivals = new ArrayList<>();
+    for (int i = 0; i < traces; i++) {
+      String traceId = "trace-" + i;
+      for (String sourceState : List.of(STATE_SOURCE1, STATE_SOURCE2, STATE_SOURCE3)) {
+        arrivals.add(() -> state.handleEvent(stateContext, new ApplicationEvent(
+            UUID.randomUUID().toString(), traceId, 10, sourceState, STATE_TEST, Map.of())).size());
+      }
+    }
+    Collections.shuffle(arrivals, new Random(1));
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      int outputs = 0;
+      for (Future<Integer> future : executor.invokeAll(arrivals)) {
+        outputs += future.get();
+      }
+      assertEquals(traces, outputs);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static ApplicationEvent joinEvent(String sourceState) {
+    return new ApplicationEvent(UUID.randomUUID().toString(), TRACE_ID, 10, sourceState,
+        STATE_TEST, Map.of(TEST_ATTR, TEST_VALUE));
+  }
+
 }
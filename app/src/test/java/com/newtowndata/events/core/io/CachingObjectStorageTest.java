@@ -0,0 +1,212 @@
+/*
+ * Copyright 2023-2024 Voyta Krizek, https://github.com/NewTownData
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.newtowndata.events.core.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class CachingObjectStorageTest {
+
+  private static final String TEST_STORAGE = "storage";
+
+  // default methods reach the stubbed stream methods like in real implementations
+  @Mock(answer = Answers.CALLS_REAL_METHODS)
+  ObjectStorage delegate;
+
+  @Test
+  void testGetObjectCached() {
+    when(delegate.getObject(TEST_STORAGE, "a")).thenReturn(stream("hello"));
+    CachingObjectStorage objectStorage = new CachingObjectStorage(delegate, 100);
+
+    assertEquals("hello", objectStorage.getObjectAsString(TEST_STORAGE, "a"));
+    assertEquals("hello", objectStorage.getObjectAsString(TEST_STORAGE, "a"));
+
+    verify(delegate, times(1)).getObject(TEST_STORAGE, "a");
+    assertEquals(1, objectStorage.getMissCount());
+    assertEquals(1, objectStorage.getHitCount());
+    assertEquals(5, objectStorage.getSizeInBytes());
+  }
+
+  @Test
+  void testGetObjectPartiallyRead() throws IOException {
+    when(delegate.getObject(TEST_STORAGE, "a")).thenReturn(stream("hello"), stream("hello"));
+    CachingObjectStorage objectStorage = new CachingObjectStorage(delegate, 100);
+
+    try (InputStream isr = objectStorage.getObject(TEST_STORAGE, "a")) {
+      assertEquals('h', isr.read());
+    }
+    assertEquals("hello", objectStorage.getObjectAsString(TEST_STORAGE, "a"));
+
+    verify(delegate, times(2)).getObject(TEST_STORAGE, "a");
+    assertEquals(2, objectStorage.getMissCount());
+  }
+
+  @Test
+  void testGetObjectTooLarge() {
+    when(delegate.getObject(TEST_STORAGE, "a")).thenReturn(stream("hello"), stream("hello"));
+    CachingObjectStorage objectStorage = new CachingObjectStorage(delegate, 100, 4, false);
+
+    assertEquals("hello", objectStorage.getObjectAsString(TEST_STORAGE, "a"));
+    assertEquals("hello", objectStorage.getObjectAsString(TEST_STORAGE, "a"));
+
+    assertEquals(2, objectStorage.getMissCount());
+    assertEquals(0, objectStorage.getSizeInBytes());
+  }
+
+  @Test
+  void testPutObjectWriteThrough() {
+    doAnswer(answer -> {
+      assertEquals("hello",
+          new String(answer.<InputStream>getArgument(2).readAllBytes(), StandardCharsets.UTF_8));
+      return null;
+    }).when(delegate).putObject(eq(TEST_STORAGE), eq("a"), any(InputStream.class));
+    CachingObjectStorage objectStorage = new CachingObjectStorage(delegate, 100);
+
+    objectStorage.putObject(TEST_STORAGE, "a", stream("hello"));
+
+    assertEquals("hello", objectStorage.getObjectAsString(TEST_STORAGE, "a"));
+    verify(delegate, times(0)).getObject(TEST_STORAGE, "a");
+    assertEquals(1, objectStorage.getHitCount());
+  }
+
+  @Test
+  void testDeleteObjectInvalidates() {
+    when(delegate.getObject(TEST_STORAGE, "a")).thenReturn(stream("hello"), stream("world"));
+    CachingObjectStorage objectStorage = new CachingObjectStorage(delegate, 100);
+
+    assertEquals("hello", objectStorage.getObjectAsString(TEST_STORAGE, "a"));
+    objectStorage.deleteObject(TEST_STORAGE, "a");
+    assertEquals(0, objectStorage.getSizeInBytes());
+    assertEquals("world", objectStorage.getObjectAsString(TEST_STORAGE, "a"));
+
+    verify(delegate, times(1)).deleteObject(TEST_STORAGE, "a");
+    assertEquals(2, objectStorage.getMissCount());
+  }
+
+  @Test
+  void testEvictsLeastRecentlyUsed() {
+    when(delegate.getObject(eq(TEST_STORAGE), any()))
+        .thenAnswer(answer -> stream(answer.<String>getArgument(1) + "234"));
+    CachingObjectStorage objectStorage = new CachingObjectStorage(delegate, 10);
+
+    objectStorage.getObjectAsString(TEST_STORAGE, "a");
+    objectStorage.getObjectAsString(TEST_STORAGE, "b");
+    objectStorage.getObjectAsString(TEST_STORAGE, "a");
+    objectStorage.getObjectAsString(TEST_STORAGE, "c");
+
+    assertEquals(1, objectStorage.getEvictionCount());
+    assertEquals(8, objectStorage.getSizeInBytes());
+    assertEquals("a234", objectStorage.getObjectAsString(TEST_STORAGE, "a"));
+    assertEquals("b234", objectStorage.getObjectAsString(TEST_STORAGE, "b"));
+    verify(delegate, times(1)).getObject(TEST_STORAGE, "a");
+    verify(delegate, times(2)).getObject(TEST_STORAGE, "b");
+  }
+
+  @Test
+  void testRevalidate() {
+    when(delegate.getObject(TEST_STORAGE, "a")).thenReturn(stream("hello"), stream("world"));
+    when(delegate.getETag(TEST_STORAGE, "a"))
+        .thenReturn(Optional.of("1"), Optional.of("1"), Optional.of("2"));
+    CachingObjectStorage objectStorage = new CachingObjectStorage(delegate, 100, 100, true);
+
+    assertEquals("hello", objectStorage.getObjectAsString(TEST_STORAGE, "a"));
+    assertEquals("hello", objectStorage.getObjectAsString(TEST_STORAGE, "a"));
+    assertEquals("world", objectStorage.getObjectAsString(TEST_STORAGE, "a"));
+
+    assertEquals(1, objectStorage.getHitCount());
+    assertEquals(2, objectStorage.getMissCount());
+  }
+
+  @Test
+  void testWriteDuringReadWins() throws IOException {
+    when(delegate.getObject(TEST_STORAGE, "a")).thenReturn(stream("hello"));
+    CachingObjectStorage objectStorage = new CachingObjectStorage(delegate, 100);
+
+    try (InputStream isr = objectStorage.getObject(TEST_STORAGE, "a")) {
+      objectStorage.putObject(TEST_STORAGE, "a", "world");
+      assertEquals("hello", new String(isr.readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    assertEquals("world", objectStorage.getObjectAsString(TEST_STORAGE, "a"));
+  }
+
+  @Test
+  void testBytesAreCopied() {
+    CachingObjectStorage objectStorage = new CachingObjectStorage(delegate, 100);
+
+    byte[] data = "hello".getBytes(StandardCharsets.UTF_8);
+    objectStorage.putObject(TEST_STORAGE, "a", data);
+    data[0] = 'j';
+    objectStorage.getObjectBytes(TEST_STORAGE, "a")[0] = 'j';
+
+    assertEquals("hello", objectStorage.getObjectAsString(TEST_STORAGE, "a"));
+    ByteBuffer buffer = objectStorage.getObjectBuffer(TEST_STORAGE, "a");
+    assertTrue(buffer.isReadOnly());
+    assertEquals("hello", StandardCharsets.UTF_8.decode(buffer).toString());
+    assertEquals(3, objectStorage.getHitCount());
+  }
+
+  @Test
+  void testGetObjectBufferCached() {
+    when(delegate.getObject(TEST_STORAGE, "a")).thenReturn(stream("hello"));
+    CachingObjectStorage objectStorage = new CachingObjectStorage(delegate, 100);
+
+    ByteBuffer buffer = objectStorage.getObjectBuffer(TEST_STORAGE, "a");
+    assertEquals("hello", StandardCharsets.UTF_8.decode(buffer).toString());
+    assertEquals("hello", objectStorage.getObjectAsString(TEST_STORAGE, "a"));
+
+    verify(delegate, times(1)).getObject(TEST_STORAGE, "a");
+    assertEquals(1, objectStorage.getMissCount());
+    assertEquals(1, objectStorage.getHitCount());
+  }
+
+  @Test
+  void testWrap() {
+    assertSame(delegate, CachingObjectStorage.wrap(delegate, 0, false));
+    assertEquals(CachingObjectStorage.class,
+        CachingObjectStorage.wrap(delegate, 100, false).getClass());
+  }
+
+  @Test
+  void testInvalidSizes() {
+    assertThrows(IllegalArgumentException.class, () -> new CachingObjectStorage(delegate, 0));
+    assertThrows(IllegalArgumentException.class,
+        () -> new CachingObjectStorage(delegate, 10, 20, false));
+  }
+
+  private static InputStream stream(String data) {
+    return new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8));
+  }
+
+}
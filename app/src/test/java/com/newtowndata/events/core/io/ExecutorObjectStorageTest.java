@@ -0,0 +1,84 @@
+/*
+ * Copyright 2023-2024 Voyta Krizek, https://github.com/NewTownData
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.newtowndata.events.core.io;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ExecutorObjectStorageTest {
+
+  private static final String TEST_STORAGE = "storage";
+
+  @Mock
+  ObjectStorage delegate;
+
+  @Test
+  void testGetObjects() {
+    when(delegate.getObjectBytes(TEST_STORAGE, "a")).thenReturn(bytes("1"));
+    when(delegate.getObjectBytes(TEST_STORAGE, "b")).thenReturn(bytes("2"));
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      ExecutorObjectStorage objectStorage = new ExecutorObjectStorage(delegate, executor);
+
+      var result = objectStorage.getObjects(TEST_STORAGE, List.of("a", "b"), 2).join();
+
+      assertEquals(List.of("a", "b"), List.copyOf(result.keySet()));
+      assertArrayEquals(bytes("1"), result.get("a"));
+      assertArrayEquals(bytes("2"), result.get("b"));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void testGetObjectFailure() {
+    when(delegate.getObjectAsString(TEST_STORAGE, "a")).thenThrow(new IllegalStateException());
+    ExecutorObjectStorage objectStorage = new ExecutorObjectStorage(delegate);
+
+    CompletionException thrown = assertThrows(CompletionException.class,
+        () -> objectStorage.getObjectAsString(TEST_STORAGE, "a").join());
+    assertEquals(IllegalStateException.class, thrown.getCause().getClass());
+  }
+
+  @Test
+  void testPutAndDelete() {
+    ExecutorObjectStorage objectStorage = new ExecutorObjectStorage(delegate);
+
+    objectStorage.putObject(TEST_STORAGE, "a", "1").join();
+    objectStorage.putObject(TEST_STORAGE, "b", bytes("2")).join();
+    objectStorage.deleteObject(TEST_STORAGE, "a").join();
+
+    verify(delegate).putObject(TEST_STORAGE, "a", "1");
+    verify(delegate).putObject(TEST_STORAGE, "b", bytes("2"));
+    verify(delegate).deleteObject(TEST_STORAGE, "a");
+  }
+
+  private static byte[] bytes(String data) {
+    return data.getBytes(StandardCharsets.UTF_8);
+  }
+
+}
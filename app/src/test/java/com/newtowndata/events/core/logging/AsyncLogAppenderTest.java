@@ -0,0 +1,195 @@
+/*
+ * Copyright 2023-2024 Voyta Krizek, https://github.com/NewTownData
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.newtowndata.events.core.logging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.Test;
+
+class AsyncLogAppenderTest {
+
+  @Test
+  void testWritesRecordsInOrder() {
+    List<String> output = Collections.synchronizedList(new ArrayList<>());
+    try (AsyncLogAppender appender = new AsyncLogAppender(output::add, 8, OverflowPolicy.BLOCK)) {
+      StringBuilder expected = new StringBuilder();
+      for (int i = 0; i < 100; i++) {
+        appender.accept(i + "\n");
+        expected.append(i).append('\n');
+      }
+
+      assertTrue(appender.flush());
+      assertEquals(expected.toString(), String.join("", output));
+      assertEquals(0, appender.getDroppedCount());
+    }
+  }
+
+  @Test
+  void testConcurrentProducers() throws Exception {
+    List<String> output = Collections.synchronizedList(new ArrayList<>());
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try (AsyncLogAppender appender = new AsyncLogAppender(output::add, 16, OverflowPolicy.BLOCK)) {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < 1000; i++) {
+            appender.accept("record\n");
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+
+      assertTrue(appender.flush());
+      assertEquals(4000, String.join("", output).split("\n").length);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void testDropPolicy() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    List<String> output = Collections.synchronizedList(new ArrayList<>());
+    try (AsyncLogAppender appender =
+        new AsyncLogAppender(blockingOutput(release, output), 4, OverflowPolicy.DROP)) {
+      for (int i = 0; i < 20; i++) {
+        appender.accept("record\n");
+      }
+
+      assertTrue(appender.getDroppedCount() >= 20 - 4 - 1);
+      assertFalse(appender.flush(Duration.ofMillis(10)));
+      release.countDown();
+      assertTrue(appender.flush());
+      assertTrue(String.join("", output).contains(" log record(s) dropped\n"));
+    }
+  }
+
+  @Test
+  void testSamplePolicy() {
+    CountDownLatch release = new CountDownLatch(1);
+    List<String> output = Collections.synchronizedList(new ArrayList<>());
+    try (AsyncLogAppender appender =
+        new AsyncLogAppender(blockingOutput(release, output), 64, OverflowPolicy.SAMPLE)) {
+      for (int i = 0; i < 1000; i++) {
+        appender.accept("record\n");
+      }
+
+      long dropped = appender.getDroppedCount();
+      assertTrue(dropped > 0);
+      assertTrue(dropped < 1000 - 48);
+      release.countDown();
+      assertTrue(appender.flush());
+    }
+  }
+
+  @Test
+  void testClose() {
+    List<String> output = Collections.synchronizedList(new ArrayList<>());
+    AsyncLogAppender appender = new AsyncLogAppender(output::add, 8, OverflowPolicy.BLOCK);
+    appender.accept("first\n");
+    appender.close();
+    appender.accept("second\n");
+
+    assertEquals("first\nsecond\n", String.join("", output));
+  }
+
+  @Test
+  void testBlockedProducerParks() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    List<String> output = Collections.synchronizedList(new ArrayList<>());
+    try (AsyncLogAppender appender =
+        new AsyncLogAppender(blockingOutput(release, output), 4, OverflowPolicy.BLOCK)) {
+      Thread producer = new Thread(() -> {
+        for (int i = 0; i < 20; i++) {
+          appender.accept("record\n");
+        }
+      });
+      producer.start();
+
+      // a spinning producer would stay RUNNABLE
+      long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+      while (producer.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+        Thread.sleep(1);
+      }
+      assertEquals(Thread.State.WAITING, producer.getState());
+
+      release.countDown();
+      producer.join(5000);
+      assertFalse(producer.isAlive());
+      assertTrue(appender.flush());
+      assertEquals(20, String.join("", output).split("\n").length);
+    }
+  }
+
+  @Test
+  void testCloseWithConcurrentProducers() throws Exception {
+    List<String> output = Collections.synchronizedList(new ArrayList<>());
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      AsyncLogAppender appender = new AsyncLogAppender(output::add, 16, OverflowPolicy.BLOCK);
+      CountDownLatch started = new CountDownLatch(4);
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        futures.add(executor.submit(() -> {
+          started.countDown();
+          for (int i = 0; i < 1000; i++) {
+            appender.accept("record\n");
+          }
+        }));
+      }
+      started.await();
+      appender.close();
+      for (Future<?> future : futures) {
+        future.get();
+      }
+
+      // records accepted around close() are written either by the background thread or directly
+      assertEquals(4000, String.join("", output).split("\n").length);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void testInvalidCapacity() {
+    assertThrows(IllegalArgumentException.class,
+        () -> new AsyncLogAppender(record -> {
+        }, 0, OverflowPolicy.BLOCK));
+  }
+
+  private static Consumer<String> blockingOutput(CountDownLatch release, List<String> output) {
+    return record -> {
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      output.add(record);
+    };
+  }
+
+}
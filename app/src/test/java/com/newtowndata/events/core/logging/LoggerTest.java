@@ -14,9 +14,12 @@
 package com.newtowndata.events.core.logging;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Pattern;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -134,6 +137,102 @@ class LoggerTest {
     assertExceptionMessage("WARN");
   }
 
+  @Test
+  void testInfoWithSupplier() {
+    logger.info(() -> TEST_MESSAGE);
+
+    assertStandardMessage("INFO");
+  }
+
+  @Test
+  void testWarnWithTemplate() {
+    logger.warn("test {}", "message");
+
+    assertStandardMessage("WARN");
+  }
+
+  @Test
+  void testErrorWithTemplate() {
+    logger.error("{} {}", "test", "message");
+
+    assertStandardMessage("ERROR");
+  }
+
+  @Test
+  void testInfoWithTemplateException() {
+    logger.info("failed {}", EXAMPLE_EXCEPTION);
+    logger.warn("failed {}", EXAMPLE_EXCEPTION);
+    logger.error("failed {}", EXAMPLE_EXCEPTION);
+
+    assertEquals(3, logLines.size());
+    for (String logLine : logLines) {
+      assertTrue(logLine.matches("^[0-9]+\t" + REQUEST_ID + "\t(INFO|WARN|ERROR)\t"
+          + Pattern.quote("failed java.lang.Exception: Example message"
+              + "\tException(Example message)\tLoggerTest.java:")
+          + ".*\n$"), logLine);
+    }
+  }
+
+  @Test
+  void testFormat() {
+    assertEquals("a 1 b 2", Logger.format("a {} b {}", 1, 2));
+    assertEquals("a 1 b {}", Logger.format("a {} b {}", 1));
+    assertEquals("a 1", Logger.format("a {}", 1, 2));
+    assertEquals("a null", Logger.format("a {}", (Object) null));
+  }
+
+  @Test
+  void testDisabledLevel() {
+    Logger warnLogger = LoggerFactory.create(REQUEST_ID, logLines::add, LogLevel.WARN);
+
+    assertFalse(warnLogger.isInfoEnabled());
+    warnLogger.info(TEST_MESSAGE);
+    warnLogger.info(() -> {
+      throw new AssertionError("Supplier must not be called");
+    });
+    warnLogger.info("test {}", "message");
+    assertTrue(logLines.isEmpty());
+
+    warnLogger.error(TEST_MESSAGE);
+    assertStandardMessage("ERROR");
+  }
+
+  @Test
+  void testOffLevel() {
+    Logger offLogger = LoggerFactory.create(REQUEST_ID, logLines::add, LogLevel.OFF);
+
+    offLogger.error(TEST_MESSAGE);
+
+    assertFalse(offLogger.isEnabled(LogLevel.ERROR));
+    assertTrue(logLines.isEmpty());
+  }
+
+  @Test
+  void testConfigure() {
+    Logger classLogger = LoggerFactory.create(LoggerTest.class);
+    assertTrue(classLogger.isInfoEnabled());
+
+    try {
+      LoggerFactory.configure(LogLevel.INFO, Map.of("LoggerTest", LogLevel.ERROR));
+      assertFalse(classLogger.isEnabled(LogLevel.WARN));
+      assertTrue(LoggerFactory.create(LoggerTest.class).isEnabled(LogLevel.ERROR));
+      assertFalse(LoggerFactory.create(LoggerTest.class).isEnabled(LogLevel.WARN));
+    } finally {
+      LoggerFactory.configure(LogLevel.INFO, Map.of());
+    }
+    assertTrue(classLogger.isInfoEnabled());
+  }
+
+  @Test
+  void testParseLevels() {
+    assertEquals(Map.of("EventRouter", LogLevel.WARN, "JoinState", LogLevel.OFF),
+        LoggerFactory.parseLevels("EventRouter=warn, JoinState=OFF,"));
+    assertEquals(Map.of(), LoggerFactory.parseLevels(""));
+    assertThrows(IllegalArgumentException.class, () -> LoggerFactory.parseLevels("EventRouter"));
+    assertThrows(IllegalArgumentException.class,
+        () -> LoggerFactory.parseLevels("EventRouter=VERBOSE"));
+  }
+
   private void assertStandardMessage(String logLevel) {
     assertEquals(1, logLines.size());
     String logLine = logLines.get(0);
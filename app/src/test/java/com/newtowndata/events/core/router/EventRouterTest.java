@@ -14,6 +14,7 @@
 package com.newtowndata.events.core.router;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
@@ -22,14 +23,22 @@ import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import com.newtowndata.events.core.ApplicationConstants;
 import com.newtowndata.events.core.ApplicationContext;
 import com.newtowndata.events.core.ApplicationEvent;
 import com.newtowndata.events.core.ApplicationException;
 import com.newtowndata.events.core.ApplicationState;
 import com.newtowndata.events.core.OutputEvent;
 import com.newtowndata.events.core.StateContext;
+import com.newtowndata.events.core.generic.ExecutionState;
 import com.newtowndata.events.core.generic.ForkState;
+import com.newtowndata.events.core.generic.JoinState;
+import com.newtowndata.events.core.generic.WaitState;
 import com.newtowndata.events.core.io.EventPublisher;
+import com.newtowndata.events.core.io.StateTable;
+import com.newtowndata.events.local.io.LocalStateTable;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -72,6 +81,34 @@ class EventRouterTest {
             .withState(new ForkState(STATE_TEST, List.of(STATE_TARGET))).build());
   }
 
+  @Test
+  void testBuilderUndefinedTargetState() {
+    assertThrows(IllegalStateException.class,
+        () -> EventRouter.of(applicationContext)
+            .withState(new ForkState(STATE_TEST, List.of(STATE_TARGET, STATE_TARGET2)))
+            .withState(new ForkState(STATE_TARGET, List.of(ApplicationConstants.STATE_END)))
+            .build());
+  }
+
+  @Test
+  void testBuilderEndTargetState() {
+    assertNotNull(EventRouter.of(applicationContext)
+        .withState(new ForkState(STATE_TEST, List.of(STATE_TARGET, ApplicationConstants.STATE_END)))
+        .withState(new ForkState(STATE_TARGET, List.of(ApplicationConstants.STATE_END))).build());
+  }
+
+  @Test
+  void testProcessEventUndefinedState() {
+    when(state.stateName()).thenReturn(STATE_TEST);
+
+    EventRouter router = EventRouter.of(applicationContext).withState(state).build();
+
+    router.processEvent(ApplicationEvent.ofStart(1, STATE_TARGET, Map.of()));
+
+    verify(state, never()).handleEvent(any(), any());
+    verify(applicationContext, never()).eventPublisher();
+  }
+
   @Test
   void testProcessEventZeroTtl() {
     when(state.stateName()).thenReturn(STATE_TEST);
@@ -136,7 +173,7 @@ class EventRouterTest {
     when(state.stateName()).thenReturn(STATE_TEST);
     when(state.handleEvent(any(), any())).thenReturn(List.of(OutputEvent.of(STATE_TARGET, Map.of())));
     when(applicationContext.eventPublisher()).thenReturn(eventPublisher);
-    doThrow(new RuntimeException("test")).when(eventPublisher).publishEvent(any());
+    doThrow(new RuntimeException("test")).when(eventPublisher).publishEvents(any());
     
     EventRouter router = EventRouter.of(applicationContext).withState(state).build();
 
@@ -157,10 +194,12 @@ class EventRouterTest {
     ApplicationEvent event = ApplicationEvent.ofStart(1, STATE_TEST, Map.of());
     router.processEvent(event);
 
-    ArgumentCaptor<ApplicationEvent> outputEventCaptor = ArgumentCaptor.forClass(ApplicationEvent.class);
-    verify(eventPublisher, times(1)).publishEvent(outputEventCaptor.capture());
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<ApplicationEvent>> outputEventCaptor = ArgumentCaptor.forClass(List.class);
+    verify(eventPublisher, times(1)).publishEvents(outputEventCaptor.capture());
 
-    ApplicationEvent outputEvent = outputEventCaptor.getValue();
+    assertEquals(1, outputEventCaptor.getValue().size());
+    ApplicationEvent outputEvent = outputEventCaptor.getValue().get(0);
     assertTrue(outputEvent.id().matches(ID_PATTERN));
     assertEquals(event.traceId(), outputEvent.traceId());
     assertEquals(0, outputEvent.ttl());
@@ -185,10 +224,12 @@ class EventRouterTest {
     ApplicationEvent event = ApplicationEvent.ofStart(1, STATE_TEST, Map.of());
     router.processEvent(event);
 
-    ArgumentCaptor<ApplicationEvent> outputEventCaptor = ArgumentCaptor.forClass(ApplicationEvent.class);
-    verify(eventPublisher, times(2)).publishEvent(outputEventCaptor.capture());
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<ApplicationEvent>> outputEventCaptor = ArgumentCaptor.forClass(List.class);
+    verify(eventPublisher, times(1)).publishEvents(outputEventCaptor.capture());
 
-    List<ApplicationEvent> outputEvents = outputEventCaptor.getAllValues();
+    List<ApplicationEvent> outputEvents = outputEventCaptor.getValue();
+    assertEquals(2, outputEvents.size());
     assertEquals(
       Set.of(event.traceId()),
       outputEvents.stream().map(ApplicationEvent::traceId).collect(Collectors.toSet())
@@ -198,4 +239,158 @@ class EventRouterTest {
       outputEvents.stream().map(ApplicationEvent::targetState).collect(Collectors.toSet())
     );
   }
+
+  @Test
+  void testFusionLinearChain() {
+    when(applicationContext.stateContext()).thenReturn(stateContext);
+    when(applicationContext.eventPublisher()).thenReturn(eventPublisher);
+    List<String> executed = new ArrayList<>();
+
+    EventRouter router = EventRouter.of(applicationContext)
+        .withState(new ExecutionState(STATE_TEST, STATE_TARGET, context -> executed.add("a")))
+        .withState(new ExecutionState(STATE_TARGET, STATE_TARGET2, context -> executed.add("b")))
+        .withState(new ExecutionState(STATE_TARGET2, ApplicationConstants.STATE_END,
+            context -> executed.add("c")))
+        .withFusion(new FusionSettings(10, Duration.ofMinutes(1))).build();
+
+    ApplicationEvent event = ApplicationEvent.ofStart(10, STATE_TEST, Map.of());
+    router.processEvent(event);
+
+    assertEquals(List.of("a", "b", "c"), executed);
+
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<ApplicationEvent>> outputEventCaptor = ArgumentCaptor.forClass(List.class);
+    verify(eventPublisher, times(1)).publishEvents(outputEventCaptor.capture());
+
+    ApplicationEvent outputEvent = outputEventCaptor.getValue().get(0);
+    assertEquals(ApplicationConstants.STATE_END, outputEvent.targetState());
+    assertEquals(STATE_TARGET2, outputEvent.sourceState());
+    assertEquals(7, outputEvent.ttl());
+  }
+
+  @Test
+  void testFusionHopLimit() {
+    when(applicationContext.stateContext()).thenReturn(stateContext);
+    when(applicationContext.eventPublisher()).thenReturn(eventPublisher);
+    List<String> executed = new ArrayList<>();
+
+    EventRouter router = EventRouter.of(applicationContext)
+        .withState(new ExecutionState(STATE_TEST, STATE_TARGET, context -> executed.add("a")))
+        .withState(new ExecutionState(STATE_TARGET, STATE_TARGET2, context -> executed.add("b")))
+        .withState(new ExecutionState(STATE_TARGET2, ApplicationConstants.STATE_END,
+            context -> executed.add("c")))
+        .withFusion(new FusionSettings(1, Duration.ofMinutes(1))).build();
+
+    router.processEvent(ApplicationEvent.ofStart(10, STATE_TEST, Map.of()));
+
+    assertEquals(List.of("a", "b"), executed);
+
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<ApplicationEvent>> outputEventCaptor = ArgumentCaptor.forClass(List.class);
+    verify(eventPublisher, times(1)).publishEvents(outputEventCaptor.capture());
+    assertEquals(STATE_TARGET2, outputEventCaptor.getValue().get(0).targetState());
+  }
+
+  @Test
+  void testFusionSkipsWaitAndPublishesSiblings() {
+    when(applicationContext.stateContext()).thenReturn(stateContext);
+    when(applicationContext.eventPublisher()).thenReturn(eventPublisher);
+
+    EventRouter router = EventRouter.of(applicationContext)
+        .withState(new ForkState(STATE_TEST, List.of(STATE_TARGET, STATE_TARGET2)))
+        .withState(new WaitState(STATE_TARGET, ApplicationConstants.STATE_END, 5))
+        .withState(new ExecutionState(STATE_TARGET2, ApplicationConstants.STATE_END, context -> {
+        })).withFusion(new FusionSettings(10, Duration.ofMinutes(1))).build();
+
+    router.processEvent(ApplicationEvent.ofStart(10, STATE_TEST, Map.of()));
+
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<ApplicationEvent>> outputEventCaptor = ArgumentCaptor.forClass(List.class);
+    verify(eventPublisher, times(2)).publishEvents(outputEventCaptor.capture());
+
+    // fork publishes the second branch and fuses the first, wait output is never fused
+    assertEquals(List.of(STATE_TARGET2), outputEventCaptor.getAllValues().get(0).stream()
+        .map(ApplicationEvent::targetState).toList());
+    ApplicationEvent waitEvent = outputEventCaptor.getAllValues().get(1).get(0);
+    assertEquals(ApplicationConstants.STATE_END, waitEvent.targetState());
+    assertEquals("5", waitEvent.attributes().get(ApplicationConstants.ATTRIBUTE_WAIT_TIME_IN_SEC));
+  }
+
+  @Test
+  void testFusionStateFailurePublishesEvent() {
+    when(applicationContext.stateContext()).thenReturn(stateContext);
+    when(applicationContext.eventPublisher()).thenReturn(eventPublisher);
+
+    EventRouter router = EventRouter.of(applicationContext)
+        .withState(new ExecutionState(STATE_TEST, STATE_TARGET, context -> {
+        })).withState(new ExecutionState(STATE_TARGET, ApplicationConstants.STATE_END, context -> {
+          throw new IllegalStateException("test");
+        })).withFusion(new FusionSettings(10, Duration.ofMinutes(1))).build();
+
+    router.processEvent(ApplicationEvent.ofStart(10, STATE_TEST, Map.of()));
+
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<ApplicationEvent>> outputEventCaptor = ArgumentCaptor.forClass(List.class);
+    verify(eventPublisher, times(1)).publishEvents(outputEventCaptor.capture());
+
+    ApplicationEvent outputEvent = outputEventCaptor.getValue().get(0);
+    assertEquals(STATE_TARGET, outputEvent.targetState());
+    assertEquals(9, outputEvent.ttl());
+  }
+
+  @Test
+  void testFusionSettingsValidation() {
+    assertThrows(IllegalArgumentException.class,
+        () -> new FusionSettings(-1, Duration.ofSeconds(1)));
+    assertThrows(IllegalArgumentException.class,
+        () -> new FusionSettings(1, Duration.ofSeconds(-1)));
+  }
+  @Test
+  void testProcessEventsCoalesced() {
+    StateTable stateTable = new LocalStateTable();
+    when(applicationContext.stateContext()).thenReturn(stateContext);
+    when(applicationContext.eventPublisher()).thenReturn(eventPublisher);
+    when(stateContext.stateTable()).thenReturn(stateTable);
+
+    EventRouter router = EventRouter.of(applicationContext)
+        .withState(new JoinState(STATE_TEST, Set.of("a", "b"), ApplicationConstants.STATE_END))
+        .build();
+
+    ApplicationEvent eventA = new ApplicationEvent("id-1", "trace", 5, "a", STATE_TEST, Map.of());
+    ApplicationEvent eventB = new ApplicationEvent("id-2", "trace", 5, "b", STATE_TEST, Map.of());
+    assertEquals(router.coalescingKey(eventA), router.coalescingKey(eventB));
+    assertTrue(router.coalescingKey(eventA).isPresent());
+
+    router.processEvents(List.of(eventA, eventB));
+
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<ApplicationEvent>> outputEventCaptor = ArgumentCaptor.forClass(List.class);
+    verify(eventPublisher, times(1)).publishEvents(outputEventCaptor.capture());
+    assertEquals(1, outputEventCaptor.getValue().size());
+    assertEquals(ApplicationConstants.STATE_END,
+        outputEventCaptor.getValue().get(0).targetState());
+    assertEquals(Set.of(), stateTable.getStates(STATE_TEST + "|trace"));
+  }
+
+  @Test
+  void testProcessEventsNotCoalescible() {
+    when(state.stateName()).thenReturn(STATE_TEST);
+
+    EventRouter router = EventRouter.of(applicationContext).withState(state)
+        .withState(new JoinState(STATE_TARGET, Set.of("a", "b"), ApplicationConstants.STATE_END))
+        .build();
+
+    ApplicationEvent event = ApplicationEvent.ofStart(1, STATE_TEST, Map.of());
+    assertTrue(router.coalescingKey(event).isEmpty());
+    assertThrows(IllegalArgumentException.class,
+        () -> router.processEvents(List.of(event, event)));
+
+    ApplicationEvent eventA =
+        new ApplicationEvent("id-1", "trace1", 5, "a", STATE_TARGET, Map.of());
+    ApplicationEvent eventB =
+        new ApplicationEvent("id-2", "trace2", 5, "b", STATE_TARGET, Map.of());
+    assertThrows(IllegalArgumentException.class,
+        () -> router.processEvents(List.of(eventA, eventB)));
+  }
+
 }
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2023-2024 Voyta Krizek, https://github.com/NewTownData
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.newtowndata.events.core.router;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import com.newtowndata.events.core.ApplicationConstants;
+import com.newtowndata.events.core.ApplicationState;
+import com.newtowndata.events.core.generic.ForkState;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class RoutingTableTest {
+
+  private static final String STATE_A = "a";
+  private static final String STATE_B = "b";
+  private static final String STATE_C = "c";
+
+  @Test
+  void testIndexOf() {
+    ForkState stateA = new ForkState(STATE_A, List.of(STATE_B));
+    ForkState stateB = new ForkState(STATE_B, List.of());
+    RoutingTable table = RoutingTable.compile(List.of(stateA, stateB));
+
+    assertSame(stateA, table.state(table.indexOf(STATE_A)));
+    assertSame(stateB, table.state(table.indexOf(STATE_B)));
+    assertEquals(RoutingTable.UNDEFINED, table.indexOf(STATE_C));
+  }
+
+  @Test
+  void testSuccessorOf() {
+    ForkState stateA =
+        new ForkState(STATE_A, List.of(STATE_B, STATE_C, ApplicationConstants.STATE_END));
+    ForkState stateB = new ForkState(STATE_B, List.of());
+    ForkState stateC = new ForkState(STATE_C, List.of());
+    RoutingTable table = RoutingTable.compile(List.of(stateA, stateB, stateC));
+    int a = table.indexOf(STATE_A);
+
+    assertEquals(table.indexOf(STATE_B), table.successorOf(a, STATE_B));
+    assertEquals(table.indexOf(STATE_C), table.successorOf(a, new String(STATE_C)));
+    assertEquals(RoutingTable.UNDEFINED, table.successorOf(a, ApplicationConstants.STATE_END));
+    // undeclared targets are still resolved by name
+    assertEquals(a, table.successorOf(table.indexOf(STATE_B), STATE_A));
+    assertEquals(RoutingTable.UNDEFINED, table.successorOf(a, "unknown"));
+  }
+
+  @Test
+  void testUndefinedSuccessor() {
+    List<ApplicationState> states = List.of(new ForkState(STATE_A, List.of(STATE_B)));
+    assertThrows(IllegalStateException.class, () -> RoutingTable.compile(states));
+  }
+
+}
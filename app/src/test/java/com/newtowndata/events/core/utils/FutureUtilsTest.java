@@ -0,0 +1,87 @@
+/*
+ * Copyright 2023-2024 Voyta Krizek, https://github.com/NewTownData
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.newtowndata.events.core.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class FutureUtilsTest {
+
+  @Test
+  void testMapLimitedCapsConcurrency() {
+    List<CompletableFuture<String>> pending = new ArrayList<>();
+    CompletableFuture<Map<Integer, String>> result =
+        FutureUtils.mapLimited(List.of(3, 1, 2, 1), 2, key -> {
+          CompletableFuture<String> future = new CompletableFuture<>();
+          pending.add(future);
+          return future;
+        });
+
+    assertEquals(2, pending.size());
+    pending.get(1).complete("b");
+    assertEquals(3, pending.size());
+    pending.get(0).complete("a");
+    assertFalse(result.isDone());
+    pending.get(2).complete("c");
+
+    assertEquals(List.of(3, 1, 2), List.copyOf(result.join().keySet()));
+    assertEquals(Map.of(3, "a", 1, "b", 2, "c"), result.join());
+  }
+
+  @Test
+  void testMapLimitedCompletedFutures() {
+    List<Integer> keys = IntStream.range(0, 100_000).boxed().toList();
+
+    Map<Integer, Integer> result = FutureUtils
+        .mapLimited(keys, 4, key -> CompletableFuture.completedFuture(key * 2)).join();
+
+    assertEquals(keys.size(), result.size());
+    assertEquals(198, result.get(99));
+  }
+
+  @Test
+  void testMapLimitedFailure() {
+    IllegalStateException error = new IllegalStateException("Test");
+    List<Integer> started = new ArrayList<>();
+
+    CompletableFuture<Map<Integer, String>> result =
+        FutureUtils.mapLimited(List.of(1, 2, 3), 1, key -> {
+          started.add(key);
+          return key == 2 ? CompletableFuture.failedFuture(error)
+              : CompletableFuture.completedFuture("ok");
+        });
+
+    CompletionException thrown = assertThrows(CompletionException.class, result::join);
+    assertSame(error, thrown.getCause());
+    assertEquals(List.of(1, 2), started);
+  }
+
+  @Test
+  void testMapLimitedEmpty() {
+    assertTrue(FutureUtils.mapLimited(List.of(), 1, key -> null).join().isEmpty());
+    assertThrows(IllegalArgumentException.class,
+        () -> FutureUtils.mapLimited(List.of(1), 0, CompletableFuture::completedFuture));
+  }
+
+}
@@ -13,6 +13,7 @@
  */
 package com.newtowndata.events.env;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import java.util.UUID;
@@ -34,4 +35,12 @@ public class EnvironmentTest {
     String value = environment.getEnvironmentVariable("PATH");
     assertNotNull(value);
   }
+
+  @Test
+  void testGetEnvironmentVariableWithDefault() {
+    assertEquals("default", environment.getEnvironmentVariable(
+        "X_UNKNOWN_VARIABLE_123_" + UUID.randomUUID().toString(), "default"));
+    assertEquals(environment.getEnvironmentVariable("PATH"),
+        environment.getEnvironmentVariable("PATH", "default"));
+  }
 }
@@ -13,16 +13,27 @@
  */
 package com.newtowndata.events.lambda;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import com.amazonaws.services.lambda.runtime.events.SQSBatchResponse;
+import com.amazonaws.services.lambda.runtime.events.SQSEvent;
 import com.newtowndata.events.core.ApplicationContext;
 import com.newtowndata.events.core.ApplicationEvent;
 import com.newtowndata.events.core.StateContext;
 import com.newtowndata.events.core.io.EventPublisher;
 import com.newtowndata.events.core.io.ObjectStorage;
+import com.newtowndata.events.core.io.StateTable;
 import com.newtowndata.events.lambda.utils.AwsHelper;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -44,6 +55,9 @@ class AwsApplicationTest {
   @Mock
   EventPublisher eventPublisher;
 
+  @Mock
+  StateTable stateTable;
+
   private AwsApplication application;
 
   @BeforeEach
@@ -56,10 +70,91 @@ class AwsApplicationTest {
     when(applicationContext.eventPublisher()).thenReturn(eventPublisher);
     when(applicationContext.stateContext()).thenReturn(stateContext);
     when(stateContext.objectStorage()).thenReturn(objectStorage);
+    when(stateContext.stateTable()).thenReturn(stateTable);
+
+    SQSBatchResponse response = application
+        .run(AwsHelper.createEvent(ApplicationEvent.ofStart(10, "hello:input", Map.of())));
+
+    verify(eventPublisher).publishEvents(any());
+    verify(stateTable).flush();
+    assertTrue(response.getBatchItemFailures().isEmpty());
+  }
+
+  @Test
+  void testHandleRequestPartialFailure() {
+    when(applicationContext.eventPublisher()).thenReturn(eventPublisher);
+    when(applicationContext.stateContext()).thenReturn(stateContext);
+    when(stateContext.objectStorage()).thenReturn(objectStorage);
+    when(stateContext.stateTable()).thenReturn(stateTable);
+    doThrow(new RuntimeException("test")).doNothing().when(eventPublisher).publishEvents(any());
+
+    SQSEvent event = AwsHelper.createEvent(
+        List.of(new ApplicationEvent("id-1", "trace", 10, "start", "hello:input", Map.of()),
+            new ApplicationEvent("id-2", "trace", 10, "start", "hello:input", Map.of())));
+    SQSBatchResponse response =
+        new AwsApplication(applicationContext, "example-bucket", settings(true)).run(event);
+
+    assertEquals(1, response.getBatchItemFailures().size());
+    assertEquals(event.getRecords().get(0).getMessageId(),
+        response.getBatchItemFailures().get(0).getItemIdentifier());
+  }
+
+  @Test
+  void testHandleRequestConcurrently() {
+    when(applicationContext.eventPublisher()).thenReturn(eventPublisher);
+    when(applicationContext.stateContext()).thenReturn(stateContext);
+    when(stateContext.objectStorage()).thenReturn(objectStorage);
+    when(stateContext.stateTable()).thenReturn(stateTable);
 
-    application.run(AwsHelper.createEvent(ApplicationEvent.ofStart(10, "hello:input", Map.of())));
+    SQSEvent event = AwsHelper.createEvent(IntStream.range(0, 10)
+        .mapToObj(i -> ApplicationEvent.ofStart(10, "hello:input", Map.of())).toList());
+    SQSBatchResponse response =
+        new AwsApplication(applicationContext, "example-bucket", settings(false)).run(event);
+
+    verify(eventPublisher, times(10)).publishEvents(any());
+    assertTrue(response.getBatchItemFailures().isEmpty());
+  }
+
+  @Test
+  void testHandleRequestCoalescesJoin() {
+    when(applicationContext.eventPublisher()).thenReturn(eventPublisher);
+    when(applicationContext.stateContext()).thenReturn(stateContext);
+    when(stateContext.stateTable()).thenReturn(stateTable);
+    when(stateTable.addStatesAndComplete("hi_all:join|trace",
+        Set.of("john:wait", "alice", "amy"), Set.of("john:wait", "alice", "amy"))).thenReturn(true);
+
+    SQSEvent event = AwsHelper.createEvent(
+        List.of(new ApplicationEvent("id-1", "trace", 10, "john:wait", "hi_all:join", Map.of()),
+            new ApplicationEvent("id-2", "trace", 10, "alice", "hi_all:join", Map.of()),
+            new ApplicationEvent("id-3", "trace", 10, "amy", "hi_all:join", Map.of())));
+    SQSBatchResponse response =
+        new AwsApplication(applicationContext, "example-bucket", settings(false)).run(event);
+
+    verify(stateTable, times(1)).addStatesAndComplete(any(), any(), any());
+    verify(eventPublisher, times(1)).publishEvents(any());
+    assertTrue(response.getBatchItemFailures().isEmpty());
+  }
+
+  @Test
+  void testHandleRequestInvalidMessage() {
+    SQSEvent event = AwsHelper.createEvent(ApplicationEvent.ofStart(10, "hello:input", Map.of()));
+    event.getRecords().get(0).setBody("{");
+
+    SQSBatchResponse response = application.run(event);
+
+    assertEquals(1, response.getBatchItemFailures().size());
+    assertEquals(event.getRecords().get(0).getMessageId(),
+        response.getBatchItemFailures().get(0).getItemIdentifier());
+  }
+
+  @Test
+  void testInvalidParallelism() {
+    assertThrows(IllegalArgumentException.class,
+        () -> AwsSettings.builder().withParallelism(0));
+  }
 
-    verify(eventPublisher).publishEvent(any());
+  private static AwsSettings settings(boolean serializeTraces) {
+    return AwsSettings.builder().withParallelism(4).withSerializeTraces(serializeTraces).build();
   }
 
 }
@@ -13,6 +13,7 @@
  */
 package com.newtowndata.events.lambda;
 
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.when;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.events.SQSEvent;
@@ -46,6 +47,26 @@ class EventsHandlerTest {
     when(environment.getEnvironmentVariable(AwsConstants.QUEUE_URL))
         .thenReturn("http://localhost/example-queue");
     when(environment.getEnvironmentVariable(AwsConstants.TABLE_NAME)).thenReturn("example-table");
+    when(environment.getEnvironmentVariable(AwsConstants.ASYNC_STATE_DELETES, "false"))
+        .thenReturn("true");
+    when(environment.getEnvironmentVariable(AwsConstants.STATE_TTL_IN_SEC, "86400"))
+        .thenReturn("3600");
+    when(environment.getEnvironmentVariable(AwsConstants.DELETE_LEGACY_STATE_ROWS, "false"))
+        .thenReturn("true");
+    when(environment.getEnvironmentVariable(AwsConstants.OBJECT_CACHE_SIZE_IN_BYTES, "0"))
+        .thenReturn("1048576");
+    when(environment.getEnvironmentVariable(AwsConstants.OBJECT_CACHE_REVALIDATE, "false"))
+        .thenReturn("true");
+    when(environment.getEnvironmentVariable(AwsConstants.PARALLELISM, "10")).thenReturn("4");
+    when(environment.getEnvironmentVariable(AwsConstants.SERIALIZE_TRACES, "true"))
+        .thenReturn("false");
+    when(environment.getEnvironmentVariable(AwsConstants.FUSION_MAX_HOPS, "0")).thenReturn("5");
+    when(environment.getEnvironmentVariable(AwsConstants.FUSION_TIME_BUDGET_IN_MS, "0"))
+        .thenReturn("1000");
+    when(environment.getEnvironmentVariable(AwsConstants.LOG_LEVEL, "INFO")).thenReturn("INFO");
+    when(environment.getEnvironmentVariable(AwsConstants.LOG_LEVELS, ""))
+        .thenReturn("EventsHandler=WARN");
+    when(environment.getEnvironmentVariable(AwsConstants.LOG_BUFFER_SIZE, "0")).thenReturn("0");
 
     this.handler = new EventsHandler(environment);
   }
@@ -57,6 +78,6 @@ class EventsHandlerTest {
 
   @Test
   void testHandleRequest() {
-    handler.handleRequest(new SQSEvent(), context);
+    assertTrue(handler.handleRequest(new SQSEvent(), context).getBatchItemFailures().isEmpty());
   }
 }
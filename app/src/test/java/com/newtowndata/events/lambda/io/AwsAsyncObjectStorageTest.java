@@ -0,0 +1,102 @@
+/*
+ * Copyright 2023-2024 Voyta Krizek, https://github.com/NewTownData
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.newtowndata.events.lambda.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+
+@ExtendWith(MockitoExtension.class)
+class AwsAsyncObjectStorageTest {
+
+  private static final String TEST_BUCKET = "example";
+
+  @Mock
+  S3AsyncClient client;
+
+  private AwsAsyncObjectStorage objectStorage;
+
+  @BeforeEach
+  void beforeEach() {
+    this.objectStorage = new AwsAsyncObjectStorage(client);
+  }
+
+  @Test
+  void testGetObjects() {
+    when(client.getObject(any(GetObjectRequest.class), any(AsyncResponseTransformer.class)))
+        .thenAnswer(answer -> {
+          GetObjectRequest request = answer.getArgument(0);
+          assertEquals(TEST_BUCKET, request.bucket());
+          return CompletableFuture.completedFuture(ResponseBytes.fromByteArray(
+              GetObjectResponse.builder().build(),
+              request.key().toUpperCase().getBytes(StandardCharsets.UTF_8)));
+        });
+
+    Map<String, byte[]> result =
+        objectStorage.getObjects(TEST_BUCKET, List.of("a", "b", "c"), 2).join();
+
+    assertEquals(Map.of("a", "A", "b", "B", "c", "C"),
+        result.entrySet().stream().collect(Collectors.toMap(Map.Entry::getKey,
+            entry -> new String(entry.getValue(), StandardCharsets.UTF_8))));
+  }
+
+  @Test
+  void testPutObject() {
+    when(client.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+        .thenReturn(CompletableFuture.completedFuture(PutObjectResponse.builder().build()));
+
+    objectStorage.putObject(TEST_BUCKET, "a", "hello").join();
+
+    ArgumentCaptor<AsyncRequestBody> argumentCaptor =
+        ArgumentCaptor.forClass(AsyncRequestBody.class);
+    verify(client).putObject(any(PutObjectRequest.class), argumentCaptor.capture());
+    assertEquals(5L, argumentCaptor.getValue().contentLength().orElseThrow());
+  }
+
+  @Test
+  void testDeleteObject() {
+    when(client.deleteObject(any(DeleteObjectRequest.class)))
+        .thenReturn(CompletableFuture.completedFuture(DeleteObjectResponse.builder().build()));
+
+    objectStorage.deleteObject(TEST_BUCKET, "a").join();
+
+    ArgumentCaptor<DeleteObjectRequest> argumentCaptor =
+        ArgumentCaptor.forClass(DeleteObjectRequest.class);
+    verify(client).deleteObject(argumentCaptor.capture());
+    assertEquals("a", argumentCaptor.getValue().key());
+  }
+
+}
@@ -15,6 +15,7 @@ package com.newtowndata.events.lambda.io;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -23,7 +24,9 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.newtowndata.events.core.ApplicationConstants;
 import com.newtowndata.events.core.ApplicationEvent;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.IntStream;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -31,6 +34,11 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResultEntry;
 import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
 import software.amazon.awssdk.services.sqs.model.SendMessageResponse;
 
@@ -111,4 +119,117 @@ class AwsEventPublisherTest {
         "51c1da07-0188-41e8-9999-ce960b3c1356", 10, "start", "test", Map.of());
     assertThrows(IllegalStateException.class, () -> eventPublisher.publishEvent(event, -1));
   }
+
+  @Test
+  void testPublishEvents() {
+    when(client.sendMessageBatch(any(SendMessageBatchRequest.class)))
+        .thenAnswer(answer -> successfulResponse(answer.getArgument(0)));
+
+    List<ApplicationEvent> events = IntStream.range(0, 12)
+        .mapToObj(i -> ApplicationEvent.ofStart(10, "test-" + i,
+            i == 3 ? Map.of(ApplicationConstants.ATTRIBUTE_WAIT_TIME_IN_SEC, "5") : Map.of()))
+        .toList();
+    eventPublisher.publishEvents(events);
+
+    ArgumentCaptor<SendMessageBatchRequest> argumentCaptor =
+        ArgumentCaptor.forClass(SendMessageBatchRequest.class);
+    verify(client, times(2)).sendMessageBatch(argumentCaptor.capture());
+
+    SendMessageBatchRequest request1 = argumentCaptor.getAllValues().get(0);
+    assertEquals(TEST_QUEUE_URL, request1.queueUrl());
+    assertEquals(10, request1.entries().size());
+
+    SendMessageBatchRequestEntry delayedEntry = request1.entries().stream()
+        .filter(entry -> "3".equals(entry.id())).findFirst().get();
+    assertEquals(5, delayedEntry.delaySeconds());
+    assertEquals(GSON.toJson(new ApplicationEvent(events.get(3).id(), events.get(3).traceId(), 10,
+        events.get(3).sourceState(), events.get(3).targetState(), Map.of())),
+        delayedEntry.messageBody());
+
+    SendMessageBatchRequest request2 = argumentCaptor.getAllValues().get(1);
+    assertEquals(2, request2.entries().size());
+    assertEquals(null, request2.entries().get(0).delaySeconds());
+  }
+
+  @Test
+  void testPublishSingleEventWithoutBatch() {
+    when(client.sendMessage(any(SendMessageRequest.class)))
+        .thenReturn(SendMessageResponse.builder().messageId("test-id").build());
+
+    eventPublisher.publishEvents(List.of(ApplicationEvent.ofStart(10, "test", Map.of())));
+
+    verify(client, times(1)).sendMessage(any(SendMessageRequest.class));
+    verify(client, times(0)).sendMessageBatch(any(SendMessageBatchRequest.class));
+  }
+
+  @Test
+  void testPublishEventsRetriesFailedEntries() {
+    when(client.sendMessageBatch(any(SendMessageBatchRequest.class))).thenReturn(
+        SendMessageBatchResponse.builder()
+            .successful(SendMessageBatchResultEntry.builder().id("0").messageId("m0").build())
+            .failed(BatchResultErrorEntry.builder().id("1").code("ServiceUnavailable")
+                .senderFault(false).build())
+            .build())
+        .thenAnswer(answer -> successfulResponse(answer.getArgument(0)));
+
+    eventPublisher.publishEvents(List.of(ApplicationEvent.ofStart(10, "a", Map.of()),
+        ApplicationEvent.ofStart(10, "b", Map.of())));
+
+    ArgumentCaptor<SendMessageBatchRequest> argumentCaptor =
+        ArgumentCaptor.forClass(SendMessageBatchRequest.class);
+    verify(client, times(2)).sendMessageBatch(argumentCaptor.capture());
+
+    SendMessageBatchRequest retry = argumentCaptor.getAllValues().get(1);
+    assertEquals(1, retry.entries().size());
+    assertEquals("1", retry.entries().get(0).id());
+  }
+
+  @Test
+  void testPublishEventsSenderFault() {
+    when(client.sendMessageBatch(any(SendMessageBatchRequest.class))).thenReturn(
+        SendMessageBatchResponse.builder()
+            .successful(SendMessageBatchResultEntry.builder().id("0").messageId("m0").build())
+            .failed(BatchResultErrorEntry.builder().id("1").code("InvalidMessageContents")
+                .senderFault(true).build())
+            .build());
+
+    List<ApplicationEvent> events = List.of(ApplicationEvent.ofStart(10, "a", Map.of()),
+        ApplicationEvent.ofStart(10, "b", Map.of()));
+    assertThrows(IllegalStateException.class, () -> eventPublisher.publishEvents(events));
+    verify(client, times(1)).sendMessageBatch(any(SendMessageBatchRequest.class));
+  }
+
+  @Test
+  void testPublishEventsRetriesExhausted() {
+    when(client.sendMessageBatch(any(SendMessageBatchRequest.class))).thenReturn(
+        SendMessageBatchResponse.builder()
+            .failed(BatchResultErrorEntry.builder().id("0").code("ServiceUnavailable")
+                .senderFault(false).build(),
+                BatchResultErrorEntry.builder().id("1").code("ServiceUnavailable")
+                    .senderFault(false).build())
+            .build());
+
+    List<ApplicationEvent> events = List.of(ApplicationEvent.ofStart(10, "a", Map.of()),
+        ApplicationEvent.ofStart(10, "b", Map.of()));
+    assertThrows(IllegalStateException.class, () -> eventPublisher.publishEvents(events));
+    verify(client, times(AwsEventPublisher.MAX_BATCH_ATTEMPTS))
+        .sendMessageBatch(any(SendMessageBatchRequest.class));
+  }
+
+  @Test
+  void testBackoffIsCapped() {
+    for (int attempt = 1; attempt < 64; attempt++) {
+      long backoff = AwsEventPublisher.backoffInMs(attempt);
+      assertTrue(backoff >= 0);
+      assertTrue(backoff <= Math.min(AwsEventPublisher.MAX_BACKOFF_IN_MS,
+          AwsEventPublisher.BASE_BACKOFF_IN_MS << Math.min(attempt - 1, 20)));
+    }
+  }
+
+  private static SendMessageBatchResponse successfulResponse(SendMessageBatchRequest request) {
+    return SendMessageBatchResponse.builder()
+        .successful(request.entries().stream().map(entry -> SendMessageBatchResultEntry.builder()
+            .id(entry.id()).messageId("message-" + entry.id()).build()).toList())
+        .build();
+  }
 }
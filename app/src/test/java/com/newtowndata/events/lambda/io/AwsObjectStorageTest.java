@@ -16,27 +16,48 @@ package com.newtowndata.events.lambda.io;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.core.ResponseBytes;
 import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.exception.SdkClientException;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
 
 @ExtendWith(MockitoExtension.class)
 class AwsObjectStorageTest {
@@ -56,14 +77,8 @@ class AwsObjectStorageTest {
 
   @Test
   void testGetObjectException() {
-    when(client.getObject(any(GetObjectRequest.class))).thenReturn(new ResponseInputStream<GetObjectResponse>(GetObjectResponse.builder().build(), new InputStream() {
-
-      @Override
-      public int read() throws IOException {
-        throw new IOException("Test");
-      }
-      
-    }));
+    when(client.getObjectAsBytes(any(GetObjectRequest.class)))
+        .thenThrow(SdkClientException.create("Test", new IOException("Test")));
 
     assertThrows(IllegalStateException.class, 
       () -> objectStorage.getObjectAsString(TEST_BUCKET, TEST_OBJECT_KEY));
@@ -72,16 +87,16 @@ class AwsObjectStorageTest {
   @Test
   void testGetObject() {
     String exampleContent = "hello world";
-    when(client.getObject(any(GetObjectRequest.class)))
-        .thenReturn(new ResponseInputStream<GetObjectResponse>(GetObjectResponse.builder().build(),
-            new ByteArrayInputStream(exampleContent.getBytes(StandardCharsets.UTF_8))));
+    when(client.getObjectAsBytes(any(GetObjectRequest.class)))
+        .thenReturn(ResponseBytes.fromByteArray(GetObjectResponse.builder().build(),
+            exampleContent.getBytes(StandardCharsets.UTF_8)));
 
     String content = objectStorage.getObjectAsString(TEST_BUCKET, TEST_OBJECT_KEY);
     assertEquals(exampleContent, content);
 
     ArgumentCaptor<GetObjectRequest> argumentCaptor =
         ArgumentCaptor.forClass(GetObjectRequest.class);
-    verify(client, times(1)).getObject(argumentCaptor.capture());
+    verify(client, times(1)).getObjectAsBytes(argumentCaptor.capture());
 
     GetObjectRequest request = argumentCaptor.getValue();
 
@@ -89,6 +104,54 @@ class AwsObjectStorageTest {
     assertEquals(TEST_OBJECT_KEY, request.key());
   }
 
+  @Test
+  void testGetObjectStream() throws IOException {
+    when(client.getObject(any(GetObjectRequest.class)))
+        .thenReturn(new ResponseInputStream<GetObjectResponse>(GetObjectResponse.builder().build(),
+            new ByteArrayInputStream("hello".getBytes(StandardCharsets.UTF_8))));
+
+    try (InputStream isr = objectStorage.getObject(TEST_BUCKET, TEST_OBJECT_KEY)) {
+      assertEquals("hello", new String(isr.readAllBytes(), StandardCharsets.UTF_8));
+    }
+  }
+
+  @Test
+  void testGetObjectBuffer() {
+    when(client.getObjectAsBytes(any(GetObjectRequest.class)))
+        .thenReturn(ResponseBytes.fromByteArray(GetObjectResponse.builder().build(),
+            "hello".getBytes(StandardCharsets.UTF_8)));
+
+    ByteBuffer buffer = objectStorage.getObjectBuffer(TEST_BUCKET, TEST_OBJECT_KEY);
+
+    assertEquals("hello", StandardCharsets.UTF_8.decode(buffer).toString());
+  }
+
+  @Test
+  void testPutObjectBufferMultipart() {
+    objectStorage = new AwsObjectStorage(client, 4, 2);
+    Map<Integer, String> parts = new ConcurrentHashMap<>();
+    when(client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+        .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload").build());
+    when(client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+        .thenAnswer(answer -> {
+          UploadPartRequest request = answer.getArgument(0);
+          RequestBody requestBody = answer.getArgument(1);
+          parts.put(request.partNumber(),
+              new String(requestBody.contentStreamProvider().newStream().readAllBytes(),
+                  StandardCharsets.UTF_8));
+          return UploadPartResponse.builder().eTag("e" + request.partNumber()).build();
+        });
+    when(client.completeMultipartUpload(any(CompleteMultipartUploadRequest.class)))
+        .thenReturn(CompleteMultipartUploadResponse.builder().eTag("abc").build());
+
+    ByteBuffer data = ByteBuffer.wrap("__hello world".getBytes(StandardCharsets.UTF_8));
+    data.position(2);
+    objectStorage.putObject(TEST_BUCKET, TEST_OBJECT_KEY, data);
+
+    assertEquals(Map.of(1, "hell", 2, "o wo", 3, "rld"), parts);
+    assertEquals(2, data.position());
+  }
+
   @Test
   void testPutObject() throws IOException {
     String exampleContent = "hello world";
@@ -111,6 +174,137 @@ class AwsObjectStorageTest {
     verify(client, times(1)).putObject(any(PutObjectRequest.class), any(RequestBody.class));
   }
 
+  @Test
+  void testPutObjectMultipart() {
+    objectStorage = new AwsObjectStorage(client, 4, 2);
+    Map<Integer, String> parts = new ConcurrentHashMap<>();
+    when(client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+        .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload").build());
+    when(client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+        .thenAnswer(answer -> {
+          UploadPartRequest request = answer.getArgument(0);
+          assertEquals("upload", request.uploadId());
+          RequestBody requestBody = answer.getArgument(1);
+          parts.put(request.partNumber(),
+              new String(requestBody.contentStreamProvider().newStream().readAllBytes(),
+                  StandardCharsets.UTF_8));
+          return UploadPartResponse.builder().eTag("e" + request.partNumber()).build();
+        });
+    when(client.completeMultipartUpload(any(CompleteMultipartUploadRequest.class)))
+        .thenReturn(CompleteMultipartUploadResponse.builder().eTag("abc").build());
+
+    objectStorage.putObject(TEST_BUCKET, TEST_OBJECT_KEY,
+        new ByteArrayInputStream("hello world".getBytes(StandardCharsets.UTF_8)));
+
+    assertEquals(Map.of(1, "hell", 2, "o wo", 3, "rld"), parts);
+    ArgumentCaptor<CompleteMultipartUploadRequest> argumentCaptor =
+        ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+    verify(client).completeMultipartUpload(argumentCaptor.capture());
+    assertEquals(List.of("e1", "e2", "e3"), argumentCaptor.getValue().multipartUpload().parts()
+        .stream().map(CompletedPart::eTag).toList());
+    verify(client, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+  }
+
+  @Test
+  void testPutObjectMultipartAbort() {
+    objectStorage = new AwsObjectStorage(client, 4, 2);
+    when(client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+        .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload").build());
+    when(client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+        .thenThrow(S3Exception.builder().statusCode(500).build());
+
+    assertThrows(IllegalStateException.class, () -> objectStorage.putObject(TEST_BUCKET,
+        TEST_OBJECT_KEY, new ByteArrayInputStream("hello world".getBytes(StandardCharsets.UTF_8))));
+
+    ArgumentCaptor<AbortMultipartUploadRequest> argumentCaptor =
+        ArgumentCaptor.forClass(AbortMultipartUploadRequest.class);
+    verify(client).abortMultipartUpload(argumentCaptor.capture());
+    assertEquals("upload", argumentCaptor.getValue().uploadId());
+    verify(client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+  }
+
+  @Test
+  void testPutObjectKnownLength() {
+    when(client.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+        .thenAnswer(answer -> {
+          PutObjectRequest request = answer.getArgument(0);
+          assertEquals(5L, request.contentLength());
+          RequestBody requestBody = answer.getArgument(1);
+          assertEquals(5L, requestBody.optionalContentLength().orElseThrow());
+          return PutObjectResponse.builder().eTag("abc").build();
+        });
+
+    objectStorage.putObject(TEST_BUCKET, TEST_OBJECT_KEY,
+        new ByteArrayInputStream("hello".getBytes(StandardCharsets.UTF_8)), 5);
+
+    verify(client, times(1)).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+  }
+
+  @Test
+  void testPutObjectKnownLengthMultipart() throws IOException {
+    AtomicInteger executed = new AtomicInteger();
+    objectStorage = new AwsObjectStorage(client, 4, 2, task -> {
+      executed.incrementAndGet();
+      task.run();
+    });
+    Map<Integer, String> parts = new ConcurrentHashMap<>();
+    when(client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+        .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload").build());
+    when(client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+        .thenAnswer(answer -> {
+          UploadPartRequest request = answer.getArgument(0);
+          RequestBody requestBody = answer.getArgument(1);
+          parts.put(request.partNumber(),
+              new String(requestBody.contentStreamProvider().newStream().readAllBytes(),
+                  StandardCharsets.UTF_8));
+          return UploadPartResponse.builder().eTag("e" + request.partNumber()).build();
+        });
+    when(client.completeMultipartUpload(any(CompleteMultipartUploadRequest.class)))
+        .thenReturn(CompleteMultipartUploadResponse.builder().eTag("abc").build());
+
+    InputStream inputStream =
+        new ByteArrayInputStream("hello world!!".getBytes(StandardCharsets.UTF_8));
+    objectStorage.putObject(TEST_BUCKET, TEST_OBJECT_KEY, inputStream, 11);
+
+    assertEquals(Map.of(1, "hell", 2, "o wo", 3, "rld"), parts);
+    assertEquals(3, executed.get());
+    assertEquals("!!", new String(inputStream.readAllBytes(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void testPutObjectKnownLengthMultipartTooShort() {
+    objectStorage = new AwsObjectStorage(client, 4, 2);
+    when(client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+        .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload").build());
+    when(client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+        .thenReturn(UploadPartResponse.builder().eTag("e").build());
+
+    IllegalStateException e = assertThrows(IllegalStateException.class,
+        () -> objectStorage.putObject(TEST_BUCKET, TEST_OBJECT_KEY,
+            new ByteArrayInputStream("hello world".getBytes(StandardCharsets.UTF_8)), 12));
+
+    assertEquals("Object s3://example/prefix/test.txt ended after 11 of 12 bytes",
+        e.getMessage());
+    verify(client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+    verify(client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+  }
+
+  @Test
+  void testInvalidPartSize() {
+    assertThrows(IllegalArgumentException.class, () -> new AwsObjectStorage(client, 0, 2));
+    assertThrows(IllegalArgumentException.class, () -> new AwsObjectStorage(client, 4, 0));
+  }
+
+  @Test
+  void testGetETag() {
+    when(client.headObject(any(HeadObjectRequest.class)))
+        .thenReturn(HeadObjectResponse.builder().eTag("\"abc\"").build())
+        .thenThrow(NoSuchKeyException.builder().statusCode(404).build());
+
+    assertEquals(Optional.of("\"abc\""), objectStorage.getETag(TEST_BUCKET, TEST_OBJECT_KEY));
+    assertEquals(Optional.empty(), objectStorage.getETag(TEST_BUCKET, TEST_OBJECT_KEY));
+  }
+
   @Test
   void testDeleteObject() {
     objectStorage.deleteObject(TEST_BUCKET, TEST_OBJECT_KEY);
@@ -124,4 +318,5 @@ class AwsObjectStorageTest {
     assertEquals(TEST_BUCKET, request.bucket());
     assertEquals(TEST_OBJECT_KEY, request.key());
   }
+
 }
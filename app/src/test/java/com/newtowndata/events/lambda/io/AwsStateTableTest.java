@@ -14,13 +14,27 @@
 package com.newtowndata.events.lambda.io;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -29,10 +43,17 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
 import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
-import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.DeleteRequest;
 import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
 import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValue;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
 
 @ExtendWith(MockitoExtension.class)
 class AwsStateTableTest {
@@ -53,7 +74,172 @@ class AwsStateTableTest {
   }
 
   @Test
-  void testDeleteState() {
+  void testCompleteWithLegacyRowsInChunks() {
+    AwsStateTable legacyStateTable =
+        new AwsStateTable(TEST_TABLE, client, false, Duration.ZERO, true);
+    when(client.updateItem(any(UpdateItemRequest.class)))
+        .thenReturn(UpdateItemResponse.builder().build());
+    when(client.query(any(QueryRequest.class))).thenReturn(QueryResponse.builder()
+        .items(IntStream.range(0, 30).mapToObj(i -> Map.of("app_key",
+            AttributeValue.fromS(TEST_KEY), "app_state", AttributeValue.fromS("state-" + i)))
+            .toList())
+        .build());
+    when(client.batchWriteItem(any(BatchWriteItemRequest.class)))
+        .thenReturn(BatchWriteItemResponse.builder().build());
+
+    assertTrue(legacyStateTable.complete(TEST_KEY));
+
+    ArgumentCaptor<BatchWriteItemRequest> argumentCaptor =
+        ArgumentCaptor.forClass(BatchWriteItemRequest.class);
+    verify(client, times(2)).batchWriteItem(argumentCaptor.capture());
+
+    List<BatchWriteItemRequest> requests = argumentCaptor.getAllValues();
+    assertEquals(25, requests.get(0).requestItems().get(TEST_TABLE).size());
+    assertEquals(5, requests.get(1).requestItems().get(TEST_TABLE).size());
+  }
+
+  @Test
+  void testCompleteWithSingleLegacyRow() {
+    AwsStateTable legacyStateTable =
+        new AwsStateTable(TEST_TABLE, client, false, Duration.ZERO, true);
+    when(client.updateItem(any(UpdateItemRequest.class)))
+        .thenReturn(UpdateItemResponse.builder().build());
+    when(client.query(any(QueryRequest.class))).thenReturn(QueryResponse.builder()
+        .items(List.of(
+            Map.of("app_key", AttributeValue.fromS(TEST_KEY), "app_state",
+                AttributeValue.fromS("#states")),
+            Map.of("app_key", AttributeValue.fromS(TEST_KEY), "app_state",
+                AttributeValue.fromS(TEST_STATE_1))))
+        .build());
+
+    assertTrue(legacyStateTable.complete(TEST_KEY));
+
+    ArgumentCaptor<DeleteItemRequest> argumentCaptor =
+        ArgumentCaptor.forClass(DeleteItemRequest.class);
+    verify(client, times(1)).deleteItem(argumentCaptor.capture());
+    assertEquals(Map.of("app_key", AttributeValue.fromS(TEST_KEY), "app_state",
+        AttributeValue.fromS(TEST_STATE_1)), argumentCaptor.getValue().key());
+  }
+
+  @Test
+  void testAddStatesAndCompleteWithLegacyRows() {
+    AwsStateTable legacyStateTable =
+        new AwsStateTable(TEST_TABLE, client, false, Duration.ZERO, true);
+    when(client.updateItem(any(UpdateItemRequest.class))).thenReturn(UpdateItemResponse.builder()
+        .attributes(Map.of("app_states", AttributeValue.fromSs(List.of(TEST_STATE_1)))).build());
+    when(client.batchWriteItem(any(BatchWriteItemRequest.class)))
+        .thenReturn(BatchWriteItemResponse.builder().build());
+
+    assertTrue(legacyStateTable.addStatesAndComplete(TEST_KEY, Set.of(TEST_STATE_2),
+        Set.of(TEST_STATE_1, TEST_STATE_2)));
+
+    // the rows are keyed by the required states, so they are not queried
+    verify(client, never()).query(any(QueryRequest.class));
+    ArgumentCaptor<BatchWriteItemRequest> argumentCaptor =
+        ArgumentCaptor.forClass(BatchWriteItemRequest.class);
+    verify(client, times(1)).batchWriteItem(argumentCaptor.capture());
+    assertEquals(Set.of(TEST_STATE_1, TEST_STATE_2), argumentCaptor.getValue().requestItems()
+        .get(TEST_TABLE).stream().map(request -> request.deleteRequest().key().get("app_state").s())
+        .collect(Collectors.toSet()));
+  }
+
+  @Test
+  void testLegacyDeleteRetriesUnprocessedItems() {
+    AwsStateTable legacyStateTable =
+        new AwsStateTable(TEST_TABLE, client, false, Duration.ZERO, true);
+    when(client.updateItem(any(UpdateItemRequest.class)))
+        .thenReturn(UpdateItemResponse.builder().build());
+    WriteRequest unprocessed = WriteRequest.builder()
+        .deleteRequest(DeleteRequest.builder().key(Map.of("app_key",
+            AttributeValue.fromS(TEST_KEY), "app_state", AttributeValue.fromS(TEST_STATE_2)))
+            .build())
+        .build();
+    when(client.batchWriteItem(any(BatchWriteItemRequest.class)))
+        .thenReturn(BatchWriteItemResponse.builder()
+            .unprocessedItems(Map.of(TEST_TABLE, List.of(unprocessed))).build())
+        .thenReturn(BatchWriteItemResponse.builder().build());
+    mockLegacyRows();
+
+    assertTrue(legacyStateTable.complete(TEST_KEY));
+
+    ArgumentCaptor<BatchWriteItemRequest> argumentCaptor =
+        ArgumentCaptor.forClass(BatchWriteItemRequest.class);
+    verify(client, times(2)).batchWriteItem(argumentCaptor.capture());
+    assertEquals(List.of(unprocessed),
+        argumentCaptor.getAllValues().get(1).requestItems().get(TEST_TABLE));
+  }
+
+  @Test
+  void testLegacyDeleteRetriesExhausted() {
+    AwsStateTable legacyStateTable =
+        new AwsStateTable(TEST_TABLE, client, false, Duration.ZERO, true);
+    when(client.updateItem(any(UpdateItemRequest.class)))
+        .thenReturn(UpdateItemResponse.builder().build());
+    WriteRequest unprocessed = WriteRequest.builder()
+        .deleteRequest(DeleteRequest.builder().key(Map.of("app_key",
+            AttributeValue.fromS(TEST_KEY), "app_state", AttributeValue.fromS(TEST_STATE_2)))
+            .build())
+        .build();
+    when(client.batchWriteItem(any(BatchWriteItemRequest.class))).thenReturn(
+        BatchWriteItemResponse.builder().unprocessedItems(Map.of(TEST_TABLE, List.of(unprocessed)))
+            .build());
+    mockLegacyRows();
+
+    assertThrows(IllegalStateException.class, () -> legacyStateTable.complete(TEST_KEY));
+    verify(client, times(AwsStateTable.MAX_BATCH_ATTEMPTS))
+        .batchWriteItem(any(BatchWriteItemRequest.class));
+  }
+
+  @Test
+  void testLegacyDeleteAsync() {
+    AwsStateTable asyncStateTable =
+        new AwsStateTable(TEST_TABLE, client, true, Duration.ZERO, true);
+    when(client.updateItem(any(UpdateItemRequest.class)))
+        .thenReturn(UpdateItemResponse.builder().build());
+    when(client.batchWriteItem(any(BatchWriteItemRequest.class)))
+        .thenReturn(BatchWriteItemResponse.builder().build());
+    mockLegacyRows();
+
+    assertTrue(asyncStateTable.complete(TEST_KEY));
+    asyncStateTable.flush();
+
+    verify(client, times(1)).batchWriteItem(any(BatchWriteItemRequest.class));
+  }
+
+  @Test
+  void testLegacyDeleteAsyncFailure() {
+    AwsStateTable asyncStateTable =
+        new AwsStateTable(TEST_TABLE, client, true, Duration.ZERO, true);
+    when(client.updateItem(any(UpdateItemRequest.class)))
+        .thenReturn(UpdateItemResponse.builder().build());
+    when(client.batchWriteItem(any(BatchWriteItemRequest.class)))
+        .thenThrow(new IllegalStateException("test"));
+    mockLegacyRows();
+
+    assertTrue(asyncStateTable.complete(TEST_KEY));
+    asyncStateTable.flush();
+
+    verify(client, times(1)).batchWriteItem(any(BatchWriteItemRequest.class));
+  }
+
+  @Test
+  void testCloseWaitsForLegacyDeletes() {
+    AwsStateTable asyncStateTable =
+        new AwsStateTable(TEST_TABLE, client, true, Duration.ZERO, true);
+    when(client.updateItem(any(UpdateItemRequest.class)))
+        .thenReturn(UpdateItemResponse.builder().build());
+    when(client.batchWriteItem(any(BatchWriteItemRequest.class)))
+        .thenReturn(BatchWriteItemResponse.builder().build());
+    mockLegacyRows();
+
+    assertTrue(asyncStateTable.complete(TEST_KEY));
+    asyncStateTable.close();
+
+    verify(client, times(1)).batchWriteItem(any(BatchWriteItemRequest.class));
+  }
+
+  @Test
+  void testGetStates() {
     when(client.query(any(QueryRequest.class))).thenReturn(
       QueryResponse.builder().items(
         List.of(
@@ -67,31 +253,30 @@ class AwsStateTableTest {
           )
         )
       ).build());
-    
-    stateTable.deleteState(TEST_KEY);
 
-    ArgumentCaptor<DeleteItemRequest> argumentCaptor = ArgumentCaptor.forClass(DeleteItemRequest.class);
-    verify(client, times(2)).deleteItem(argumentCaptor.capture());
+    Set<String> states = stateTable.getStates(TEST_KEY);
+    assertEquals(Set.of(TEST_STATE_1, TEST_STATE_2), states);
 
-    DeleteItemRequest request1 = argumentCaptor.getAllValues().get(0);
-    assertEquals(TEST_TABLE, request1.tableName());
-    assertEquals(Map.of("app_key", AttributeValue.fromS(TEST_KEY), "app_state",
-        AttributeValue.fromS(TEST_STATE_1)), request1.key());
+    ArgumentCaptor<QueryRequest> argumentCaptor = ArgumentCaptor.forClass(QueryRequest.class);
+    verify(client, times(1)).query(argumentCaptor.capture());
 
-    DeleteItemRequest request2 = argumentCaptor.getAllValues().get(1);
-    assertEquals(TEST_TABLE, request2.tableName());
-    assertEquals(Map.of("app_key", AttributeValue.fromS(TEST_KEY), "app_state",
-        AttributeValue.fromS(TEST_STATE_2)), request2.key());
+    QueryRequest request = argumentCaptor.getValue();
+
+    assertEquals(TEST_TABLE, request.tableName());
+    assertEquals("app_key = :app_key", request.keyConditionExpression());
+    assertEquals(Map.of(":app_key", AttributeValue.fromS(TEST_KEY)),
+      request.expressionAttributeValues());
   }
 
   @Test
-  void testGetStates() {
+  void testGetStatesWithStateSet() {
     when(client.query(any(QueryRequest.class))).thenReturn(
       QueryResponse.builder().items(
         List.of(
           Map.of(
             "app_key", AttributeValue.fromS(TEST_KEY),
-            "app_state",AttributeValue.fromS(TEST_STATE_1)
+            "app_state", AttributeValue.fromS("#states"),
+            "app_states", AttributeValue.fromSs(List.of(TEST_STATE_1))
           ),
           Map.of(
             "app_key", AttributeValue.fromS(TEST_KEY),
@@ -100,39 +285,259 @@ class AwsStateTableTest {
         )
       ).build());
 
-    Set<String> states = stateTable.getStates(TEST_KEY);
-    assertEquals(Set.of(TEST_STATE_1, TEST_STATE_2), states);
+    assertEquals(Set.of(TEST_STATE_1, TEST_STATE_2), stateTable.getStates(TEST_KEY));
+  }
 
-    ArgumentCaptor<QueryRequest> argumentCaptor = ArgumentCaptor.forClass(QueryRequest.class);
-    verify(client, times(1)).query(argumentCaptor.capture());
+  @Test
+  void testAddState() {
+    when(client.updateItem(any(UpdateItemRequest.class))).thenReturn(UpdateItemResponse.builder()
+        .attributes(Map.of("app_key", AttributeValue.fromS(TEST_KEY), "app_state",
+            AttributeValue.fromS("#states"), "app_states",
+            AttributeValue.fromSs(List.of(TEST_STATE_1, TEST_STATE_2))))
+        .build());
 
-    QueryRequest request = argumentCaptor.getValue();
+    Set<String> states = stateTable.addStates(TEST_KEY, Set.of(TEST_STATE_2));
+    assertEquals(Set.of(TEST_STATE_1, TEST_STATE_2), states);
 
+    ArgumentCaptor<UpdateItemRequest> argumentCaptor =
+        ArgumentCaptor.forClass(UpdateItemRequest.class);
+    verify(client, times(1)).updateItem(argumentCaptor.capture());
+
+    UpdateItemRequest request = argumentCaptor.getValue();
     assertEquals(TEST_TABLE, request.tableName());
-    assertEquals("app_key = :app_key", request.keyConditionExpression());
-    assertEquals(Map.of(":app_key", AttributeValue.fromS(TEST_KEY)),
-      request.expressionAttributeValues());
+    assertEquals(Map.of("app_key", AttributeValue.fromS(TEST_KEY), "app_state",
+        AttributeValue.fromS("#states")), request.key());
+    assertEquals("ADD app_states :app_states", request.updateExpression());
+    assertEquals("attribute_not_exists(app_completed)", request.conditionExpression());
+    assertEquals(Map.of(":app_states", AttributeValue.fromSs(List.of(TEST_STATE_2))),
+        request.expressionAttributeValues());
+    assertEquals(ReturnValue.ALL_NEW, request.returnValues());
   }
 
   @Test
-  void testGetStatesNoItems() {
-    when(client.query(any(QueryRequest.class))).thenReturn(QueryResponse.builder().build());
+  void testAddStatesAfterComplete() {
+    when(client.updateItem(any(UpdateItemRequest.class)))
+        .thenThrow(ConditionalCheckFailedException.builder().message("test").build());
 
-    Set<String> states = stateTable.getStates(TEST_KEY);
-    assertEquals(Set.of(), states);
+    assertEquals(Set.of(), stateTable.addStates(TEST_KEY, Set.of(TEST_STATE_1)));
+    assertEquals(0L, stateTable.addBits(TEST_KEY, 1L));
   }
 
   @Test
-  void testPutState() {
-    stateTable.putState(TEST_KEY, TEST_STATE_1);
+  void testAddStates() {
+    when(client.updateItem(any(UpdateItemRequest.class))).thenReturn(UpdateItemResponse.builder()
+        .attributes(
+            Map.of("app_states", AttributeValue.fromSs(List.of(TEST_STATE_1, TEST_STATE_2))))
+        .build());
 
-    ArgumentCaptor<PutItemRequest> argumentCaptor = ArgumentCaptor.forClass(PutItemRequest.class);
-    verify(client, times(1)).putItem(argumentCaptor.capture());
+    assertEquals(Set.of(TEST_STATE_1, TEST_STATE_2),
+        stateTable.addStates(TEST_KEY, Set.of(TEST_STATE_1, TEST_STATE_2)));
 
-    PutItemRequest request = argumentCaptor.getValue();
+    ArgumentCaptor<UpdateItemRequest> argumentCaptor =
+        ArgumentCaptor.forClass(UpdateItemRequest.class);
+    verify(client, times(1)).updateItem(argumentCaptor.capture());
+    assertEquals(Set.of(TEST_STATE_1, TEST_STATE_2),
+        Set.copyOf(argumentCaptor.getValue().expressionAttributeValues().get(":app_states").ss()));
+  }
 
-    assertEquals(TEST_TABLE, request.tableName());
+  @Test
+  void testAddBits() {
+    when(client.updateItem(any(UpdateItemRequest.class))).thenReturn(UpdateItemResponse.builder()
+        .attributes(Map.of("app_key", AttributeValue.fromS(TEST_KEY), "app_state",
+            AttributeValue.fromS("#states"), "app_bits", AttributeValue.fromNs(List.of("0", "2",
+                "63"))))
+        .build());
+
+    assertEquals(5L | Long.MIN_VALUE, stateTable.addBits(TEST_KEY, 5L));
+
+    ArgumentCaptor<UpdateItemRequest> argumentCaptor =
+        ArgumentCaptor.forClass(UpdateItemRequest.class);
+    verify(client, times(1)).updateItem(argumentCaptor.capture());
+
+    UpdateItemRequest request = argumentCaptor.getValue();
+    assertEquals(Map.of("app_key", AttributeValue.fromS(TEST_KEY), "app_state",
+        AttributeValue.fromS("#states")), request.key());
+    assertEquals("ADD app_bits :app_bits", request.updateExpression());
+    assertEquals("attribute_not_exists(app_completed)", request.conditionExpression());
+    assertEquals(Map.of(":app_bits", AttributeValue.fromNs(List.of("0", "2"))),
+        request.expressionAttributeValues());
+    assertEquals(ReturnValue.ALL_NEW, request.returnValues());
+  }
+
+  @Test
+  void testComplete() {
+    when(client.updateItem(any(UpdateItemRequest.class)))
+        .thenReturn(UpdateItemResponse.builder().build());
+
+    assertTrue(stateTable.complete(TEST_KEY));
+
+    ArgumentCaptor<UpdateItemRequest> argumentCaptor =
+        ArgumentCaptor.forClass(UpdateItemRequest.class);
+    verify(client, times(1)).updateItem(argumentCaptor.capture());
+    verify(client, never()).query(any(QueryRequest.class));
+    verify(client, never()).batchWriteItem(any(BatchWriteItemRequest.class));
+
+    UpdateItemRequest request = argumentCaptor.getValue();
     assertEquals(Map.of("app_key", AttributeValue.fromS(TEST_KEY), "app_state",
-        AttributeValue.fromS(TEST_STATE_1)), request.item());
+        AttributeValue.fromS("#states")), request.key());
+    assertEquals("SET app_completed = :app_completed REMOVE app_states, app_bits",
+        request.updateExpression());
+    assertEquals("attribute_not_exists(app_completed)", request.conditionExpression());
+  }
+
+  @Test
+  void testCompleteAlreadyCompleted() {
+    when(client.updateItem(any(UpdateItemRequest.class)))
+        .thenThrow(ConditionalCheckFailedException.builder().message("test").build());
+
+    assertFalse(stateTable.complete(TEST_KEY));
   }
+
+  @Test
+  void testAddStatesAndComplete() {
+    when(client.updateItem(any(UpdateItemRequest.class)))
+        .thenReturn(UpdateItemResponse.builder().build())
+        .thenReturn(UpdateItemResponse.builder()
+            .attributes(Map.of("app_states", AttributeValue.fromSs(List.of(TEST_STATE_1))))
+            .build())
+        .thenReturn(UpdateItemResponse.builder()
+            .attributes(Map.of("app_states",
+                AttributeValue.fromSs(List.of(TEST_STATE_1, TEST_STATE_2))))
+            .build());
+    Set<String> required = Set.of(TEST_STATE_1, TEST_STATE_2);
+
+    assertFalse(stateTable.addStateAndComplete(TEST_KEY, TEST_STATE_1, required));
+    assertTrue(stateTable.addStateAndComplete(TEST_KEY, TEST_STATE_2, required));
+    // a duplicate delivery after the completion
+    assertFalse(stateTable.addStateAndComplete(TEST_KEY, TEST_STATE_2, required));
+
+    ArgumentCaptor<UpdateItemRequest> argumentCaptor =
+        ArgumentCaptor.forClass(UpdateItemRequest.class);
+    verify(client, times(3)).updateItem(argumentCaptor.capture());
+    verify(client, never()).batchWriteItem(any(BatchWriteItemRequest.class));
+
+    UpdateItemRequest request = argumentCaptor.getValue();
+    assertEquals("ADD app_states :app_states", request.updateExpression());
+    assertEquals("attribute_not_exists(app_completed)", request.conditionExpression());
+    assertEquals(ReturnValue.UPDATED_OLD, request.returnValues());
+  }
+
+  @Test
+  void testAddStatesAndCompleteAfterComplete() {
+    when(client.updateItem(any(UpdateItemRequest.class)))
+        .thenThrow(ConditionalCheckFailedException.builder().message("test").build());
+
+    assertFalse(stateTable.addStatesAndComplete(TEST_KEY, Set.of(TEST_STATE_1),
+        Set.of(TEST_STATE_1)));
+  }
+
+  @Test
+  void testConcurrentAddStatesAndComplete() throws Exception {
+    // updates of a row are serialized, each caller sees the states of the callers before it
+    Set<String> stored = ConcurrentHashMap.newKeySet();
+    when(client.updateItem(any(UpdateItemRequest.class))).thenAnswer(answer -> {
+      UpdateItemRequest request = answer.getArgument(0);
+      synchronized (stored) {
+        UpdateItemResponse.Builder response = UpdateItemResponse.builder();
+        if (!stored.isEmpty()) {
+          response.attributes(Map.of("app_states", AttributeValue.fromSs(List.copyOf(stored))));
+        }
+        stored.addAll(request.expressionAttributeValues().get(":app_states").ss());
+        return response.build();
+      }
+    });
+
+    Set<String> required = Set.of(TEST_STATE_1, TEST_STATE_2);
+    Callable<Boolean> first =
+        () -> stateTable.addStatesAndComplete(TEST_KEY, Set.of(TEST_STATE_1), required);
+    Callable<Boolean> second =
+        () -> stateTable.addStatesAndComplete(TEST_KEY, Set.of(TEST_STATE_2), required);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Boolean>> futures = executor.invokeAll(List.of(first, second, first, second,
+          first, second, first, second));
+      int completed = 0;
+      for (Future<Boolean> future : futures) {
+        completed += future.get(30, TimeUnit.SECONDS) ? 1 : 0;
+      }
+      assertEquals(1, completed);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void testAddNoBits() {
+    assertThrows(IllegalArgumentException.class, () -> stateTable.addBits(TEST_KEY, 0L));
+  }
+
+  @Test
+  void testAddStateWithTtl() {
+    AwsStateTable ttlStateTable =
+        new AwsStateTable(TEST_TABLE, client, false, Duration.ofHours(1), false);
+    when(client.updateItem(any(UpdateItemRequest.class))).thenReturn(UpdateItemResponse.builder()
+        .attributes(Map.of("app_states", AttributeValue.fromSs(List.of(TEST_STATE_1)))).build());
+    long now = Instant.now().getEpochSecond();
+
+    ttlStateTable.addStates(TEST_KEY, Set.of(TEST_STATE_1));
+
+    ArgumentCaptor<UpdateItemRequest> argumentCaptor =
+        ArgumentCaptor.forClass(UpdateItemRequest.class);
+    verify(client, times(1)).updateItem(argumentCaptor.capture());
+
+    UpdateItemRequest request = argumentCaptor.getValue();
+    assertEquals("ADD app_states :app_states SET expires_at = :expires_at",
+        request.updateExpression());
+    assertExpiresAt(now + 3600, request.expressionAttributeValues().get(":expires_at"));
+  }
+
+  @Test
+  void testCompleteWithTtl() {
+    AwsStateTable ttlStateTable =
+        new AwsStateTable(TEST_TABLE, client, false, Duration.ofHours(1), false);
+    when(client.updateItem(any(UpdateItemRequest.class)))
+        .thenReturn(UpdateItemResponse.builder().build());
+    long now = Instant.now().getEpochSecond();
+
+    assertTrue(ttlStateTable.complete(TEST_KEY));
+
+    ArgumentCaptor<UpdateItemRequest> argumentCaptor =
+        ArgumentCaptor.forClass(UpdateItemRequest.class);
+    verify(client, times(1)).updateItem(argumentCaptor.capture());
+
+    UpdateItemRequest request = argumentCaptor.getValue();
+    assertEquals("SET app_completed = :app_completed, expires_at = :expires_at"
+        + " REMOVE app_states, app_bits", request.updateExpression());
+    assertExpiresAt(now + 3600, request.expressionAttributeValues().get(":expires_at"));
+  }
+
+  @Test
+  void testNegativeTtl() {
+    assertThrows(IllegalArgumentException.class,
+        () -> new AwsStateTable(TEST_TABLE, client, false, Duration.ofSeconds(-1), false));
+  }
+
+  private void mockLegacyRows() {
+    when(client.query(any(QueryRequest.class))).thenReturn(QueryResponse.builder()
+        .items(List.of(
+            Map.of("app_key", AttributeValue.fromS(TEST_KEY), "app_state",
+                AttributeValue.fromS(TEST_STATE_1)),
+            Map.of("app_key", AttributeValue.fromS(TEST_KEY), "app_state",
+                AttributeValue.fromS(TEST_STATE_2))))
+        .build());
+  }
+
+  private static void assertExpiresAt(long expected, AttributeValue value) {
+    long expiresAt = Long.parseLong(value.n());
+    assertTrue(expiresAt >= expected && expiresAt <= expected + 5, value.n());
+  }
+
+  @Test
+  void testGetStatesNoItems() {
+    when(client.query(any(QueryRequest.class))).thenReturn(QueryResponse.builder().build());
+
+    Set<String> states = stateTable.getStates(TEST_KEY);
+    assertEquals(Set.of(), states);
+  }
+
 }
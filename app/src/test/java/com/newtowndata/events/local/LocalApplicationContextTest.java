@@ -14,11 +14,14 @@
 package com.newtowndata.events.local;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import com.newtowndata.events.core.ApplicationConstants;
 import com.newtowndata.events.core.ApplicationEvent;
 import com.newtowndata.events.core.StateContext;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
@@ -39,12 +42,51 @@ class LocalApplicationContextTest {
   }
 
   @Test
-  void testEventProducer() {
+  void testEventProducer() throws InterruptedException {
     ApplicationEvent start = ApplicationEvent.ofStart(10, "test",
         Map.of(ApplicationConstants.ATTRIBUTE_WAIT_TIME_IN_SEC, "1"));
     LocalApplicationContext context = new LocalApplicationContext(stateContext, start);
-    ApplicationEvent event = context.consumeEvent().get();
+    assertTrue(context.consumeEvent(0, TimeUnit.SECONDS).isEmpty());
+    ApplicationEvent event = context.consumeEvent(5, TimeUnit.SECONDS).get();
     assertEquals(Map.of(), event.attributes());
+    context.completeEvent();
+    assertTrue(context.isIdle());
+  }
+
+  @Test
+  void testDelayedEventDoesNotBlockOthers() throws InterruptedException {
+    ApplicationEvent delayed = ApplicationEvent.ofStart(10, "delayed",
+        Map.of(ApplicationConstants.ATTRIBUTE_WAIT_TIME_IN_SEC, "1"));
+    LocalApplicationContext context = new LocalApplicationContext(stateContext, delayed);
+    context.eventPublisher().publishEvent(ApplicationEvent.ofStart(10, "first", Map.of()));
+    context.eventPublisher().publishEvent(ApplicationEvent.ofStart(10, "second", Map.of()));
+
+    assertEquals("first", context.consumeEvent(0, TimeUnit.SECONDS).get().targetState());
+    assertEquals("second", context.consumeEvent(0, TimeUnit.SECONDS).get().targetState());
+    assertTrue(context.consumeEvent(0, TimeUnit.SECONDS).isEmpty());
+    assertEquals("delayed", context.consumeEvent(5, TimeUnit.SECONDS).get().targetState());
+  }
+
+  @Test
+  void testPendingEvents() throws InterruptedException {
+    ApplicationEvent start = ApplicationEvent.ofStart(10, "test", Map.of());
+    LocalApplicationContext context = new LocalApplicationContext(stateContext, start);
+    assertFalse(context.isIdle());
+
+    ApplicationEvent event = context.consumeEvent(1, TimeUnit.SECONDS).get();
+    assertEquals(start, event);
+    assertFalse(context.isIdle());
+
+    context.eventPublisher().publishEvent(ApplicationEvent.ofStart(10, "next", Map.of()));
+    context.completeEvent();
+    assertFalse(context.isIdle());
+
+    assertEquals("next", context.consumeEvent(1, TimeUnit.SECONDS).get().targetState());
+    context.completeEvent();
+    assertTrue(context.isIdle());
+    assertTrue(context.consumeEvent(1, TimeUnit.MILLISECONDS).isEmpty());
+
+    assertThrows(IllegalStateException.class, context::completeEvent);
   }
 
 }
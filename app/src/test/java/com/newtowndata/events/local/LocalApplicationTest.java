@@ -16,12 +16,14 @@ package com.newtowndata.events.local;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import com.newtowndata.events.core.ApplicationEvent;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Map;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
@@ -58,6 +60,29 @@ class LocalApplicationTest {
         "Hello Amy", Files.readString(resultPath, StandardCharsets.UTF_8));
   }
 
+  @Test
+  void testRunWithWorkers() throws IOException {
+    ApplicationEvent initialEvent;
+    try (InputStream isr = LocalApplicationTest.class.getResourceAsStream("test-event.json")) {
+      initialEvent = LocalApplication.loadEventFromStream(isr);
+    }
+
+    LocalApplication.run(objectStorageRoot, initialEvent, 4);
+
+    Path resultPath = Paths.get(objectStorageRoot.toString(), "example", "hi_all.txt");
+    assertTrue(Files.exists(resultPath), resultPath.toString());
+
+    assertEquals("Hello John\n" + //
+        "Hello Alice\n" + //
+        "Hello Amy", Files.readString(resultPath, StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void testRunInvalidWorkerCount() {
+    assertThrows(IllegalArgumentException.class, () -> LocalApplication.run(objectStorageRoot,
+        ApplicationEvent.ofStart(10, "hello:input", Map.of()), 0));
+  }
+
   @Test
   void testMainInvalidArguments() throws IOException {
     assertThrows(IllegalArgumentException.class, () -> LocalApplication.main(new String[0]));
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2023-2024 Voyta Krizek, https://github.com/NewTownData
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.newtowndata.events.local;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import com.newtowndata.events.core.io.CachingObjectStorage;
+import com.newtowndata.events.local.io.LocalObjectStorage;
+import com.newtowndata.events.local.io.LocalStateTable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LocalStateContextTest {
+
+  private static final String TEST_STORAGE = "test";
+  private static final String TEST_PATH = "a.txt";
+
+  @TempDir
+  Path objectStorageRoot;
+
+  @Test
+  void asyncReadFromCache() throws IOException {
+    LocalStateContext context = LocalStateContext.of(new LocalObjectStorage(objectStorageRoot))
+        .withStateTable(new LocalStateTable()).withObjectCache(1024).build();
+    CachingObjectStorage cache =
+        assertInstanceOf(CachingObjectStorage.class, context.objectStorage());
+
+    context.objectStorage().putObject(TEST_STORAGE, TEST_PATH, "abc");
+    assertEquals("abc", context.objectStorage().getObjectAsString(TEST_STORAGE, TEST_PATH));
+    long hits = cache.getHitCount();
+
+    // only the cache has the object now
+    Files.delete(objectStorageRoot.resolve(TEST_STORAGE).resolve(TEST_PATH));
+    assertEquals("abc",
+        context.asyncObjectStorage().getObjectAsString(TEST_STORAGE, TEST_PATH).join());
+    assertEquals(hits + 1, cache.getHitCount());
+  }
+
+}
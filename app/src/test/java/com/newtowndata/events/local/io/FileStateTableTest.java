@@ -0,0 +1,277 @@
+/*
+ * Copyright 2023-2024 Voyta Krizek, https://github.com/NewTownData
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.newtowndata.events.local.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileStateTableTest {
+
+  private static final String TEST_STATE = "testState";
+  private static final String STATE_A = "a";
+  private static final String STATE_B = "b";
+  private static final Duration TTL = Duration.ofSeconds(10);
+  private static final int SEGMENT_SIZE = 256 * 1024;
+
+  @TempDir
+  Path directory;
+
+  private final AtomicLong clock = new AtomicLong(1_000_000L);
+
+  @Test
+  void lifecycleTest() {
+    try (FileStateTable table = open()) {
+      assertEquals(Set.of(), table.getStates(TEST_STATE));
+
+      assertEquals(Set.of(STATE_A), table.addStates(TEST_STATE, Set.of(STATE_A)));
+      assertEquals(Set.of(STATE_A, STATE_B), table.addStates(TEST_STATE, Set.of(STATE_B)));
+      assertEquals(Set.of(STATE_A, STATE_B), table.getStates(TEST_STATE));
+
+      assertTrue(table.complete(TEST_STATE));
+      assertEquals(Set.of(), table.getStates(TEST_STATE));
+      // a completed key takes no more states or bits
+      assertEquals(Set.of(), table.addStates(TEST_STATE, Set.of(STATE_A)));
+      assertEquals(0L, table.addBits(TEST_STATE, 1L));
+      assertEquals(Set.of(), table.getStates(TEST_STATE));
+
+      assertEquals(1L, table.addBits("bits", 1L));
+      assertEquals(5L, table.addBits("bits", 4L));
+      assertThrows(IllegalArgumentException.class, () -> table.addBits("bits", 0L));
+    }
+  }
+
+  @Test
+  void recoveryTest() {
+    try (FileStateTable table = open()) {
+      table.addStates("key1", Set.of(STATE_A));
+      table.addStates("key1", Set.of(STATE_B));
+      table.addStates("key2", Set.of(STATE_A));
+      assertTrue(table.complete("key2"));
+      table.addBits("bits", 1L);
+      table.addBits("bits", 2L);
+      assertFalse(table.addStateAndComplete("join", STATE_A, Set.of(STATE_A, STATE_B)));
+      assertTrue(table.addStateAndComplete("completed", STATE_A, Set.of(STATE_A)));
+    }
+
+    try (FileStateTable table = open()) {
+      assertEquals(Set.of(STATE_A, STATE_B), table.getStates("key1"));
+      assertEquals(Set.of(), table.getStates("key2"));
+      assertEquals(7L, table.addBits("bits", 4L));
+      assertTrue(table.addStateAndComplete("join", STATE_B, Set.of(STATE_A, STATE_B)));
+      assertEquals(Set.of(), table.getStates("completed"));
+      // completion markers are recovered
+      assertFalse(table.addStateAndComplete("completed", STATE_A, Set.of(STATE_A)));
+      assertFalse(table.complete("join"));
+      assertFalse(table.complete("key2"));
+      assertEquals(5, table.size());
+    }
+  }
+
+  @Test
+  void expiryTest() {
+    try (FileStateTable table = open()) {
+      table.addStates(TEST_STATE, Set.of(STATE_A));
+      table.addStates("fresh", Set.of(STATE_A));
+      clock.addAndGet(TimeUnit.SECONDS.toMillis(11));
+      assertEquals(Set.of(), table.getStates(TEST_STATE));
+      table.addStates(TEST_STATE, Set.of(STATE_B));
+      assertEquals(Set.of(STATE_B), table.getStates(TEST_STATE));
+      assertEquals(1, table.sweep());
+    }
+
+    try (FileStateTable table = open()) {
+      assertEquals(Set.of(STATE_B), table.getStates(TEST_STATE));
+      assertEquals(1, table.size());
+    }
+  }
+
+  @Test
+  void compactionTest() {
+    try (FileStateTable table = open()) {
+      for (int i = 0; i < 50_000; i++) {
+        table.addStates("key" + (i % 100), Set.of("state" + (i % 3)));
+        table.addBits("key" + (i % 100), 1L << (i % 5));
+      }
+      assertTrue(table.segmentCount() <= 3, "segments: " + table.segmentCount());
+      assertEquals(100, table.size());
+    }
+
+    try (FileStateTable table = open()) {
+      assertEquals(100, table.size());
+      assertEquals(Set.of("state0", "state1", "state2"), table.getStates("key7"));
+    }
+  }
+
+  @Test
+  void incompleteRecordTest() throws IOException {
+    try (FileStateTable table = open()) {
+      table.addStates(TEST_STATE, Set.of(STATE_A));
+      table.addStates(TEST_STATE, Set.of(STATE_B));
+    }
+
+    Path segment = segments().get(0);
+    ByteBuffer content = ByteBuffer.wrap(Files.readAllBytes(segment));
+    int end = 0;
+    while (content.getInt(end) != 0) {
+      end += 2 * Integer.BYTES + content.getInt(end);
+    }
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+      // corrupt the last byte of the second record
+      channel.write(ByteBuffer.wrap(new byte[] {(byte) ~content.get(end - 1)}), end - 1);
+    }
+
+    try (FileStateTable table = open()) {
+      assertEquals(Set.of(STATE_A), table.getStates(TEST_STATE));
+      table.addStates(TEST_STATE, Set.of(STATE_B));
+    }
+
+    try (FileStateTable table = open()) {
+      assertEquals(Set.of(STATE_A, STATE_B), table.getStates(TEST_STATE));
+    }
+  }
+
+  @Test
+  void invalidSettingsTest() {
+    assertThrows(IllegalArgumentException.class,
+        () -> new FileStateTable(directory, Duration.ZERO, Duration.ZERO));
+    assertThrows(IllegalArgumentException.class,
+        () -> new FileStateTable(directory, TTL, Duration.ofMillis(-1)));
+    assertThrows(IllegalArgumentException.class,
+        () -> new FileStateTable(directory, TTL, Duration.ZERO, 1024, clock::get, false));
+  }
+
+  @Test
+  void concurrentCompleteTest() throws Exception {
+    int traces = 500;
+    List<String> states = List.of(STATE_A, STATE_B, "c", "d");
+    Set<String> required = Set.copyOf(states);
+    AtomicInteger completed = new AtomicInteger();
+
+    try (FileStateTable table = open()) {
+      // every state is delivered twice, like a duplicate SQS message
+      ExecutorService executor = Executors.newFixedThreadPool(2 * states.size());
+      try {
+        List<Future<?>> futures = Stream.concat(states.stream(), states.stream())
+            .map(state -> executor.submit(() -> {
+              for (int trace = 0; trace < traces; trace++) {
+                if (table.addStateAndComplete("trace" + trace, state, required)) {
+                  completed.incrementAndGet();
+                }
+              }
+            })).collect(Collectors.toList());
+        for (Future<?> future : futures) {
+          future.get(30, TimeUnit.SECONDS);
+        }
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+    assertEquals(traces, completed.get());
+
+    try (FileStateTable table = open()) {
+      assertFalse(table.complete("trace0"));
+      assertEquals(traces, table.size());
+    }
+  }
+
+  @Test
+  void concurrentCompactionTest() throws Exception {
+    int writers = 4;
+    int keys = 2_000;
+    AtomicInteger compactions = new AtomicInteger();
+
+    try (FileStateTable table = new FileStateTable(directory, TTL, Duration.ofMillis(100),
+        SEGMENT_SIZE, clock::get, true)) {
+      ExecutorService executor = Executors.newFixedThreadPool(writers + 1);
+      try {
+        List<Future<?>> futures = IntStream.range(0, writers)
+            .mapToObj(writer -> executor.submit(() -> {
+              for (int i = 0; i < keys; i++) {
+                String key = writer + "-" + i;
+                table.addStates(key, Set.of(STATE_A));
+                table.addBits(key, 1L);
+                // completions of keys in segments that are being compacted must not be lost
+                if (i % 2 == 0) {
+                  table.complete(key);
+                } else {
+                  table.addStates(key, Set.of(STATE_B));
+                }
+              }
+            })).collect(Collectors.toList());
+        Future<?> compactor = executor.submit(() -> {
+          while (futures.stream().anyMatch(future -> !future.isDone())) {
+            if (table.compact()) {
+              compactions.incrementAndGet();
+            }
+          }
+        });
+        for (Future<?> future : futures) {
+          future.get(30, TimeUnit.SECONDS);
+        }
+        compactor.get(30, TimeUnit.SECONDS);
+      } finally {
+        executor.shutdownNow();
+      }
+      assertEquals(writers * keys, table.size());
+    }
+    assertTrue(compactions.get() > 0);
+
+    try (FileStateTable table = open()) {
+      assertEquals(writers * keys, table.size());
+      for (int writer = 0; writer < writers; writer++) {
+        for (int i = 0; i < keys; i++) {
+          String key = writer + "-" + i;
+          assertEquals(i % 2 == 0 ? Set.of() : Set.of(STATE_A, STATE_B), table.getStates(key),
+              key);
+        }
+      }
+      assertFalse(table.complete("1-0"), "completion was lost");
+      assertEquals(3L, table.addBits("1-1", 2L));
+    }
+  }
+
+  private FileStateTable open() {
+    return new FileStateTable(directory, TTL, Duration.ofMillis(100), SEGMENT_SIZE, clock::get,
+        false);
+  }
+
+  private List<Path> segments() throws IOException {
+    try (Stream<Path> stream = Files.list(directory)) {
+      return stream.sorted().toList();
+    }
+  }
+
+}
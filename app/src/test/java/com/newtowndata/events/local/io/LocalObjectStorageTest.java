@@ -13,12 +13,24 @@
  */
 package com.newtowndata.events.local.io;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -58,6 +70,105 @@ class LocalObjectStorageTest {
         () -> localObjectStorage.getObjectAsString(TEST_STORAGE, TEST_PATH));
   }
 
+  @Test
+  void bytesTest() {
+    localObjectStorage.putObject(TEST_STORAGE, TEST_PATH, "abc".getBytes(StandardCharsets.UTF_8));
+    assertArrayEquals("abc".getBytes(StandardCharsets.UTF_8),
+        localObjectStorage.getObjectBytes(TEST_STORAGE, TEST_PATH));
+
+    ByteBuffer data = ByteBuffer.wrap("__abc123".getBytes(StandardCharsets.UTF_8)).position(2);
+    localObjectStorage.putObject(TEST_STORAGE, TEST_PATH, data);
+    assertEquals(2, data.position());
+    assertEquals("abc123", StandardCharsets.UTF_8
+        .decode(localObjectStorage.getObjectBuffer(TEST_STORAGE, TEST_PATH)).toString());
+
+    assertThrows(IllegalStateException.class,
+        () -> localObjectStorage.getObjectBytes(TEST_STORAGE, "c.txt"));
+  }
+
+  @Test
+  void getETagTest() {
+    assertEquals(Optional.empty(), localObjectStorage.getETag(TEST_STORAGE, TEST_PATH));
+
+    localObjectStorage.putObject(TEST_STORAGE, TEST_PATH, "abc");
+    Optional<String> eTag = localObjectStorage.getETag(TEST_STORAGE, TEST_PATH);
+    assertEquals(eTag, localObjectStorage.getETag(TEST_STORAGE, TEST_PATH));
+
+    localObjectStorage.putObject(TEST_STORAGE, TEST_PATH, "abc123");
+    assertNotEquals(eTag, localObjectStorage.getETag(TEST_STORAGE, TEST_PATH));
+  }
+
+  @Test
+  void mappedReadTest() throws IOException {
+    LocalObjectStorage mappedStorage =
+        new LocalObjectStorage(objectStorageRoot, LocalObjectStorage.SyncPolicy.NONE, 4);
+    mappedStorage.putObject(TEST_STORAGE, TEST_PATH, "abc");
+    mappedStorage.putObject(TEST_STORAGE, "a/c.txt", "abc123");
+
+    assertFalse(mappedStorage.getObjectBuffer(TEST_STORAGE, TEST_PATH).isDirect());
+    ByteBuffer mapped = mappedStorage.getObjectBuffer(TEST_STORAGE, "a/c.txt");
+    assertTrue(mapped.isDirect());
+    assertEquals("abc123", StandardCharsets.UTF_8.decode(mapped).toString());
+    try (InputStream isr = mappedStorage.getObject(TEST_STORAGE, "a/c.txt")) {
+      assertEquals("abc123", new String(isr.readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    // a mapped object keeps its content when the object is replaced
+    mapped = mappedStorage.getObjectBuffer(TEST_STORAGE, "a/c.txt");
+    mappedStorage.putObject(TEST_STORAGE, "a/c.txt", "xyz");
+    assertEquals("abc123", StandardCharsets.UTF_8.decode(mapped).toString());
+    assertEquals("xyz", mappedStorage.getObjectAsString(TEST_STORAGE, "a/c.txt"));
+  }
+
+  @Test
+  void mappingDisabledByDefault() {
+    localObjectStorage.putObject(TEST_STORAGE, TEST_PATH,
+        new byte[LocalObjectStorage.DEFAULT_MAP_THRESHOLD_IN_BYTES]);
+    assertFalse(localObjectStorage.getObjectBuffer(TEST_STORAGE, TEST_PATH).isDirect());
+
+    // nothing keeps the object mapped, so it can be replaced and deleted on every platform
+    localObjectStorage.putObject(TEST_STORAGE, TEST_PATH, "abc");
+    localObjectStorage.deleteObject(TEST_STORAGE, TEST_PATH);
+    assertEquals(Optional.empty(), localObjectStorage.getETag(TEST_STORAGE, TEST_PATH));
+  }
+
+  @Test
+  void syncPolicyTest() throws IOException {
+    for (LocalObjectStorage.SyncPolicy syncPolicy : LocalObjectStorage.SyncPolicy.values()) {
+      LocalObjectStorage syncedStorage = new LocalObjectStorage(objectStorageRoot, syncPolicy,
+          LocalObjectStorage.DEFAULT_MAP_THRESHOLD_IN_BYTES);
+      syncedStorage.putObject(TEST_STORAGE, TEST_PATH, syncPolicy.name());
+      assertEquals(syncPolicy.name(), syncedStorage.getObjectAsString(TEST_STORAGE, TEST_PATH));
+    }
+
+    try (Stream<Path> files = Files.list(localObjectStorage.computePath(TEST_STORAGE, "a"))) {
+      assertEquals(List.of("b.txt"), files.map(file -> file.getFileName().toString()).toList());
+    }
+  }
+
+  @Test
+  void putObjectFromFileTest() throws IOException {
+    Path source = Files.writeString(objectStorageRoot.resolve("source.txt"), "0123456789");
+    try (FileInputStream isr = new FileInputStream(source.toFile())) {
+      assertEquals(2, isr.skip(2));
+      localObjectStorage.putObject(TEST_STORAGE, TEST_PATH, isr);
+      assertEquals(-1, isr.read());
+    }
+
+    assertEquals("23456789", localObjectStorage.getObjectAsString(TEST_STORAGE, TEST_PATH));
+  }
+
+  @Test
+  void computePathTest() {
+    assertEquals(objectStorageRoot.resolve(Path.of(TEST_STORAGE, "a", "b.txt")),
+        localObjectStorage.computePath(TEST_STORAGE, TEST_PATH));
+    assertSame(localObjectStorage.computePath(TEST_STORAGE, TEST_PATH),
+        localObjectStorage.computePath(TEST_STORAGE, TEST_PATH));
+    assertEquals(Path.of("a", "b", "c"), localObjectStorage.parsePath("a/b//c/"));
+    assertThrows(IllegalArgumentException.class,
+        () -> new LocalObjectStorage(objectStorageRoot, LocalObjectStorage.SyncPolicy.NONE, -1));
+  }
+
   @Test
   void deleteObjectError() throws IOException {
     localObjectStorage.putObject(TEST_STORAGE, TEST_PATH, "hello");
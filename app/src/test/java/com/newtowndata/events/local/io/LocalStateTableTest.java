@@ -14,8 +14,22 @@
 package com.newtowndata.events.local.io;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import com.newtowndata.events.core.io.StateTable;
+import java.time.Duration;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
 
 class LocalStateTableTest {
@@ -28,16 +42,136 @@ class LocalStateTableTest {
   void lifecycleTest() {
     StateTable table = new LocalStateTable();
 
-    table.deleteState(TEST_STATE);
     assertEquals(Set.of(), table.getStates(TEST_STATE));
 
-    table.putState(TEST_STATE, STATE_A);
-    table.putState(TEST_STATE, STATE_B);
+    table.addStates(TEST_STATE, Set.of(STATE_A));
+    table.addStates(TEST_STATE, Set.of(STATE_B));
 
     assertEquals(Set.of(STATE_A, STATE_B), table.getStates(TEST_STATE));
 
-    table.deleteState(TEST_STATE);
+    assertTrue(table.complete(TEST_STATE));
     assertEquals(Set.of(), table.getStates(TEST_STATE));
   }
 
+  @Test
+  void addStateTest() {
+    StateTable table = new LocalStateTable();
+
+    assertEquals(Set.of(STATE_A), table.addStates(TEST_STATE, Set.of(STATE_A)));
+    assertEquals(Set.of(STATE_A), table.addStates(TEST_STATE, Set.of(STATE_A)));
+    assertEquals(Set.of(STATE_A, STATE_B), table.addStates(TEST_STATE, Set.of(STATE_B)));
+    assertEquals(Set.of(STATE_A, STATE_B), table.getStates(TEST_STATE));
+  }
+
+  @Test
+  void addBitsTest() {
+    StateTable table = new LocalStateTable();
+
+    assertEquals(1L, table.addBits(TEST_STATE, 1L));
+    assertEquals(1L, table.addBits(TEST_STATE, 1L));
+    assertEquals(5L, table.addBits(TEST_STATE, 4L));
+
+    assertThrows(IllegalArgumentException.class, () -> table.addBits(TEST_STATE, 0L));
+  }
+
+  @Test
+  void addStateAndCompleteTest() {
+    StateTable table = new LocalStateTable();
+    Set<String> required = Set.of(STATE_A, STATE_B);
+
+    assertFalse(table.addStateAndComplete(TEST_STATE, STATE_A, required));
+    assertFalse(table.addStateAndComplete(TEST_STATE, STATE_A, required));
+    assertTrue(table.addStateAndComplete(TEST_STATE, STATE_B, required));
+    assertEquals(Set.of(), table.getStates(TEST_STATE));
+    // duplicates cannot complete the key again
+    assertFalse(table.addStatesAndComplete(TEST_STATE, required, required));
+    assertFalse(table.complete(TEST_STATE));
+
+    // a completed key takes no more states or bits
+    assertEquals(Set.of(), table.addStates(TEST_STATE, Set.of(STATE_A)));
+    assertEquals(0L, table.addBits(TEST_STATE, 1L));
+    assertEquals(Set.of(), table.getStates(TEST_STATE));
+
+    assertTrue(table.addStatesAndComplete("other", required, required));
+    assertThrows(IllegalArgumentException.class, () -> table.addStates(TEST_STATE, Set.of()));
+  }
+
+  @Test
+  void concurrentJoinTest() throws Exception {
+    LocalStateTable table = new LocalStateTable();
+    int traces = 1_000;
+    List<String> states = IntStream.range(0, 8).mapToObj(i -> "state" + i).toList();
+    Set<String> required = Set.copyOf(states);
+    AtomicInteger completed = new AtomicInteger();
+
+    // every state is delivered twice, like a duplicate SQS message
+    ExecutorService executor = Executors.newFixedThreadPool(2 * states.size());
+    try {
+      List<Future<?>> futures = Stream.concat(states.stream(), states.stream())
+          .map(state -> executor.submit(() -> {
+            for (int trace = 0; trace < traces; trace++) {
+              if (table.addStateAndComplete("trace" + trace, state, required)) {
+                completed.incrementAndGet();
+              }
+            }
+          })).collect(Collectors.toList());
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertEquals(traces, completed.get());
+    // only the completion markers are left
+    assertEquals(traces, table.size());
+    assertEquals(Set.of(), table.getStates("trace0"));
+  }
+
+  @Test
+  void expiryTest() {
+    AtomicLong clock = new AtomicLong();
+    LocalStateTable table = new LocalStateTable(Duration.ofSeconds(10), 10, clock::get, false);
+
+    table.addStates(TEST_STATE, Set.of(STATE_A));
+    table.addBits("bits", 1L);
+    clock.addAndGet(TimeUnit.SECONDS.toNanos(5));
+    table.addStates(TEST_STATE, Set.of(STATE_B));
+
+    clock.addAndGet(TimeUnit.SECONDS.toNanos(6));
+    assertEquals(Set.of(STATE_A, STATE_B), table.getStates(TEST_STATE));
+    assertEquals(1, table.sweep());
+    assertEquals(1, table.size());
+    assertEquals(2L, table.addBits("bits", 2L));
+
+    clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+    assertEquals(Set.of(), table.getStates(TEST_STATE));
+    assertEquals(Set.of(STATE_A), table.addStates(TEST_STATE, Set.of(STATE_A)));
+    assertEquals(1, table.sweep());
+    assertEquals(1, table.size());
+  }
+
+  @Test
+  void maxEntriesTest() {
+    AtomicLong clock = new AtomicLong();
+    LocalStateTable table = new LocalStateTable(Duration.ofSeconds(10), 2, clock::get, false);
+
+    table.addStates("key1", Set.of(STATE_A));
+    table.addStates("key2", Set.of(STATE_A));
+    table.addStates("key1", Set.of(STATE_B));
+    table.addStates("key3", Set.of(STATE_A));
+
+    assertEquals(2, table.size());
+    assertEquals(Set.of(), table.getStates("key2"));
+    assertEquals(Set.of(STATE_A, STATE_B), table.getStates("key1"));
+    assertEquals(Set.of(STATE_A), table.getStates("key3"));
+  }
+
+  @Test
+  void invalidSettingsTest() {
+    assertThrows(IllegalArgumentException.class, () -> new LocalStateTable(Duration.ZERO, 10));
+    assertThrows(IllegalArgumentException.class,
+        () -> new LocalStateTable(Duration.ofSeconds(1), 0));
+  }
+
 }
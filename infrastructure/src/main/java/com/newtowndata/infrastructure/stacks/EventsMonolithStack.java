@@ -14,7 +14,9 @@
 package com.newtowndata.infrastructure.stacks;
 
 import com.newtowndata.infrastructure.utils.StackUtils;
+import java.util.List;
 import java.util.Map;
+import software.amazon.awscdk.Duration;
 import software.amazon.awscdk.RemovalPolicy;
 import software.amazon.awscdk.Stack;
 import software.amazon.awscdk.services.dynamodb.Attribute;
@@ -32,6 +34,7 @@ import software.amazon.awscdk.services.lambda.eventsources.SqsEventSourceProps;
 import software.amazon.awscdk.services.s3.Bucket;
 import software.amazon.awscdk.services.s3.BucketAccessControl;
 import software.amazon.awscdk.services.s3.BucketEncryption;
+import software.amazon.awscdk.services.s3.LifecycleRule;
 import software.amazon.awscdk.services.sqs.DeadLetterQueue;
 import software.amazon.awscdk.services.sqs.Queue;
 import software.amazon.awscdk.services.sqs.QueueEncryption;
@@ -57,6 +60,9 @@ public class EventsMonolithStack extends Stack {
         .bucketName(stackProps.stackPrefix() + "-events-monolith-store")
         .accessControl(BucketAccessControl.PRIVATE).autoDeleteObjects(true)
         .encryption(BucketEncryption.S3_MANAGED).enforceSsl(true).publicReadAccess(false)
+        // attribute values moved out of events, kept longer than the messages referencing them
+        .lifecycleRules(List.of(LifecycleRule.builder().id("ExpireMovedAttributes")
+            .prefix("attributes/").expiration(Duration.days(14)).build()))
         .removalPolicy(RemovalPolicy.DESTROY).build();
 
     Table appTable = Table.Builder.create(this, "AppTable").encryption(TableEncryption.DEFAULT)
@@ -64,7 +70,7 @@ public class EventsMonolithStack extends Stack {
         .tableName(stackProps.stackPrefix() + "-events-monolith-state")
         .partitionKey(Attribute.builder().name("app_key").type(AttributeType.STRING).build())
         .sortKey(Attribute.builder().name("app_state").type(AttributeType.STRING).build())
-        .removalPolicy(RemovalPolicy.DESTROY).build();
+        .timeToLiveAttribute("expires_at").removalPolicy(RemovalPolicy.DESTROY).build();
 
     Function app = Function.Builder.create(this, "App")
         .functionName(stackProps.stackPrefix() + "-events-monolith-app").tracing(Tracing.ACTIVE)
@@ -81,7 +87,8 @@ public class EventsMonolithStack extends Stack {
     appTable.grantReadWriteData(app);
 
     app.addEventSource(new SqsEventSource(appQueue,
-        SqsEventSourceProps.builder().batchSize(1).maxConcurrency(2).enabled(true).build()));
+        SqsEventSourceProps.builder().batchSize(10).reportBatchItemFailures(true).maxConcurrency(2)
+            .enabled(true).build()));
   }
 
 }
@@ -15,6 +15,7 @@ package com.newtowndata.infrastructure;
 
 import com.newtowndata.infrastructure.stacks.EventsMonolithStack;
 import com.newtowndata.infrastructure.stacks.EventsMonolithStackProps;
+import java.util.List;
 import java.util.Map;
 import org.junit.jupiter.api.Test;
 import software.amazon.awscdk.App;
@@ -36,12 +37,16 @@ public class EventsMonolithStackTest {
     template.hasResourceProperties("AWS::SQS::Queue",
         Map.of("QueueName", "test-events-monolith-dlq"));
     template.hasResourceProperties("AWS::S3::Bucket",
-        Map.of("BucketName", "test-events-monolith-store"));
+        Map.of("BucketName", "test-events-monolith-store", "LifecycleConfiguration",
+            Map.of("Rules", List.of(Map.of("Id", "ExpireMovedAttributes", "Prefix",
+                "attributes/", "ExpirationInDays", 14, "Status", "Enabled")))));
     template.hasResourceProperties("AWS::DynamoDB::Table",
-        Map.of("TableName", "test-events-monolith-state"));
+        Map.of("TableName", "test-events-monolith-state", "TimeToLiveSpecification",
+            Map.of("AttributeName", "expires_at", "Enabled", true)));
     template.hasResourceProperties("AWS::Lambda::Function",
         Map.of("FunctionName", "test-events-monolith-app"));
-    template.hasResourceProperties("AWS::Lambda::EventSourceMapping", Map.of("Enabled", true));
+    template.hasResourceProperties("AWS::Lambda::EventSourceMapping", Map.of("Enabled", true,
+        "BatchSize", 10, "FunctionResponseTypes", List.of("ReportBatchItemFailures")));
 
     template.hasResource("AWS::SQS::QueuePolicy", Map.of());
     template.hasResource("AWS::S3::BucketPolicy", Map.of());